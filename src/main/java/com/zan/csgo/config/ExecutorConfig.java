@@ -1,7 +1,11 @@
 package com.zan.csgo.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
@@ -14,6 +18,7 @@ import java.util.concurrent.ThreadPoolExecutor;
  * @Description : 线程池配置
  */
 @Configuration
+@Slf4j
 public class ExecutorConfig {
 
     @Bean("monitorExecutor")
@@ -32,4 +37,43 @@ public class ExecutorConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * 批量工人执行器
+     * 工人线程绝大部分时间阻塞在 HTTP 请求 / 休眠上，JDK21+ 下使用虚拟线程承载，成百上千个也不占平台线程
+     * 低版本 JDK 自动回退为普通线程；Spring 容器关闭时 close() 会等待在途批次结束
+     */
+    @Bean("workerExecutor")
+    public SimpleAsyncTaskExecutor workerExecutor(@Value("${csgo.worker.concurrency:5}") int concurrency,
+                                                  @Value("${csgo.worker.virtual-threads:true}") boolean virtualThreads,
+                                                  @Value("${csgo.worker.shutdown-timeout-ms:30000}") long shutdownTimeoutMs) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("Batch-Worker-");
+        boolean supportVirtual = JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE);
+        if (virtualThreads && supportVirtual) {
+            executor.setVirtualThreads(true);
+        } else if (virtualThreads) {
+            log.warn("⚠️ [线程池] 当前 JDK {} 不支持虚拟线程，工人回退为平台线程", JavaVersion.getJavaVersion());
+        }
+        // 并发上限：同时在途的批次数
+        executor.setConcurrencyLimit(concurrency);
+        // 关闭时等待在途任务结束的最长时间
+        executor.setTaskTerminationTimeout(shutdownTimeoutMs);
+        return executor;
+    }
+
+    /**
+     * 平台抓取执行器：一个批次的 Buff / 悠悠 / Steam 三路请求并发执行
+     * 同样是阻塞在 HTTP 上的任务，JDK21+ 使用虚拟线程
+     */
+    @Bean("platformExecutor")
+    public SimpleAsyncTaskExecutor platformExecutor(@Value("${csgo.worker.virtual-threads:true}") boolean virtualThreads,
+                                                    @Value("${csgo.worker.shutdown-timeout-ms:30000}") long shutdownTimeoutMs) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("Platform-Fetch-");
+        if (virtualThreads && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+            executor.setVirtualThreads(true);
+        }
+        // 上限由工人并发数 × 平台数 自然约束，这里不再额外限流
+        executor.setTaskTerminationTimeout(shutdownTimeoutMs);
+        return executor;
+    }
 }
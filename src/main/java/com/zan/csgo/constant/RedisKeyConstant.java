@@ -28,10 +28,77 @@ public class RedisKeyConstant {
      */
     public static final String QUEUE_COLD = "csgo:task:queue:cold";
 
+    /**
+     * 可靠队列：工人处理中的任务 Hash 前缀 (完整 Key 拼接工人ID，Field: 饰品ID，Value: 来源赛道)
+     */
+    public static final String QUEUE_PROCESSING_PREFIX = "csgo:task:processing:";
+
+    /**
+     * 可靠队列：工人租约 ZSet (Member: 工人ID，Score: 租约到期时间戳)
+     */
+    public static final String QUEUE_LEASE = "csgo:task:lease";
+
+    /**
+     * 可靠队列：唤醒信号 List (有新任务入队时放一个令牌，空闲工人阻塞等待它)
+     */
+    public static final String QUEUE_SIGNAL = "csgo:task:signal";
+
+    /**
+     * 赛道模式 / 可靠模式：延后回赛道的任务 ZSet (Member: 赛道序号|饰品ID，Score: 放回赛道的时间戳)
+     * 失败原因是平台熔断时，等冷却结束再放回，不在冷却期内反复出队
+     */
+    public static final String QUEUE_DELAYED = "csgo:task:delayed";
+
+    /**
+     * 赛道模式 / 可靠模式：饰品下次只需抓取的平台 Hash (Field: 饰品ID，Value: 平台名，逗号分隔)
+     * 因平台熔断延后的饰品，其他平台这次已经抓到了，下次只补抓熔断的平台
+     */
+    public static final String QUEUE_PENDING_PLATFORMS = "csgo:task:pending-platforms";
+
+    /**
+     * 到期调度 ZSet (Member: 饰品ID，Score: 下次应抓取的时间戳)
+     */
+    public static final String TASK_SCHEDULE = "csgo:task:schedule";
+
+    /**
+     * 自适应刷新间隔：饰品价格变化状态 Hash 前缀 (完整 Key: 前缀 + 饰品ID，Field: rate / volume / 平台编码:price / 平台编码:ts)
+     */
+    public static final String TASK_VOLATILITY_PREFIX = "csgo:task:volatility:";
+
+    /**
+     * 令牌桶限流 Hash 前缀 (完整 Key: 前缀 + 平台编码 [+ ":proxy:" + 代理地址])
+     */
+    public static final String LIMITER_PREFIX = "csgo:limiter:";
+
     // 国内代理池 (Buff, 悠悠)
     public static final String PROXY_CN = "csgo:proxy:cn";
 
     // 海外代理池 (Steam)
     public static final String PROXY_GLOBAL = "csgo:proxy:global";
 
+    /**
+     * 代理过期索引 ZSet 后缀 (完整 Key: 池子Key + 后缀，Member: host:port，Score: 过期时间戳)
+     */
+    public static final String PROXY_EXPIRY_SUFFIX = ":expiry";
+
+    /**
+     * 代理补货预算计数前缀 (完整 Key: 前缀 + 池子名 + ":" + yyyyMMddHH，Value: 本小时已提取的代理数)
+     */
+    public static final String PROXY_BUDGET_PREFIX = "csgo:proxy:budget:";
+
+    /**
+     * 代理补货锁前缀 (完整 Key: 前缀 + 池子名，多节点同一时刻只有一个去进货)
+     */
+    public static final String PROXY_REPLENISH_LOCK_PREFIX = "csgo:proxy:replenish:lock:";
+
+    /**
+     * 代理评分 Hash 前缀 (完整 Key: 前缀 + 平台编码，Field: host:port，Value: 成功率,耗时,隔离截止时间,隔离次数)
+     */
+    public static final String PROXY_SCORE_PREFIX = "csgo:proxy:score:";
+
+    /**
+     * 代理池变更通知频道 (消息: 操作|池子Key|host:port[|过期时间戳]，各节点据此更新本地镜像)
+     */
+    public static final String PROXY_EVENT_CHANNEL = "csgo:proxy:events";
+
 }
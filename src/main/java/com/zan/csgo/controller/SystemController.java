@@ -0,0 +1,206 @@
+package com.zan.csgo.controller;
+
+import com.zan.csgo.crawler.breaker.CircuitBreakerRegistry;
+import com.zan.csgo.crawler.dispatch.SteamProxyDispatcher;
+import com.zan.csgo.crawler.http.CrawlerHttpClientManager;
+import com.zan.csgo.crawler.limiter.AdaptiveBatchController;
+import com.zan.csgo.crawler.limiter.HedgePolicy;
+import com.zan.csgo.crawler.limiter.PlatformRateLimiter;
+import com.zan.csgo.crawler.proxy.ProxyRegistry;
+import com.zan.csgo.crawler.proxy.ProxyReplenisher;
+import com.zan.csgo.crawler.proxy.ProxyScoreBoard;
+import com.zan.csgo.crawler.proxy.ProxyValidator;
+import com.zan.csgo.crawler.resolver.PlatformIdResolver;
+import com.zan.csgo.crawler.sweep.SteamMarketSweeper;
+import com.zan.csgo.model.common.Result;
+import com.zan.csgo.service.ISkinItemService;
+import com.zan.csgo.task.PriceHistoryWriter;
+import com.zan.csgo.task.TaskWorker;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/14 15:20
+ * @ClassName: SystemController
+ * @Description : 系统运行状态控制器 (工人、队列等内部指标)
+ */
+@RestController
+@RequestMapping("/system")
+public class SystemController {
+
+    // 工人可能未启用 (未注册为 Bean)，用 ObjectProvider 按需获取
+    @Resource
+    private ObjectProvider<TaskWorker> taskWorkerProvider;
+
+    @Resource
+    private PriceHistoryWriter priceHistoryWriter;
+
+    @Resource
+    private PlatformRateLimiter platformRateLimiter;
+
+    @Resource
+    private AdaptiveBatchController adaptiveBatchController;
+
+    @Resource
+    private CrawlerHttpClientManager httpClientManager;
+
+    @Resource
+    private HedgePolicy hedgePolicy;
+
+    @Resource
+    private PlatformIdResolver platformIdResolver;
+
+    @Resource
+    private SteamMarketSweeper steamMarketSweeper;
+
+    @Resource
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Resource
+    private SteamProxyDispatcher steamProxyDispatcher;
+
+    @Resource
+    private ProxyRegistry proxyRegistry;
+
+    @Resource
+    private ProxyScoreBoard proxyScoreBoard;
+
+    @Resource
+    private ProxyReplenisher proxyReplenisher;
+
+    @Resource
+    private ProxyValidator proxyValidator;
+
+    @Resource
+    private ISkinItemService skinItemService;
+
+    /**
+     * 工人运行状态：存活线程数、在途批次数等
+     */
+    @GetMapping("/worker")
+    public Result<Map<String, Object>> workerStats() {
+        TaskWorker taskWorker = taskWorkerProvider.getIfAvailable();
+        if (taskWorker == null) {
+            return Result.failed("工人未启用");
+        }
+        return Result.success(taskWorker.getWorkerStats());
+    }
+
+    /**
+     * 入库流水线状态：队列深度、累计入库、背压次数等
+     */
+    @GetMapping("/writer")
+    public Result<Map<String, Object>> writerStats() {
+        return Result.success(priceHistoryWriter.getWriterStats());
+    }
+
+    /**
+     * 限流状态：各平台速率配置、本节点放行次数与累计等待时长
+     */
+    @GetMapping("/limiter")
+    public Result<Map<String, Object>> limiterStats() {
+        return Result.success(platformRateLimiter.getLimiterStats());
+    }
+
+    /**
+     * 抓取用饰品缓存状态：条数、命中率、淘汰数
+     */
+    @GetMapping("/cache")
+    public Result<Map<String, Object>> cacheStats() {
+        return Result.success(skinItemService.getFetchItemCacheStats());
+    }
+
+    /**
+     * 自适应批量：各平台当前批量大小及增减次数
+     */
+    @GetMapping("/batch")
+    public Result<Map<String, Object>> batchStats() {
+        return Result.success(adaptiveBatchController.getBatchStats());
+    }
+
+    /**
+     * 爬虫 HTTP 连接池：客户端数、请求数、HTTP/2 占比、平均耗时
+     */
+    @GetMapping("/http")
+    public Result<Map<String, Object>> httpStats() {
+        return Result.success(httpClientManager.getHttpStats());
+    }
+
+    /**
+     * 对冲请求：各平台当前对冲阈值、对冲次数、胜出次数、预算拒绝次数
+     */
+    @GetMapping("/hedge")
+    public Result<Map<String, Object>> hedgeStats() {
+        return Result.success(hedgePolicy.getHedgeStats());
+    }
+
+    /**
+     * 平台ID解析：缓存映射数、负缓存数、待解析数、搜索/解析/回填次数
+     */
+    @GetMapping("/resolver")
+    public Result<Map<String, Object>> resolverStats() {
+        return Result.success(platformIdResolver.getResolverStats());
+    }
+
+    /**
+     * Steam 全量扫描：快照条数、扫描进度、快照命中率
+     */
+    @GetMapping("/sweep")
+    public Result<Map<String, Object>> sweepStats() {
+        return Result.success(steamMarketSweeper.getSweepStats());
+    }
+
+    /**
+     * 熔断器：各平台状态、失败率、剩余冷却时间，以及熔断中的代理
+     */
+    @GetMapping("/breaker")
+    public Result<Map<String, Object>> breakerStats() {
+        return Result.success(circuitBreakerRegistry.getBreakerStats());
+    }
+
+    /**
+     * Steam 按代理调度：代理槽位数、等待中的请求、平均等待时长、理论每分钟请求上限
+     */
+    @GetMapping("/dispatch")
+    public Result<Map<String, Object>> dispatchStats() {
+        return Result.success(steamProxyDispatcher.getDispatchStats());
+    }
+
+    /**
+     * 代理池本地镜像：各池子代理数、收到的变更通知数、对账次数
+     */
+    @GetMapping("/proxy")
+    public Result<Map<String, Object>> proxyStats() {
+        return Result.success(proxyRegistry.getRegistryStats());
+    }
+
+    /**
+     * 代理评分：各平台代理的成功率/耗时 EWMA、隔离中的代理及累计移出数
+     */
+    @GetMapping("/proxy-score")
+    public Result<Map<String, Object>> proxyScoreStats() {
+        return Result.success(proxyScoreBoard.getScoreStats());
+    }
+
+    /**
+     * 代理补货：各池子库存、目标库存、消耗速度、累计提取数
+     */
+    @GetMapping("/proxy-replenish")
+    public Result<Map<String, Object>> proxyReplenishStats() {
+        return Result.success(proxyReplenisher.getReplenishStats());
+    }
+
+    /**
+     * 代理入池验证：验证数、通过率、通过代理的平均耗时
+     */
+    @GetMapping("/proxy-validate")
+    public Result<Map<String, Object>> proxyValidateStats() {
+        return Result.success(proxyValidator.getValidateStats());
+    }
+}
@@ -0,0 +1,356 @@
+package com.zan.csgo.crawler.breaker;
+
+import com.zan.csgo.crawler.proxy.ProxyScoreBoard;
+import com.zan.csgo.enums.BreakerSignalEnum;
+import com.zan.csgo.enums.CircuitStateEnum;
+import com.zan.csgo.enums.PlatformEnum;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.Proxy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/20 10:20
+ * @ClassName: CircuitBreakerRegistry
+ * @Description : 熔断器 (每个平台一个)
+ *                按最近 N 次请求的失败率打开，Cookie 失效直接熔断平台；
+ *                打开期间请求直接失败不再发出，冷却后放少量试探请求，试探失败则冷却时间翻倍。
+ *                试探名额按请求发放、按记录到的结果归还：发出请求前拿许可，请求结果 (成功/失败) 记录后名额才释放；
+ *                许可发出后迟迟没有结果 (请求没发出去、调用方超时放弃) 视为试探失败，到期重新打开，不会卡死在半开
+ *                代理级别的隔离由代理评分 (ProxyScoreBoard) 负责，这里统一收集请求结果并转交
+ */
+@Component
+@Slf4j
+public class CircuitBreakerRegistry {
+
+    @Value("${csgo.breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csgo.breaker.platform.window:20}")
+    private int platformWindow; // 平台失败率统计的最近请求数
+
+    @Value("${csgo.breaker.platform.min-calls:10}")
+    private int platformMinCalls; // 窗口内请求数不足时不判定
+
+    @Value("${csgo.breaker.platform.failure-rate:0.5}")
+    private double platformFailureRate; // 失败率达到该值时熔断平台
+
+    @Value("${csgo.breaker.platform.open-ms:30000}")
+    private long platformOpenMs; // 平台熔断初始冷却时间
+
+    @Value("${csgo.breaker.platform.login-open-ms:600000}")
+    private long loginOpenMs; // Cookie 失效时的冷却时间 (换 Cookie 之前重试没有意义)
+
+    @Value("${csgo.breaker.half-open-calls:3}")
+    private int halfOpenCalls; // 半开状态放行的试探请求数，全部成功才关闭
+
+    @Value("${csgo.breaker.trial-timeout-ms:60000}")
+    private long trialTimeoutMs; // 试探许可发出后多久没有结果就重新打开 (需覆盖限流排队 + 请求超时)
+
+    @Value("${csgo.breaker.max-open-ms:1800000}")
+    private long maxOpenMs; // 冷却时间翻倍的上限
+
+    @Resource
+    private ProxyScoreBoard proxyScoreBoard;
+
+    private final Map<PlatformEnum, Breaker> platformBreakers = new ConcurrentHashMap<>();
+
+    /**
+     * 即将真正发出一个请求：平台是否允许 (半开状态下会占用一个试探名额)
+     * 拿到许可后必须用 recordSuccess / recordFailure 记录这个请求的结果，最终没有发出则调用 releasePlatform 归还
+     */
+    public boolean allowPlatform(PlatformEnum platformEnum) {
+        return !enabled || platformBreaker(platformEnum).tryAcquire();
+    }
+
+    /**
+     * 归还拿到许可后没有发出的请求的试探名额
+     */
+    public void releasePlatform(PlatformEnum platformEnum) {
+        if (enabled) {
+            platformBreaker(platformEnum).release();
+        }
+    }
+
+    /**
+     * 平台是否不接受新的调用：熔断冷却中，或半开且试探名额已被占满 (只查询不占名额，用于批次入口和重试循环中途提前退出)
+     */
+    public boolean isPlatformOpen(PlatformEnum platformEnum) {
+        return enabled && platformBreaker(platformEnum).isOpen();
+    }
+
+    /**
+     * 代理是否处于隔离中 (选代理时跳过)
+     */
+    public boolean isProxyOpen(PlatformEnum platformEnum, Proxy proxy) {
+        return enabled && proxy != null && proxyScoreBoard.isQuarantined(platformEnum, proxy);
+    }
+
+    /**
+     * 平台还要冷却多久，没在冷却中返回 0 (半开且名额占满时也是 0)
+     */
+    public long remainingOpenMs(PlatformEnum platformEnum) {
+        return enabled ? platformBreaker(platformEnum).remainingOpenMs() : 0;
+    }
+
+    /**
+     * 熔断中的平台最长还要冷却多久 (失败任务按此延后重新入队，不在冷却期内反复出队)
+     */
+    public long maxRemainingOpenMs() {
+        long remaining = 0;
+        for (Breaker breaker : platformBreakers.values()) {
+            remaining = Math.max(remaining, breaker.remainingOpenMs());
+        }
+        return remaining;
+    }
+
+    /**
+     * 记录一次成功请求 (平台熔断器 + 代理评分)
+     *
+     * @param proxy     本次使用的代理，直连传 null
+     * @param latencyMs 请求耗时
+     */
+    public void recordSuccess(PlatformEnum platformEnum, Proxy proxy, long latencyMs) {
+        proxyScoreBoard.recordSuccess(platformEnum, proxy, latencyMs);
+        if (enabled) {
+            platformBreaker(platformEnum).onSuccess();
+        }
+    }
+
+    /**
+     * 记录一次失败请求 (平台熔断器 + 代理评分)
+     *
+     * @param proxy  本次使用的代理，直连传 null
+     * @param signal 失败信号，决定是计入失败率还是直接熔断/隔离
+     */
+    public void recordFailure(PlatformEnum platformEnum, Proxy proxy, BreakerSignalEnum signal) {
+        proxyScoreBoard.recordFailure(platformEnum, proxy, signal);
+        if (!enabled) {
+            return;
+        }
+        Breaker platform = platformBreaker(platformEnum);
+        if (BreakerSignalEnum.LOGIN_REQUIRED.equals(signal)) {
+            // 平台级问题，换代理也没用
+            platform.trip(loginOpenMs, signal);
+            return;
+        }
+        platform.onFailure(signal);
+    }
+
+    /**
+     * 熔断运行指标：各平台状态、失败率、剩余冷却时间 (代理的隔离状态见代理评分)
+     */
+    public Map<String, Object> getBreakerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (PlatformEnum platformEnum : List.of(PlatformEnum.BUFF, PlatformEnum.YOUPIN, PlatformEnum.STEAM)) {
+            Breaker breaker = platformBreakers.get(platformEnum);
+            if (breaker != null) {
+                stats.put(platformEnum.name(), breaker.snapshot());
+            }
+        }
+        return stats;
+    }
+
+    private Breaker platformBreaker(PlatformEnum platformEnum) {
+        return platformBreakers.computeIfAbsent(platformEnum,
+                k -> new Breaker(k.getName(), platformWindow, platformMinCalls, platformFailureRate, platformOpenMs));
+    }
+
+    /**
+     * 单个熔断器：环形窗口记录最近 N 次结果
+     */
+    private class Breaker {
+
+        private final String name;
+        private final boolean[] failures;
+        private final int minCalls;
+        private final double failureRate;
+        private final long baseOpenMs;
+
+        private int count;
+        private int cursor;
+        private int failureCount;
+
+        private CircuitStateEnum state = CircuitStateEnum.CLOSED;
+        private long openUntil;
+        private long currentOpenMs;
+        private int trialsInFlight;
+        private int trialSuccesses;
+        private long lastPermitAt;
+
+        private long openedCount;
+        private long rejectedCount;
+        private BreakerSignalEnum lastSignal;
+
+        Breaker(String name, int window, int minCalls, double failureRate, long baseOpenMs) {
+            this.name = name;
+            this.failures = new boolean[Math.max(window, 1)];
+            this.minCalls = minCalls;
+            this.failureRate = failureRate;
+            this.baseOpenMs = baseOpenMs;
+            this.currentOpenMs = baseOpenMs;
+        }
+
+        synchronized boolean tryAcquire() {
+            advance();
+            if (CircuitStateEnum.OPEN.equals(state)) {
+                rejectedCount++;
+                return false;
+            }
+            if (CircuitStateEnum.HALF_OPEN.equals(state)) {
+                if (!hasTrialSlot()) {
+                    rejectedCount++;
+                    return false;
+                }
+                trialsInFlight++;
+                lastPermitAt = System.currentTimeMillis();
+            }
+            return true;
+        }
+
+        synchronized void release() {
+            if (CircuitStateEnum.HALF_OPEN.equals(state) && trialsInFlight > 0) {
+                trialsInFlight--;
+            }
+        }
+
+        synchronized boolean isOpen() {
+            advance();
+            return CircuitStateEnum.OPEN.equals(state) || (CircuitStateEnum.HALF_OPEN.equals(state) && !hasTrialSlot());
+        }
+
+        synchronized void onSuccess() {
+            advance();
+            if (CircuitStateEnum.HALF_OPEN.equals(state)) {
+                // 按记录到的结果计数 (对冲等没拿许可的请求结果同样算数)
+                trialsInFlight = Math.max(trialsInFlight - 1, 0);
+                if (++trialSuccesses >= halfOpenCalls) {
+                    close();
+                }
+                return;
+            }
+            if (CircuitStateEnum.CLOSED.equals(state)) {
+                push(false);
+            }
+        }
+
+        synchronized void onFailure(BreakerSignalEnum signal) {
+            advance();
+            lastSignal = signal;
+            if (CircuitStateEnum.HALF_OPEN.equals(state)) {
+                // 试探失败，冷却时间翻倍后重新打开
+                open(Math.min(currentOpenMs * 2, maxOpenMs));
+                return;
+            }
+            if (CircuitStateEnum.CLOSED.equals(state)) {
+                push(true);
+                if (count >= minCalls && failureCount >= failureRate * count) {
+                    open(currentOpenMs);
+                }
+            }
+        }
+
+        /**
+         * 收到明确信号直接打开
+         *
+         * @param openMs 冷却时间
+         */
+        synchronized void trip(long openMs, BreakerSignalEnum signal) {
+            advance();
+            lastSignal = signal;
+            if (CircuitStateEnum.OPEN.equals(state)) {
+                return;
+            }
+            open(openMs);
+        }
+
+        synchronized long remainingOpenMs() {
+            return CircuitStateEnum.OPEN.equals(state) ? Math.max(openUntil - System.currentTimeMillis(), 0) : 0;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            advance();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("state", state.getCode());
+            item.put("calls", count);
+            item.put("failureRate", count == 0 ? 0 : (double) failureCount / count);
+            item.put("remainingOpenMs", remainingOpenMs());
+            item.put("openMs", currentOpenMs);
+            item.put("trialsInFlight", trialsInFlight);
+            item.put("trialSuccesses", trialSuccesses);
+            item.put("opened", openedCount);
+            item.put("rejected", rejectedCount);
+            item.put("lastSignal", lastSignal == null ? null : lastSignal.getCode());
+            return item;
+        }
+
+        /**
+         * 冷却结束的熔断器转入半开；半开中发出的试探许可超时没有结果则重新打开
+         */
+        private void advance() {
+            long now = System.currentTimeMillis();
+            if (CircuitStateEnum.OPEN.equals(state) && now >= openUntil) {
+                state = CircuitStateEnum.HALF_OPEN;
+                trialsInFlight = 0;
+                trialSuccesses = 0;
+                log.info("🟡 [熔断] {} 冷却结束，进入半开试探", name);
+            } else if (CircuitStateEnum.HALF_OPEN.equals(state) && trialsInFlight > 0 && now - lastPermitAt >= trialTimeoutMs) {
+                lastSignal = BreakerSignalEnum.TIMEOUT;
+                log.warn("🟠 [熔断] {} 有 {} 个试探请求 {}ms 内没有结果", name, trialsInFlight, trialTimeoutMs);
+                open(currentOpenMs);
+            }
+        }
+
+        /**
+         * 在途试探 + 已成功试探 没有占满名额
+         */
+        private boolean hasTrialSlot() {
+            return trialsInFlight + trialSuccesses < halfOpenCalls;
+        }
+
+        private void push(boolean failure) {
+            if (count == failures.length) {
+                if (failures[cursor]) {
+                    failureCount--;
+                }
+            } else {
+                count++;
+            }
+            failures[cursor] = failure;
+            if (failure) {
+                failureCount++;
+            }
+            cursor = (cursor + 1) % failures.length;
+        }
+
+        private void open(long duration) {
+            state = CircuitStateEnum.OPEN;
+            currentOpenMs = duration;
+            openUntil = System.currentTimeMillis() + duration;
+            openedCount++;
+            resetWindow();
+            log.warn("🔴 [熔断] {} 已熔断 {}ms，原因: {}", name, duration, lastSignal == null ? "-" : lastSignal.getDesc());
+        }
+
+        private void close() {
+            state = CircuitStateEnum.CLOSED;
+            currentOpenMs = baseOpenMs;
+            resetWindow();
+            log.info("🟢 [熔断] {} 试探成功，恢复正常", name);
+        }
+
+        private void resetWindow() {
+            count = 0;
+            cursor = 0;
+            failureCount = 0;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.zan.csgo.crawler.dispatch;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.RandomUtil;
+import com.zan.csgo.crawler.breaker.CircuitBreakerRegistry;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.exception.BusinessException;
+import com.zan.csgo.utils.ProxyProviderUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/20 15:40
+ * @ClassName: SteamProxyDispatcher
+ * @Description : Steam 按代理调度
+ *                Steam 是按 IP 限流的，真正要控制的是每个代理的请求间隔，而不是全局并发数。
+ *                海外池里每个代理各自一个节奏 (两次请求至少间隔 interval-ms)，等待中的请求交给最先可用的代理，
+ *                代理越多吞吐越高，而每个 IP 始终低于 Steam 的阈值；代理池为空时按同样节奏直连。
+ *                等待的请求带截止时间，过期的直接以失败结束、不再占用代理；等待队列有上限，满了新请求立即失败
+ */
+@Component
+@Slf4j
+public class SteamProxyDispatcher {
+
+    @Value("${csgo.dispatch.steam.interval-ms:2000}")
+    private long intervalMs; // 同一代理两次请求的最小间隔 (与 limiter.proxy.rate 保持一致)
+
+    @Value("${csgo.dispatch.steam.jitter-ms:500}")
+    private long jitterMs; // 间隔上叠加的随机抖动，避免请求节奏过于规律
+
+    @Value("${csgo.dispatch.steam.refresh-ms:1000}")
+    private long refreshMs; // 与代理池本地镜像同步槽位的间隔
+
+    @Value("${csgo.dispatch.steam.max-waiters:2000}")
+    private int maxWaiters; // 等待分配代理的请求上限，超出直接失败 (背压给上游批次)
+
+    @Resource
+    private ProxyProviderUtil proxyProviderUtil;
+
+    @Resource
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    /**
+     * 调度线程：下面的槽位、等待队列只在这个线程里读写，不需要加锁
+     */
+    private ScheduledExecutorService dispatchExecutor;
+
+    /**
+     * 代理槽位，按下次可用时间排序
+     */
+    private final PriorityQueue<Slot> slots = new PriorityQueue<>(Comparator.comparingLong(slot -> slot.nextAt));
+
+    /**
+     * 等待分配代理的请求 (先到先得)
+     */
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAt;
+    private long lastRefreshAt;
+
+    // --- 运行指标 ---
+    private volatile int slotCount;
+    private volatile int waitingCount;
+    private final AtomicLong assignedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong waitedMs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        dispatchExecutor = Executors.newSingleThreadScheduledExecutor(ThreadUtil.newNamedThreadFactory("Steam-Dispatch-", true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatchExecutor.shutdownNow();
+    }
+
+    /**
+     * 申请一个代理 (不限等待时间)
+     */
+    public CompletableFuture<Proxy> acquire() {
+        return acquire(Long.MAX_VALUE);
+    }
+
+    /**
+     * 申请一个代理：在最先可用的代理到点时完成，等待期间不占用线程
+     *
+     * @param deadline 截止时间戳 (毫秒)，到点还没分到代理则以失败结束，调用方已放弃的请求不再占用代理
+     * @return 分到的代理；代理池为空时为 null (直连)
+     */
+    public CompletableFuture<Proxy> acquire(long deadline) {
+        CompletableFuture<Proxy> future = new CompletableFuture<>();
+        long start = System.currentTimeMillis();
+        future.thenRun(() -> waitedMs.addAndGet(System.currentTimeMillis() - start));
+        dispatchExecutor.execute(() -> {
+            dropExpired(System.currentTimeMillis());
+            if (waiters.size() >= maxWaiters) {
+                rejectedCount.incrementAndGet();
+                future.completeExceptionally(new BusinessException("Steam 等待代理的请求已达上限 " + maxWaiters));
+                return;
+            }
+            waiters.addLast(new Waiter(future, deadline));
+            dispatch();
+        });
+        return future;
+    }
+
+    /**
+     * 把到点的代理分给等待中的请求，没到点则定时到最早的那个代理可用时再来
+     */
+    private void dispatch() {
+        long now = System.currentTimeMillis();
+        if (now - lastRefreshAt >= refreshMs) {
+            refresh(now);
+        }
+        dropExpired(now);
+
+        while (!waiters.isEmpty() && !slots.isEmpty() && slots.peek().nextAt <= now) {
+            Slot slot = slots.poll();
+            if (slot.proxy != null && circuitBreakerRegistry.isProxyOpen(PlatformEnum.STEAM, slot.proxy)) {
+                // 隔离中的代理本轮跳过，过一个间隔再看
+                skippedCount.incrementAndGet();
+                slot.nextAt = now + intervalMs;
+                slots.add(slot);
+                continue;
+            }
+            Waiter waiter = waiters.pollFirst();
+            if (waiter.future.isDone()) {
+                // 调用方已放弃 (取消)，这个代理留给下一个
+                slots.add(slot);
+                continue;
+            }
+            slot.nextAt = now + intervalMs + (jitterMs > 0 ? RandomUtil.randomLong(jitterMs + 1) : 0);
+            slots.add(slot);
+            assignedCount.incrementAndGet();
+            waiter.future.complete(slot.proxy);
+        }
+
+        waitingCount = waiters.size();
+        if (!waiters.isEmpty() && !slots.isEmpty()) {
+            // 最早的代理到点，或最早的截止时间到点 (及时让过期的请求失败)，取先到的那个
+            scheduleWakeup(Math.min(slots.peek().nextAt, earliestDeadline()), now);
+        }
+    }
+
+    /**
+     * 移出已过截止时间或已被取消的等待请求，过期的以失败结束
+     */
+    private void dropExpired(long now) {
+        List<Waiter> expired = new ArrayList<>();
+        waiters.removeIf(waiter -> {
+            if (waiter.future.isDone()) {
+                return true;
+            }
+            if (waiter.deadline > now) {
+                return false;
+            }
+            expired.add(waiter);
+            return true;
+        });
+        waitingCount = waiters.size();
+        // 先移出队列再通知调用方
+        for (Waiter waiter : expired) {
+            expiredCount.incrementAndGet();
+            waiter.future.completeExceptionally(new BusinessException("Steam 等待代理超过截止时间"));
+        }
+    }
+
+    private long earliestDeadline() {
+        long earliest = Long.MAX_VALUE;
+        for (Waiter waiter : waiters) {
+            earliest = Math.min(earliest, waiter.deadline);
+        }
+        return earliest;
+    }
+
+    private void scheduleWakeup(long at, long now) {
+        if (wakeup != null && !wakeup.isDone() && wakeupAt <= at) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeupAt = at;
+        wakeup = dispatchExecutor.schedule(this::dispatch, Math.max(at - now, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 与代理池同步：新代理在一个间隔内错开加入，已移出池子的代理删除槽位；池子为空时只保留一个直连槽位
+     */
+    private void refresh(long now) {
+        lastRefreshAt = now;
+        List<Proxy> proxies = proxyProviderUtil.getProxies(PlatformEnum.STEAM);
+
+        Set<String> current = new HashSet<>();
+        for (Proxy proxy : proxies) {
+            current.add(slotKey(proxy));
+        }
+        Set<String> existing = new HashSet<>();
+        slots.removeIf(slot -> !current.contains(slot.key) && !(current.isEmpty() && slot.proxy == null));
+        slots.forEach(slot -> existing.add(slot.key));
+
+        if (proxies.isEmpty()) {
+            if (slots.isEmpty()) {
+                slots.add(new Slot(null, now));
+            }
+        } else {
+            for (Proxy proxy : proxies) {
+                if (existing.add(slotKey(proxy))) {
+                    slots.add(new Slot(proxy, now + RandomUtil.randomLong(intervalMs + 1)));
+                }
+            }
+        }
+        if (slotCount != slots.size()) {
+            log.info("🚦 [Steam调度] 代理槽位 {} -> {}", slotCount, slots.size());
+        }
+        slotCount = slots.size();
+    }
+
+    /**
+     * 调度运行指标：槽位数 (≈ 可用代理数)、等待中的请求、累计分配次数、平均等待时长
+     */
+    public Map<String, Object> getDispatchStats() {
+        long assigned = assignedCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("intervalMs", intervalMs);
+        stats.put("slots", slotCount);
+        stats.put("waiting", waitingCount);
+        stats.put("assigned", assigned);
+        stats.put("breakerSkipped", skippedCount.get());
+        stats.put("expired", expiredCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("avgWaitMs", assigned == 0 ? 0 : waitedMs.get() / assigned);
+        // 理论吞吐：每个槽位每个间隔一个请求
+        stats.put("maxRequestsPerMinute", intervalMs <= 0 ? 0 : slotCount * 60000L / intervalMs);
+        return stats;
+    }
+
+    private static String slotKey(Proxy proxy) {
+        if (proxy == null || !(proxy.address() instanceof InetSocketAddress address)) {
+            return "DIRECT";
+        }
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * 等待分配代理的请求
+     */
+    private static class Waiter {
+
+        private final CompletableFuture<Proxy> future;
+        private final long deadline;
+
+        Waiter(CompletableFuture<Proxy> future, long deadline) {
+            this.future = future;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * 单个代理 (或直连) 的节奏
+     */
+    private static class Slot {
+
+        private final Proxy proxy;
+        private final String key;
+        private long nextAt;
+
+        Slot(Proxy proxy, long nextAt) {
+            this.proxy = proxy;
+            this.key = slotKey(proxy);
+            this.nextAt = nextAt;
+        }
+    }
+}
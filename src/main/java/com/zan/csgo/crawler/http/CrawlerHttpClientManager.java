@@ -0,0 +1,304 @@
+package com.zan.csgo.crawler.http;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/18 10:10
+ * @ClassName: CrawlerHttpClientManager
+ * @Description : 爬虫 HTTP 传输层 (JDK HttpClient 连接池)
+ *                每个代理 (以及直连) 一个长期复用的 HttpClient，其内部按目标主机维护 keep-alive 连接池，
+ *                目标支持时自动走 HTTP/2 多路复用；同一代理连续请求不再每次重新 TCP + TLS 握手
+ */
+@Component
+@Slf4j
+public class CrawlerHttpClientManager {
+
+    @Value("${csgo.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs; // 建连超时
+
+    @Value("${csgo.http.request-timeout-ms:8000}")
+    private long requestTimeoutMs; // 单次请求默认超时 (代理慢，给 8 秒)
+
+    @Value("${csgo.http.keep-alive-seconds:60}")
+    private long keepAliveSeconds; // 空闲连接保活时长
+
+    @Value("${csgo.http.max-clients:500}")
+    private long maxClients; // 最多缓存的客户端数 (约等于同时在用的代理数)
+
+    @Value("${csgo.http.client-idle-minutes:2}")
+    private long clientIdleMinutes; // 代理一段时间没用到就释放它的客户端 (兜底，正常是移出代理池时立即释放；需短于代理寿命)
+
+    @Value("${csgo.http.io-threads:4}")
+    private int ioThreads; // 所有客户端共用的 IO 线程数 (异步请求挂起时不占线程，少量即可)
+
+    private static final String DIRECT = "DIRECT";
+
+    /**
+     * 代理地址 -> HttpClient
+     */
+    private Cache<String, HttpClient> clientCache;
+
+    /**
+     * 所有客户端共用的执行器 (否则每个 HttpClient 会各自创建一个线程池)
+     */
+    private ExecutorService ioExecutor;
+
+    // --- 运行指标 ---
+    private final AtomicLong createdClients = new AtomicLong();
+    private final AtomicLong evictedClients = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong http2Count = new AtomicLong();
+    private final AtomicLong totalLatencyMs = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        // JDK HttpClient 的连接保活时长只能通过系统属性配置 (全局生效)，未显式配置时才设置
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        }
+        ioExecutor = Executors.newFixedThreadPool(ioThreads, ThreadUtil.newNamedThreadFactory("Crawler-Http-", true));
+        clientCache = CacheBuilder.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(clientIdleMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 创建一个 GET 请求构造器 (带默认超时，声明接受 gzip)
+     */
+    public HttpRequest.Builder newGet(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .GET()
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .header("Accept-Encoding", "gzip");
+    }
+
+    /**
+     * 通过指定代理发送请求，返回字符串响应体 (自动处理 gzip)
+     *
+     * @param proxy 代理，null 表示直连
+     */
+    public HttpResponse<String> send(HttpRequest request, Proxy proxy) throws IOException, InterruptedException {
+        HttpClient client = getClient(proxy);
+        long start = System.currentTimeMillis();
+        requestCount.incrementAndGet();
+        try {
+            HttpResponse<String> response = client.send(request, this::gzipAwareStringHandler);
+            if (HttpClient.Version.HTTP_2.equals(response.version())) {
+                http2Count.incrementAndGet();
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            errorCount.incrementAndGet();
+            throw e;
+        } finally {
+            totalLatencyMs.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 异步发送请求：请求在途期间不占用任何线程，适合同时挂起大量请求
+     *
+     * @param proxy 代理，null 表示直连
+     */
+    public CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request, Proxy proxy) {
+        HttpClient client;
+        try {
+            client = getClient(proxy);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.currentTimeMillis();
+        requestCount.incrementAndGet();
+        inFlight.incrementAndGet();
+        CompletableFuture<HttpResponse<String>> future = client.sendAsync(request, this::gzipAwareStringHandler);
+        future.whenComplete((response, ex) -> {
+            inFlight.decrementAndGet();
+            totalLatencyMs.addAndGet(System.currentTimeMillis() - start);
+            if (ex != null) {
+                errorCount.incrementAndGet();
+            } else if (HttpClient.Version.HTTP_2.equals(response.version())) {
+                http2Count.incrementAndGet();
+            }
+        });
+        // 直接返回 HttpClient 的 future：调用方 cancel 时会真正中止请求 (对冲请求取消落败的一方)
+        return future;
+    }
+
+    /**
+     * 异步发送请求，响应体按 JSON 流式解析 (不经过 String 和 JSON 树)
+     * 响应体为 null 的情况：状态码不是 200 (响应体直接丢弃)，或响应体不是 JSON 对象 (如 WAF 的 HTML 页面，读到首字节就停止接收)
+     *
+     * @param proxy  代理，null 表示直连
+     * @param reader 字段读取器
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendJsonAsync(HttpRequest request, Proxy proxy, JsonStreamReader<T> reader) {
+        HttpClient client;
+        try {
+            client = getClient(proxy);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.currentTimeMillis();
+        requestCount.incrementAndGet();
+        inFlight.incrementAndGet();
+        CompletableFuture<HttpResponse<T>> future = client.sendAsync(request, info -> jsonHandler(info, reader));
+        future.whenComplete((response, ex) -> {
+            inFlight.decrementAndGet();
+            totalLatencyMs.addAndGet(System.currentTimeMillis() - start);
+            if (ex != null) {
+                errorCount.incrementAndGet();
+            } else if (HttpClient.Version.HTTP_2.equals(response.version())) {
+                http2Count.incrementAndGet();
+            }
+        });
+        // 直接返回 HttpClient 的 future：调用方 cancel 时会真正中止请求 (对冲请求取消落败的一方)
+        return future;
+    }
+
+    /**
+     * 代理移出代理池后释放它的客户端 (连同其中的连接池)，在途请求不受影响，跑完后随客户端一起回收
+     */
+    public void evictClient(Proxy proxy) {
+        if (proxy == null) {
+            return;
+        }
+        String key = proxyKey(proxy);
+        if (clientCache.getIfPresent(key) != null) {
+            clientCache.invalidate(key);
+            evictedClients.incrementAndGet();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdown();
+    }
+
+    /**
+     * 连接池运行指标
+     */
+    public Map<String, Object> getHttpStats() {
+        long requests = requestCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeClients", clientCache.size());
+        stats.put("createdClients", createdClients.get());
+        stats.put("evictedClients", evictedClients.get());
+        stats.put("requests", requests);
+        stats.put("inFlight", inFlight.get());
+        stats.put("errors", errorCount.get());
+        stats.put("http2Requests", http2Count.get());
+        stats.put("avgLatencyMs", requests == 0 ? 0 : totalLatencyMs.get() / requests);
+        stats.put("receivedBytes", receivedBytes.get());
+        return stats;
+    }
+
+    private HttpClient getClient(Proxy proxy) {
+        String key = proxyKey(proxy);
+        try {
+            return clientCache.get(key, () -> buildClient(proxy));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("创建 HttpClient 失败: " + key, e.getCause());
+        }
+    }
+
+    private HttpClient buildClient(Proxy proxy) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                // 优先 HTTP/2，目标不支持时自动降级为 HTTP/1.1 keep-alive
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(ioExecutor);
+        if (proxy != null && proxy.address() instanceof InetSocketAddress address) {
+            builder.proxy(ProxySelector.of(address));
+        }
+        createdClients.incrementAndGet();
+        return builder.build();
+    }
+
+    private String proxyKey(Proxy proxy) {
+        if (proxy == null || !(proxy.address() instanceof InetSocketAddress address)) {
+            return DIRECT;
+        }
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * 按 Content-Encoding 解压，按 Content-Type 的 charset 解码 (默认 UTF-8)
+     */
+    private HttpResponse.BodySubscriber<String> gzipAwareStringHandler(HttpResponse.ResponseInfo info) {
+        boolean gzip = info.headers().firstValue("Content-Encoding").map(v -> v.equalsIgnoreCase("gzip")).orElse(false);
+        Charset charset = info.headers().firstValue("Content-Type")
+                .map(this::parseCharset)
+                .orElse(StandardCharsets.UTF_8);
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+            receivedBytes.addAndGet(bytes.length);
+            if (!gzip) {
+                return new String(bytes, charset);
+            }
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                return IoUtil.read(in, charset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private <T> HttpResponse.BodySubscriber<T> jsonHandler(HttpResponse.ResponseInfo info, JsonStreamReader<T> reader) {
+        if (info.statusCode() != 200) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        boolean gzip = info.headers().firstValue("Content-Encoding").map(v -> v.equalsIgnoreCase("gzip")).orElse(false);
+        return new JsonBodySubscriber<>(gzip, reader, receivedBytes);
+    }
+
+    private Charset parseCharset(String contentType) {
+        for (String part : contentType.split(";")) {
+            String trim = part.trim();
+            if (trim.regionMatches(true, 0, "charset=", 0, 8)) {
+                try {
+                    return Charset.forName(trim.substring(8).replace("\"", ""));
+                } catch (Exception e) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,373 @@
+package com.zan.csgo.crawler.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/18 15:25
+ * @ClassName: JsonBodySubscriber
+ * @Description : 流式 JSON 响应订阅者
+ *                每收到一块数据就 (需要时先增量解压) 喂给 Jackson 的非阻塞解析器，当场切成 token，原始字节不再攒着；
+ *                解析出的第一个 token 不是 JSON 对象 (WAF 的 HTML 页面，gzip 压缩的也一样) 立即取消订阅、不再接收剩余内容。
+ *                边解析边按读取器声明的字段路径过滤：只有路径上的 token 暂存进 TokenBuffer，其余子树按深度计数直接跳过，
+ *                跳过的字符串不会生成 String；响应结束后把过滤后的 token 交给读取器，整个过程不构建 JSON 树
+ */
+class JsonBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonStreamReader<T> reader;
+    private final AtomicLong receivedBytes;
+    private final GzipChunkInflater inflater;
+
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    private JsonParser parser;
+    private TokenBuffer tokens;
+    private boolean started;
+
+    /**
+     * 正在保留的容器 (对象 / 数组)，栈顶是当前所在的容器
+     */
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    /**
+     * 对象里下一个值对应的节点，null 表示该值跳过
+     */
+    private JsonFieldFilter nextField;
+
+    /**
+     * 正在跳过的子树深度，大于 0 时 token 一律丢弃
+     */
+    private int skipDepth;
+
+    JsonBodySubscriber(boolean gzip, JsonStreamReader<T> reader, AtomicLong receivedBytes) {
+        this.reader = reader;
+        this.receivedBytes = receivedBytes;
+        this.inflater = gzip ? new GzipChunkInflater() : null;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        try {
+            parser = JSON_FACTORY.createNonBlockingByteBufferParser();
+            tokens = new TokenBuffer(parser);
+        } catch (IOException e) {
+            subscription.cancel();
+            result.completeExceptionally(e);
+            return;
+        }
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            for (ByteBuffer buffer : items) {
+                receivedBytes.addAndGet(buffer.remaining());
+                if (inflater == null) {
+                    feed(buffer);
+                } else {
+                    inflater.inflate(buffer, this::feed);
+                }
+                if (result.isDone()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        release();
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            ((ByteBufferFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+            drain();
+            if (result.isDone()) {
+                return;
+            }
+            try (JsonParser buffered = tokens.asParser()) {
+                // 空响应体
+                if (buffered.nextToken() != JsonToken.START_OBJECT) {
+                    result.complete(null);
+                    return;
+                }
+                result.complete(reader.read(buffered));
+            }
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 喂一块 (解压后的) 数据并取出这块数据里能解析出的全部 token
+     */
+    private void feed(ByteBuffer buffer) throws IOException {
+        if (result.isDone() || !buffer.hasRemaining()) {
+            return;
+        }
+        ((ByteBufferFeeder) parser.getNonBlockingInputFeeder()).feedInput(buffer);
+        drain();
+    }
+
+    private void drain() throws IOException {
+        while (!result.isDone()) {
+            JsonToken token;
+            try {
+                token = parser.nextToken();
+            } catch (JsonParseException e) {
+                if (started) {
+                    throw e;
+                }
+                // 首个字符就不是 JSON (HTML 页面)
+                reject();
+                return;
+            }
+            if (token == null || token == JsonToken.NOT_AVAILABLE) {
+                return;
+            }
+            if (!started) {
+                started = true;
+                if (token != JsonToken.START_OBJECT) {
+                    reject();
+                    return;
+                }
+                frames.push(new Frame(reader.fields(), false));
+                tokens.copyCurrentEvent(parser);
+                continue;
+            }
+            filter(token);
+        }
+    }
+
+    /**
+     * 按字段路径决定这个 token 是暂存还是跳过
+     */
+    private void filter(JsonToken token) throws IOException {
+        if (skipDepth > 0) {
+            if (token.isStructStart()) {
+                skipDepth++;
+            } else if (token.isStructEnd()) {
+                skipDepth--;
+            }
+            return;
+        }
+        if (token.isStructEnd()) {
+            frames.pop();
+            tokens.copyCurrentEvent(parser);
+            return;
+        }
+        Frame frame = frames.peek();
+        if (frame == null) {
+            return; // 根对象之后的多余内容
+        }
+        if (token == JsonToken.FIELD_NAME) {
+            nextField = frame.node.field(parser.currentName());
+            if (nextField != null) {
+                tokens.copyCurrentEvent(parser);
+            }
+            return;
+        }
+        // 值：对象里看字段名对应的节点，数组里看元素节点
+        JsonFieldFilter node = frame.array ? frame.node.element() : nextField;
+        nextField = null;
+        if (node == null) {
+            if (token.isStructStart()) {
+                skipDepth = 1;
+            }
+            return;
+        }
+        if (token.isStructStart()) {
+            frames.push(new Frame(node, token == JsonToken.START_ARRAY));
+        }
+        tokens.copyCurrentEvent(parser);
+    }
+
+    /**
+     * 不是 JSON 对象：取消订阅，剩余内容不再接收
+     */
+    private void reject() {
+        subscription.cancel();
+        release();
+        result.complete(null);
+    }
+
+    private void fail(Exception e) {
+        subscription.cancel();
+        release();
+        result.completeExceptionally(e);
+    }
+
+    private void release() {
+        try {
+            if (parser != null) {
+                parser.close();
+            }
+        } catch (IOException ignored) {
+            // 非阻塞解析器没有底层资源
+        }
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 保留中的容器及其对应的路径节点
+     */
+    private static class Frame {
+
+        private final JsonFieldFilter node;
+        private final boolean array;
+
+        Frame(JsonFieldFilter node, boolean array) {
+            this.node = node;
+            this.array = array;
+        }
+    }
+
+    /**
+     * 数据块回调
+     */
+    @FunctionalInterface
+    private interface ChunkSink {
+
+        void accept(ByteBuffer chunk) throws IOException;
+    }
+
+    /**
+     * 增量 gzip 解压：先攒齐 gzip 头 (可能跨块)，之后每块压缩数据解压多少就交出去多少
+     * 只处理单个 gzip 成员 (HTTP 响应都是)，尾部的 CRC 和长度不校验
+     */
+    private static class GzipChunkInflater {
+
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] out = new byte[8192];
+        private ByteArrayOutputStream header = new ByteArrayOutputStream(16);
+
+        void inflate(ByteBuffer buffer, ChunkSink sink) throws IOException {
+            if (header != null) {
+                while (buffer.hasRemaining()) {
+                    header.write(buffer.get());
+                }
+                byte[] bytes = header.toByteArray();
+                int length = headerLength(bytes);
+                if (length < 0) {
+                    return; // 头还没收全
+                }
+                header = null;
+                buffer = ByteBuffer.wrap(bytes, length, bytes.length - length);
+            }
+            if (inflater.finished() || !buffer.hasRemaining()) {
+                return;
+            }
+            inflater.setInput(buffer);
+            try {
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(out);
+                    if (n > 0) {
+                        // 同步交给解析器消费完，out 才会被下一轮覆盖
+                        sink.accept(ByteBuffer.wrap(out, 0, n));
+                    } else if (inflater.needsInput() || inflater.needsDictionary()) {
+                        break;
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        void end() {
+            inflater.end();
+        }
+
+        /**
+         * gzip 头长度 (RFC 1952)
+         *
+         * @return 还没收全时返回 -1
+         */
+        private static int headerLength(byte[] b) throws ZipException {
+            if (b.length < 10) {
+                return -1;
+            }
+            if ((b[0] & 0xFF) != 0x1F || (b[1] & 0xFF) != 0x8B || b[2] != 8) {
+                throw new ZipException("不是 gzip 格式");
+            }
+            int flags = b[3] & 0xFF;
+            int pos = 10;
+            if ((flags & FEXTRA) != 0) {
+                if (b.length < pos + 2) {
+                    return -1;
+                }
+                pos += 2 + ((b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                pos = skipZeroTerminated(b, pos);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                pos = skipZeroTerminated(b, pos);
+            }
+            if ((flags & FHCRC) != 0 && pos >= 0) {
+                pos += 2;
+            }
+            return pos < 0 || pos > b.length ? -1 : pos;
+        }
+
+        private static int skipZeroTerminated(byte[] b, int pos) {
+            if (pos < 0) {
+                return -1;
+            }
+            for (int i = pos; i < b.length; i++) {
+                if (b[i] == 0) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+    }
+}
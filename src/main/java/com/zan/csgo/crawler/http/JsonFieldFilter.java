@@ -0,0 +1,73 @@
+package com.zan.csgo.crawler.http;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/24 21:10
+ * @ClassName: JsonFieldFilter
+ * @Description : 响应体字段路径过滤
+ *                路径用 "." 分隔字段，"[]" 表示数组的每个元素，如 "data.items[].sell_min_price"；
+ *                路径指到对象或数组时整个子树都保留。解析时只有路径上的 token 会交给读取器，其余在字节层面跳过
+ */
+public final class JsonFieldFilter {
+
+    /**
+     * 全部保留
+     */
+    public static final JsonFieldFilter ALL = new JsonFieldFilter(true);
+
+    /**
+     * 命中路径末端，整个子树保留
+     */
+    private final boolean keepAll;
+
+    private final Map<String, JsonFieldFilter> fields = new HashMap<>();
+
+    private JsonFieldFilter element;
+
+    private JsonFieldFilter(boolean keepAll) {
+        this.keepAll = keepAll;
+    }
+
+    public static JsonFieldFilter of(String... paths) {
+        JsonFieldFilter root = new JsonFieldFilter(false);
+        for (String path : paths) {
+            String[] segments = path.split("\\.");
+            JsonFieldFilter node = root;
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                boolean array = segment.endsWith("[]");
+                String name = array ? segment.substring(0, segment.length() - 2) : segment;
+                boolean last = i == segments.length - 1;
+                node = node.fields.computeIfAbsent(name, k -> new JsonFieldFilter(last && !array));
+                if (array) {
+                    if (node.element == null) {
+                        node.element = new JsonFieldFilter(last);
+                    }
+                    node = node.element;
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * 对象里某个字段对应的节点
+     *
+     * @return null 表示这个字段不需要
+     */
+    JsonFieldFilter field(String name) {
+        return keepAll ? this : fields.get(name);
+    }
+
+    /**
+     * 数组元素对应的节点
+     *
+     * @return null 表示数组元素不需要
+     */
+    JsonFieldFilter element() {
+        return keepAll ? this : element;
+    }
+}
@@ -0,0 +1,49 @@
+package com.zan.csgo.crawler.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/18 15:20
+ * @ClassName: JsonStreamReader
+ * @Description : 响应体流式读取器：直接从 JsonParser 的 token 流里摘出需要的字段，不构建 JSON 树
+ */
+@FunctionalInterface
+public interface JsonStreamReader<T> {
+
+    /**
+     * 读取响应
+     *
+     * @param parser 已定位在根对象的 START_OBJECT 上
+     */
+    T read(JsonParser parser) throws IOException;
+
+    /**
+     * 读取器需要的字段，默认全部保留
+     */
+    default JsonFieldFilter fields() {
+        return JsonFieldFilter.ALL;
+    }
+
+    /**
+     * 只保留指定路径的读取器，其余字段解析时直接跳过、不会交给读取器
+     *
+     * @param paths 字段路径，见 {@link JsonFieldFilter}
+     */
+    static <T> JsonStreamReader<T> select(JsonStreamReader<T> reader, String... paths) {
+        JsonFieldFilter filter = JsonFieldFilter.of(paths);
+        return new JsonStreamReader<>() {
+            @Override
+            public T read(JsonParser parser) throws IOException {
+                return reader.read(parser);
+            }
+
+            @Override
+            public JsonFieldFilter fields() {
+                return filter;
+            }
+        };
+    }
+}
@@ -0,0 +1,196 @@
+package com.zan.csgo.crawler.limiter;
+
+import com.zan.csgo.enums.PlatformEnum;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/17 15:20
+ * @ClassName: AdaptiveBatchController
+ * @Description : 自适应批量大小 (AIMD：加性增、乘性减)
+ *                每个平台单独维护一个批量大小：请求顺利 (耗时低、没被 WAF 拦) 就逐步加大，
+ *                一旦被封/超时/返回 HTML 就直接砍半，批量大小会自己收敛到平台当前能承受的水平
+ */
+@Component
+@Slf4j
+public class AdaptiveBatchController {
+
+    @Value("${csgo.batch.buff.initial:80}")
+    private int buffInitial;
+
+    @Value("${csgo.batch.buff.min:10}")
+    private int buffMin;
+
+    @Value("${csgo.batch.buff.max:200}")
+    private int buffMax;
+
+    @Value("${csgo.batch.buff.target-latency-ms:5000}")
+    private long buffTargetLatencyMs; // 单次批量请求耗时超过该值视为平台吃力
+
+    @Value("${csgo.batch.youpin.initial:50}")
+    private int youpinInitial;
+
+    @Value("${csgo.batch.youpin.min:10}")
+    private int youpinMin;
+
+    @Value("${csgo.batch.youpin.max:100}")
+    private int youpinMax;
+
+    @Value("${csgo.batch.youpin.target-latency-ms:5000}")
+    private long youpinTargetLatencyMs;
+
+    @Value("${csgo.batch.steam.initial:20}")
+    private int steamInitial;
+
+    @Value("${csgo.batch.steam.min:5}")
+    private int steamMin;
+
+    @Value("${csgo.batch.steam.max:80}")
+    private int steamMax;
+
+    @Value("${csgo.batch.steam.target-latency-ms:60000}")
+    private long steamTargetLatencyMs; // Steam 是逐个请求 + 限流，一批耗时天然较长
+
+    @Value("${csgo.batch.increase-step:5}")
+    private int increaseStep; // 加性增：每次顺利完成后增加的条数
+
+    @Value("${csgo.batch.decrease-factor:0.5}")
+    private double decreaseFactor; // 乘性减：出问题后乘以该系数
+
+    private final Map<PlatformEnum, BatchState> stateMap = new EnumMap<>(PlatformEnum.class);
+
+    @PostConstruct
+    public void init() {
+        stateMap.put(PlatformEnum.BUFF, new BatchState(buffInitial, buffMin, buffMax, buffTargetLatencyMs));
+        stateMap.put(PlatformEnum.YOUPIN, new BatchState(youpinInitial, youpinMin, youpinMax, youpinTargetLatencyMs));
+        stateMap.put(PlatformEnum.STEAM, new BatchState(steamInitial, steamMin, steamMax, steamTargetLatencyMs));
+    }
+
+    /**
+     * 平台当前的批量大小
+     */
+    public int currentSize(PlatformEnum platformEnum) {
+        BatchState state = stateMap.get(platformEnum);
+        return state == null ? buffInitial : state.size;
+    }
+
+    /**
+     * 工人一次领取的饰品数：取各平台中最大的批量
+     * 各平台再按自己的批量切小批，按最小的领会让其他平台的小批永远凑不满、批量涨不上去，请求数反而翻几倍
+     * 最吃力的平台 (Steam) 多切出的小批在它自己的平台超时内排队发完，到点还没发的下一轮再抓
+     */
+    public int claimSize() {
+        return stateMap.values().stream().mapToInt(state -> state.size).max().orElse(buffInitial);
+    }
+
+    /**
+     * 记录一次 WAF 拦截 / HTML 响应 / 429 (策略内部重试前调用)
+     */
+    public void recordRejection(PlatformEnum platformEnum) {
+        BatchState state = stateMap.get(platformEnum);
+        if (state != null) {
+            state.rejections.incrementAndGet();
+        }
+    }
+
+    /**
+     * 一批请求成功返回：期间没有被拦且耗时正常则加性增，否则乘性减
+     * 只有这一批真的用满了当前批量才加大，凑不满的尾批不会让批量空涨到上限
+     *
+     * @param itemCount 这一批实际请求的饰品数
+     */
+    public void onSuccess(PlatformEnum platformEnum, long latencyMs, int itemCount) {
+        BatchState state = stateMap.get(platformEnum);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            long rejections = state.rejections.getAndSet(0);
+            if (rejections > 0 || latencyMs > state.targetLatencyMs) {
+                decrease(platformEnum, state, rejections > 0 ? "期间被拦截 " + rejections + " 次" : "耗时 " + latencyMs + "ms");
+            } else if (itemCount >= state.size) {
+                state.size = Math.min(state.max, state.size + increaseStep);
+            }
+            state.successCount++;
+        }
+    }
+
+    /**
+     * 一批请求失败 (被封 / 超时 / 重试耗尽)：乘性减
+     */
+    public void onFailure(PlatformEnum platformEnum, String reason) {
+        BatchState state = stateMap.get(platformEnum);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.rejections.set(0);
+            decrease(platformEnum, state, reason);
+            state.failureCount++;
+        }
+    }
+
+    /**
+     * 各平台当前批量大小及调整统计
+     */
+    public Map<String, Object> getBatchStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("claimSize", claimSize());
+        stateMap.forEach((platformEnum, state) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("size", state.size);
+            item.put("min", state.min);
+            item.put("max", state.max);
+            item.put("targetLatencyMs", state.targetLatencyMs);
+            item.put("successCount", state.successCount);
+            item.put("failureCount", state.failureCount);
+            item.put("decreaseCount", state.decreaseCount);
+            stats.put(platformEnum.name(), item);
+        });
+        return stats;
+    }
+
+    private void decrease(PlatformEnum platformEnum, BatchState state, String reason) {
+        int old = state.size;
+        state.size = Math.max(state.min, (int) (state.size * decreaseFactor));
+        state.decreaseCount++;
+        log.warn("📉 [批量调节] {} 批量 {} -> {} ({})", platformEnum.getName(), old, state.size, reason);
+    }
+
+    /**
+     * 单个平台的批量状态
+     */
+    private static class BatchState {
+
+        private final int min;
+
+        private final int max;
+
+        private final long targetLatencyMs;
+
+        private final AtomicLong rejections = new AtomicLong();
+
+        private volatile int size;
+
+        private long successCount;
+
+        private long failureCount;
+
+        private long decreaseCount;
+
+        private BatchState(int initial, int min, int max, long targetLatencyMs) {
+            this.min = min;
+            this.max = max;
+            this.targetLatencyMs = targetLatencyMs;
+            this.size = Math.max(min, Math.min(max, initial));
+        }
+    }
+}
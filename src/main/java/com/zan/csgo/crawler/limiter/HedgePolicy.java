@@ -0,0 +1,187 @@
+package com.zan.csgo.crawler.limiter;
+
+import com.zan.csgo.enums.PlatformEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/18 17:10
+ * @ClassName: HedgePolicy
+ * @Description : 对冲请求策略 (压尾延迟)
+ *                每个平台记录最近一段时间的请求耗时，主请求超过第 N 百分位还没回来，就换一个代理再发一份，谁先回来用谁；
+ *                对冲次数受预算约束：每个主请求只积累 budget-ratio 个对冲额度，整体多发的请求不会超过这个比例
+ */
+@Component
+@Slf4j
+public class HedgePolicy {
+
+    @Value("${csgo.hedge.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csgo.hedge.percentile:95}")
+    private double percentile; // 主请求耗时超过最近耗时的该百分位时发起对冲
+
+    @Value("${csgo.hedge.window:200}")
+    private int window; // 参与统计的最近请求数
+
+    @Value("${csgo.hedge.min-samples:20}")
+    private int minSamples; // 样本不足时用 max-delay-ms，避免冷启动时乱对冲
+
+    @Value("${csgo.hedge.min-delay-ms:300}")
+    private long minDelayMs; // 对冲等待下限，防止平台很快时几乎每个请求都对冲
+
+    @Value("${csgo.hedge.max-delay-ms:4000}")
+    private long maxDelayMs; // 对冲等待上限 (要明显小于请求超时才有意义)
+
+    @Value("${csgo.hedge.budget-ratio:0.1}")
+    private double budgetRatio; // 每个主请求积累的对冲额度 (0.1 = 最多多发 10% 的请求)
+
+    @Value("${csgo.hedge.budget-burst:10}")
+    private double budgetBurst; // 额度累积上限
+
+    private final Map<PlatformEnum, HedgeState> stateMap = new ConcurrentHashMap<>();
+
+    /**
+     * 主请求发出前调用：积累对冲额度
+     */
+    public void recordPrimary(PlatformEnum platformEnum) {
+        state(platformEnum).addBudget();
+    }
+
+    /**
+     * 记录一次成功请求的耗时 (失败的请求不计入，超时样本会把百分位拉到请求超时上)
+     */
+    public void recordLatency(PlatformEnum platformEnum, long latencyMs) {
+        state(platformEnum).record(latencyMs);
+    }
+
+    /**
+     * 主请求发出后等待多久还没回来就发对冲请求
+     *
+     * @return 等待毫秒数；未开启对冲时返回 -1
+     */
+    public long hedgeDelayMs(PlatformEnum platformEnum) {
+        if (!enabled) {
+            return -1;
+        }
+        return state(platformEnum).delayMs();
+    }
+
+    /**
+     * 申请一次对冲额度
+     */
+    public boolean tryAcquireHedge(PlatformEnum platformEnum) {
+        return enabled && state(platformEnum).tryTakeBudget();
+    }
+
+    /**
+     * 记录对冲请求胜出 (对冲请求比主请求先拿到有效响应)
+     */
+    public void recordHedgeWin(PlatformEnum platformEnum) {
+        state(platformEnum).recordHedgeWin();
+    }
+
+    /**
+     * 对冲运行指标：当前等待阈值、对冲次数、胜出次数、预算拒绝次数
+     */
+    public Map<String, Object> getHedgeStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("percentile", percentile);
+        stats.put("budgetRatio", budgetRatio);
+        for (PlatformEnum platformEnum : List.of(PlatformEnum.BUFF, PlatformEnum.YOUPIN, PlatformEnum.STEAM)) {
+            HedgeState state = stateMap.get(platformEnum);
+            if (state != null) {
+                stats.put(platformEnum.name(), state.snapshot());
+            }
+        }
+        return stats;
+    }
+
+    private HedgeState state(PlatformEnum platformEnum) {
+        return stateMap.computeIfAbsent(platformEnum, k -> new HedgeState(window));
+    }
+
+    /**
+     * 单个平台的耗时窗口 + 对冲预算
+     */
+    private class HedgeState {
+
+        private final long[] samples;
+        private int count;
+        private int cursor;
+        private long cachedDelayMs = -1;
+
+        private double budget;
+        private long primaryCount;
+        private long hedgeCount;
+        private long hedgeWinCount;
+        private long deniedCount;
+
+        HedgeState(int window) {
+            this.samples = new long[Math.max(window, 1)];
+        }
+
+        synchronized void record(long latencyMs) {
+            samples[cursor] = latencyMs;
+            cursor = (cursor + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            cachedDelayMs = -1;
+        }
+
+        synchronized long delayMs() {
+            if (count < minSamples) {
+                return maxDelayMs;
+            }
+            if (cachedDelayMs < 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+                long value = sorted[Math.min(Math.max(index, 0), count - 1)];
+                cachedDelayMs = Math.min(Math.max(value, minDelayMs), maxDelayMs);
+            }
+            return cachedDelayMs;
+        }
+
+        synchronized void addBudget() {
+            primaryCount++;
+            budget = Math.min(budgetBurst, budget + budgetRatio);
+        }
+
+        synchronized boolean tryTakeBudget() {
+            if (budget < 1) {
+                deniedCount++;
+                return false;
+            }
+            budget -= 1;
+            hedgeCount++;
+            return true;
+        }
+
+        synchronized void recordHedgeWin() {
+            hedgeWinCount++;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("samples", count);
+            item.put("hedgeDelayMs", delayMs());
+            item.put("budget", budget);
+            item.put("primary", primaryCount);
+            item.put("hedged", hedgeCount);
+            item.put("hedgeWins", hedgeWinCount);
+            item.put("budgetDenied", deniedCount);
+            return item;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.zan.csgo.crawler.limiter;
+
+import cn.hutool.core.thread.ThreadUtil;
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.PlatformEnum;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/17 10:05
+ * @ClassName: PlatformRateLimiter
+ * @Description : 分布式令牌桶限流 (Redis + Lua)
+ *                每个平台一个桶，可选再叠加每个代理一个桶；所有节点共享同一组桶，
+ *                集群整体恰好按配置速率发请求，取代以前散落在各处的随机休眠
+ */
+@Component
+@Slf4j
+public class PlatformRateLimiter {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${csgo.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csgo.limiter.buff.rate:2}")
+    private double buffRate; // Buff 每秒请求数 (集群)
+
+    @Value("${csgo.limiter.buff.burst:4}")
+    private double buffBurst; // Buff 突发上限
+
+    @Value("${csgo.limiter.youpin.rate:2}")
+    private double youpinRate; // 悠悠 每秒请求数 (集群)
+
+    @Value("${csgo.limiter.youpin.burst:4}")
+    private double youpinBurst; // 悠悠 突发上限
+
+    @Value("${csgo.limiter.steam.rate:1}")
+    private double steamRate; // Steam 每秒请求数 (集群)，Steam 风控最严
+
+    @Value("${csgo.limiter.steam.burst:3}")
+    private double steamBurst; // Steam 突发上限
+
+    @Value("${csgo.limiter.proxy.rate:0.5}")
+    private double proxyRate; // 单个代理在单个平台上的每秒请求数，<=0 表示不限制单代理
+
+    @Value("${csgo.limiter.proxy.burst:2}")
+    private double proxyBurst; // 单个代理突发上限
+
+    @Value("${csgo.limiter.fallback-delay-ms:1000}")
+    private long fallbackDelayMs; // Redis 不可用时的兜底间隔，宁可慢也不要失控
+
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        TOKEN_BUCKET_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/token_bucket.lua")));
+        TOKEN_BUCKET_SCRIPT.setResultType(Long.class);
+    }
+
+    // --- 运行指标 (本节点) ---
+    private final Map<PlatformEnum, AtomicLong> grantedMap = new ConcurrentHashMap<>();
+    private final Map<PlatformEnum, AtomicLong> waitedMsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取平台令牌 (阻塞直到拿到)
+     */
+    public void acquire(PlatformEnum platformEnum) {
+        acquire(platformEnum, null);
+    }
+
+    /**
+     * 获取平台令牌 + 代理令牌 (阻塞直到两个桶都有令牌)
+     *
+     * @param proxy 本次使用的代理，直连传 null (只受平台桶限制)
+     */
+    public void acquire(PlatformEnum platformEnum, Proxy proxy) {
+        if (!enabled) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(2);
+        List<String> args = new ArrayList<>(5);
+        buildBucketArgs(platformEnum, proxy, keys, args);
+
+        long waited = 0;
+        while (true) {
+            long wait;
+            try {
+                wait = tryAcquire(keys, args);
+            } catch (Exception e) {
+                log.warn("⚠️ [限流] Redis 令牌桶不可用，按兜底间隔 {}ms 放行: {}", fallbackDelayMs, e.getMessage());
+                ThreadUtil.sleep(fallbackDelayMs);
+                waited += fallbackDelayMs;
+                break;
+            }
+            if (wait <= 0) {
+                break;
+            }
+            // 其他节点/线程也在等同一个桶，醒来后重新竞争
+            ThreadUtil.sleep(wait);
+            waited += wait;
+        }
+        recordGranted(platformEnum, waited);
+    }
+
+    /**
+     * 异步获取令牌：没有令牌时用定时器在需要等待的时间后重试，等待期间不占用线程
+     */
+    public CompletableFuture<Void> acquireAsync(PlatformEnum platformEnum, Proxy proxy) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<String> keys = new ArrayList<>(2);
+        List<String> args = new ArrayList<>(5);
+        buildBucketArgs(platformEnum, proxy, keys, args);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        tryAcquireAsync(platformEnum, keys, args, 0, future);
+        return future;
+    }
+
+    /**
+     * 异步获取单代理令牌 (不经过平台桶)：按代理调度的平台由调度器控制每个 IP 的节奏，
+     * 这里只保证集群内多个节点合起来也不会超过单代理速率；直连时仍受平台桶限制
+     */
+    public CompletableFuture<Void> acquireProxyAsync(PlatformEnum platformEnum, Proxy proxy) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String proxyAddress = proxyAddress(proxy);
+        if (proxyAddress == null) {
+            return acquireAsync(platformEnum, null);
+        }
+        if (proxyRate <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<String> keys = List.of(RedisKeyConstant.LIMITER_PREFIX + platformEnum.getCode() + ":proxy:" + proxyAddress);
+        List<String> args = List.of("1", String.valueOf(proxyRate), String.valueOf(proxyBurst));
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        tryAcquireAsync(platformEnum, keys, args, 0, future);
+        return future;
+    }
+
+    private void tryAcquireAsync(PlatformEnum platformEnum, List<String> keys, List<String> args, long waited, CompletableFuture<Void> future) {
+        long wait;
+        try {
+            wait = tryAcquire(keys, args);
+        } catch (Exception e) {
+            // 兜底间隔同样交给定时器，不阻塞调用线程
+            log.warn("⚠️ [限流] Redis 令牌桶不可用，按兜底间隔 {}ms 放行: {}", fallbackDelayMs, e.getMessage());
+            CompletableFuture.runAsync(() -> {
+                recordGranted(platformEnum, waited + fallbackDelayMs);
+                future.complete(null);
+            }, CompletableFuture.delayedExecutor(fallbackDelayMs, TimeUnit.MILLISECONDS));
+            return;
+        }
+        if (wait <= 0) {
+            recordGranted(platformEnum, waited);
+            future.complete(null);
+            return;
+        }
+        CompletableFuture.runAsync(() -> tryAcquireAsync(platformEnum, keys, args, waited + wait, future),
+                CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 执行一次令牌桶脚本
+     *
+     * @return 0 表示拿到令牌；>0 表示还需等待的毫秒数
+     */
+    private long tryAcquire(List<String> keys, List<String> args) {
+        Long wait = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT, keys, args.toArray());
+        return wait == null ? 0 : wait;
+    }
+
+    private void recordGranted(PlatformEnum platformEnum, long waited) {
+        grantedMap.computeIfAbsent(platformEnum, k -> new AtomicLong()).incrementAndGet();
+        waitedMsMap.computeIfAbsent(platformEnum, k -> new AtomicLong()).addAndGet(waited);
+    }
+
+    private void buildBucketArgs(PlatformEnum platformEnum, Proxy proxy, List<String> keys, List<String> args) {
+        args.add("1");
+
+        String platformKey = RedisKeyConstant.LIMITER_PREFIX + platformEnum.getCode();
+        keys.add(platformKey);
+        args.add(String.valueOf(rateOf(platformEnum)));
+        args.add(String.valueOf(burstOf(platformEnum)));
+
+        String proxyAddress = proxyAddress(proxy);
+        if (proxyAddress != null && proxyRate > 0) {
+            keys.add(platformKey + ":proxy:" + proxyAddress);
+            args.add(String.valueOf(proxyRate));
+            args.add(String.valueOf(proxyBurst));
+        }
+    }
+
+    /**
+     * 限流运行指标：各平台配置速率、本节点累计放行次数和等待时长
+     */
+    public Map<String, Object> getLimiterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (PlatformEnum platformEnum : List.of(PlatformEnum.BUFF, PlatformEnum.YOUPIN, PlatformEnum.STEAM)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("rate", rateOf(platformEnum));
+            item.put("burst", burstOf(platformEnum));
+            item.put("granted", grantedMap.getOrDefault(platformEnum, new AtomicLong()).get());
+            item.put("waitedMs", waitedMsMap.getOrDefault(platformEnum, new AtomicLong()).get());
+            stats.put(platformEnum.name(), item);
+        }
+        stats.put("proxyRate", proxyRate);
+        stats.put("proxyBurst", proxyBurst);
+        return stats;
+    }
+
+    private double rateOf(PlatformEnum platformEnum) {
+        return switch (platformEnum) {
+            case BUFF -> buffRate;
+            case YOUPIN -> youpinRate;
+            case STEAM -> steamRate;
+            default -> 1;
+        };
+    }
+
+    private double burstOf(PlatformEnum platformEnum) {
+        return switch (platformEnum) {
+            case BUFF -> buffBurst;
+            case YOUPIN -> youpinBurst;
+            case STEAM -> steamBurst;
+            default -> 1;
+        };
+    }
+
+    private String proxyAddress(Proxy proxy) {
+        if (proxy == null || !(proxy.address() instanceof InetSocketAddress address)) {
+            return null;
+        }
+        return address.getHostString() + ":" + address.getPort();
+    }
+}
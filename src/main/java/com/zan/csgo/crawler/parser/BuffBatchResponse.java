@@ -0,0 +1,115 @@
+package com.zan.csgo.crawler.parser;
+
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zan.csgo.crawler.http.JsonStreamReader;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.model.dto.PriceFetchResultDTO;
+import lombok.Data;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/18 15:40
+ * @ClassName: BuffBatchResponse
+ * @Description : Buff 批量列表接口响应 (流式解析)
+ *                一页 80 个商品，每个商品带了大量 goods_info / tags 等嵌套字段，这里只取 id 和 sell_min_price，
+ *                其余字段在 token 层面直接跳过
+ */
+@Data
+public class BuffBatchResponse {
+
+    /**
+     * 业务状态码，成功为 "OK"
+     */
+    private String code;
+
+    /**
+     * 业务错误信息 (如 "Login Required")
+     */
+    private String error;
+
+    /**
+     * 有在售价格的商品
+     */
+    private List<PriceFetchResultDTO> items = new ArrayList<>();
+
+    public boolean isOk() {
+        return "OK".equals(code);
+    }
+
+    /**
+     * 响应体读取器：只取状态、商品 id 和最低价，goods_info / tags 等嵌套字段解析时直接跳过
+     */
+    public static final JsonStreamReader<BuffBatchResponse> READER = JsonStreamReader.select(BuffBatchResponse::read,
+            "code", "error", "data.items[].id", "data.items[].sell_min_price");
+
+    /**
+     * 从根对象开始读取
+     */
+    public static BuffBatchResponse read(JsonParser parser) throws IOException {
+        BuffBatchResponse response = new BuffBatchResponse();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "code" -> response.code = parser.getValueAsString();
+                case "error" -> response.error = parser.getValueAsString();
+                case "data" -> readData(parser, response);
+                default -> parser.skipChildren();
+            }
+        }
+        return response;
+    }
+
+    private static void readData(JsonParser parser, BuffBatchResponse response) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("items".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readItem(parser, response.items);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readItem(JsonParser parser, List<PriceFetchResultDTO> items) throws IOException {
+        String id = null;
+        String price = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = parser.getValueAsString();
+                // 注意：列表页最低价字段是 sell_min_price (字符串)
+                case "sell_min_price" -> price = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        if (StrUtil.isBlank(id) || StrUtil.isBlank(price)) {
+            return;
+        }
+        try {
+            items.add(PriceFetchResultDTO.builder()
+                    .success(true)
+                    .platform(PlatformEnum.BUFF.getName())
+                    .targetId(id)
+                    .price(new BigDecimal(price))
+                    .build());
+        } catch (NumberFormatException ignored) {
+            // 价格格式异常的商品当作没抓到，由上层按缺失处理
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.zan.csgo.crawler.parser;
+
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zan.csgo.crawler.http.JsonStreamReader;
+import lombok.Data;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/19 10:20
+ * @ClassName: BuffSearchResponse
+ * @Description : Buff 搜索接口响应 (流式解析)
+ *                一页结果里每个商品都带 market_hash_name 和 id，整页都能拿来建立映射，不只是要找的那一个
+ */
+@Data
+public class BuffSearchResponse {
+
+    /**
+     * 业务状态码，成功为 "OK"
+     */
+    private String code;
+
+    /**
+     * 业务错误信息
+     */
+    private String error;
+
+    /**
+     * 总页数
+     */
+    private int totalPage;
+
+    /**
+     * 本页商品：market_hash_name -> goods_id
+     */
+    private Map<String, Long> goodsIdMap = new LinkedHashMap<>();
+
+    public boolean isOk() {
+        return "OK".equals(code);
+    }
+
+    /**
+     * 响应体读取器：只取状态、总页数和商品的 id / market_hash_name
+     */
+    public static final JsonStreamReader<BuffSearchResponse> READER = JsonStreamReader.select(BuffSearchResponse::read,
+            "code", "error", "data.total_page", "data.items[].id", "data.items[].market_hash_name");
+
+    /**
+     * 从根对象开始读取
+     */
+    public static BuffSearchResponse read(JsonParser parser) throws IOException {
+        BuffSearchResponse response = new BuffSearchResponse();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "code" -> response.code = parser.getValueAsString();
+                case "error" -> response.error = parser.getValueAsString();
+                case "data" -> readData(parser, response);
+                default -> parser.skipChildren();
+            }
+        }
+        return response;
+    }
+
+    private static void readData(JsonParser parser, BuffSearchResponse response) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("total_page".equals(field)) {
+                response.totalPage = parser.getValueAsInt();
+            } else if ("items".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readItem(parser, response.goodsIdMap);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readItem(JsonParser parser, Map<String, Long> goodsIdMap) throws IOException {
+        String hashName = null;
+        long id = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = parser.getValueAsLong();
+                case "market_hash_name" -> hashName = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        if (StrUtil.isNotBlank(hashName) && id > 0) {
+            goodsIdMap.put(hashName, id);
+        }
+    }
+}
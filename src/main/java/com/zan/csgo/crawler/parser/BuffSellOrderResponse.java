@@ -0,0 +1,111 @@
+package com.zan.csgo.crawler.parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zan.csgo.crawler.http.JsonStreamReader;
+import lombok.Data;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/18 17:30
+ * @ClassName: BuffSellOrderResponse
+ * @Description : Buff 单品在售列表接口响应 (流式解析)
+ *                在售列表按价格升序，只取第一条的 price 作为最低价，以及 total_count 作为在售数量
+ */
+@Data
+public class BuffSellOrderResponse {
+
+    /**
+     * 业务状态码，成功为 "OK"
+     */
+    private String code;
+
+    /**
+     * 业务错误信息 (如 "Login Required")
+     */
+    private String error;
+
+    /**
+     * 最低在售价，没有在售时为 null
+     */
+    private BigDecimal lowestPrice;
+
+    /**
+     * 在售数量
+     */
+    private Integer totalCount;
+
+    public boolean isOk() {
+        return "OK".equals(code);
+    }
+
+    /**
+     * 响应体读取器：只取状态、在售数量和每条在售的价格，卖家 / 资产信息解析时直接跳过
+     */
+    public static final JsonStreamReader<BuffSellOrderResponse> READER = JsonStreamReader.select(BuffSellOrderResponse::read,
+            "code", "error", "data.total_count", "data.items[].price");
+
+    /**
+     * 从根对象开始读取
+     */
+    public static BuffSellOrderResponse read(JsonParser parser) throws IOException {
+        BuffSellOrderResponse response = new BuffSellOrderResponse();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "code" -> response.code = parser.getValueAsString();
+                case "error" -> response.error = parser.getValueAsString();
+                case "data" -> readData(parser, response);
+                default -> parser.skipChildren();
+            }
+        }
+        return response;
+    }
+
+    private static void readData(JsonParser parser, BuffSellOrderResponse response) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("total_count".equals(field)) {
+                response.totalCount = parser.getValueAsInt();
+            } else if ("items".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                readItems(parser, response);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readItems(JsonParser parser, BuffSellOrderResponse response) throws IOException {
+        boolean first = true;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (!first) {
+                parser.skipChildren();
+                continue;
+            }
+            first = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("price".equals(field)) {
+                    String price = parser.getValueAsString();
+                    try {
+                        response.lowestPrice = price == null ? null : new BigDecimal(price);
+                    } catch (NumberFormatException ignored) {
+                        // 价格格式异常按无在售处理
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+}
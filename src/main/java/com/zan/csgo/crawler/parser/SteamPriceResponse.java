@@ -0,0 +1,58 @@
+package com.zan.csgo.crawler.parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zan.csgo.crawler.http.JsonStreamReader;
+import lombok.Data;
+
+import java.io.IOException;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/18 15:45
+ * @ClassName: SteamPriceResponse
+ * @Description : Steam priceoverview 接口响应 (流式解析)
+ *                示例: {"success":true,"lowest_price":"¥ 138.50","volume":"1,234","median_price":"¥ 140.00"}
+ */
+@Data
+public class SteamPriceResponse {
+
+    /**
+     * 成功标志
+     */
+    private boolean success;
+
+    /**
+     * 最低价原始字符串，如 "¥ 138.50"
+     */
+    private String lowestPrice;
+
+    /**
+     * 24 小时销量原始字符串，可能为空
+     */
+    private String volume;
+
+    /**
+     * 响应体读取器：只取成功标志、最低价和销量
+     */
+    public static final JsonStreamReader<SteamPriceResponse> READER = JsonStreamReader.select(SteamPriceResponse::read,
+            "success", "lowest_price", "volume");
+
+    /**
+     * 从根对象开始读取
+     */
+    public static SteamPriceResponse read(JsonParser parser) throws IOException {
+        SteamPriceResponse response = new SteamPriceResponse();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "success" -> response.success = parser.getValueAsBoolean();
+                case "lowest_price" -> response.lowestPrice = parser.getValueAsString();
+                case "volume" -> response.volume = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return response;
+    }
+}
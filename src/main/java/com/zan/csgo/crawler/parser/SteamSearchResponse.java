@@ -0,0 +1,110 @@
+package com.zan.csgo.crawler.parser;
+
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zan.csgo.crawler.http.JsonStreamReader;
+import lombok.Data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/19 15:10
+ * @ClassName: SteamSearchResponse
+ * @Description : Steam 市场搜索接口 (search/render?norender=1) 响应 (流式解析)
+ *                每行只取 hash_name、sell_price (最低在售价，单位为分)、sell_listings，
+ *                asset_description 等嵌套字段直接跳过
+ */
+@Data
+public class SteamSearchResponse {
+
+    /**
+     * 成功标志
+     */
+    private boolean success;
+
+    /**
+     * 本页起始下标
+     */
+    private int start;
+
+    /**
+     * 全部结果数
+     */
+    private int totalCount;
+
+    /**
+     * 本页结果
+     */
+    private List<Row> results = new ArrayList<>();
+
+    @Data
+    public static class Row {
+
+        /**
+         * 市场 HashName
+         */
+        private String hashName;
+
+        /**
+         * 最低在售价 (请求币种的分)
+         */
+        private long sellPrice;
+
+        /**
+         * 在售数量 (不是成交量)
+         */
+        private int sellListings;
+    }
+
+    /**
+     * 响应体读取器：只取分页信息和每行的 hash_name / sell_price / sell_listings，asset_description 解析时直接跳过
+     */
+    public static final JsonStreamReader<SteamSearchResponse> READER = JsonStreamReader.select(SteamSearchResponse::read,
+            "success", "start", "total_count", "results[].hash_name", "results[].sell_price", "results[].sell_listings");
+
+    /**
+     * 从根对象开始读取
+     */
+    public static SteamSearchResponse read(JsonParser parser) throws IOException {
+        SteamSearchResponse response = new SteamSearchResponse();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "success" -> response.success = parser.getValueAsBoolean();
+                case "start" -> response.start = parser.getValueAsInt();
+                case "total_count" -> response.totalCount = parser.getValueAsInt();
+                case "results" -> readResults(parser, response.results);
+                default -> parser.skipChildren();
+            }
+        }
+        return response;
+    }
+
+    private static void readResults(JsonParser parser, List<Row> results) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Row row = new Row();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "hash_name" -> row.hashName = parser.getValueAsString();
+                    case "sell_price" -> row.sellPrice = parser.getValueAsLong();
+                    case "sell_listings" -> row.sellListings = parser.getValueAsInt();
+                    default -> parser.skipChildren();
+                }
+            }
+            if (StrUtil.isNotBlank(row.hashName)) {
+                results.add(row);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.zan.csgo.crawler.proxy;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/22 10:05
+ * @ClassName: ProxyFetcher
+ * @Description : 代理进货接口（每个代理池一个实现，由补货控制器决定什么时候进、进多少）
+ */
+public interface ProxyFetcher {
+
+    /**
+     * 进货放入的代理池 Key
+     */
+    String getPoolKey();
+
+    /**
+     * 从代理商进货
+     *
+     * @param num 本次提取数量
+     * @return 实际入池的代理数
+     */
+    int fetchProxies(int num);
+}
@@ -0,0 +1,503 @@
+package com.zan.csgo.crawler.proxy;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.util.StrUtil;
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.crawler.http.CrawlerHttpClientManager;
+import com.zan.csgo.enums.PlatformEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/21 10:10
+ * @ClassName: ProxyRegistry
+ * @Description : 代理池本地镜像
+ *                以前每次请求都要 HKEYS 整个代理池再随机挑一个、重新解析 host:port；
+ *                现在每个池子在内存里维护一份解析好的 Proxy 数组 (写时复制，读无锁)，选代理 O(1) 且不分配对象。
+ *                与 Redis 的同步：本节点增删代理时通过 pub/sub 通知其他节点，另有定时全量对账兜底 (消息丢失、外部直接改 Redis)
+ *                过期：青果代理到 deadline 就失效，请求打上去只能等超时。每个池子另有一个按过期时间排序的 ZSet，
+ *                定时把快过期的代理提前移出；选代理时优先挑剩余寿命足够跑完一次请求的
+ */
+@Component
+@Slf4j
+public class ProxyRegistry implements MessageListener {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private CrawlerHttpClientManager httpClientManager;
+
+    private static final String OP_ADD = "+";
+
+    private static final String OP_REMOVE = "-";
+
+    private static final List<String> POOL_KEYS = List.of(RedisKeyConstant.PROXY_CN, RedisKeyConstant.PROXY_GLOBAL);
+
+    // 青果返回的 deadline 是北京时间
+    private static final ZoneId DEADLINE_ZONE = ZoneId.of("Asia/Shanghai");
+
+    // 没有过期时间的代理 (deadline 为空或格式不对) 视为一直有效
+    private static final long NEVER = Long.MAX_VALUE;
+
+    // 随机抽到剩余寿命不够的代理时最多重抽几次
+    private static final int MAX_PICK_TRIES = 4;
+
+    @Value("${csgo.proxy.expiry.evict-before-ms:10000}")
+    private long evictBeforeMs; // 距过期不到这么久就移出代理池 (不小于请求超时，避免请求途中过期)
+
+    @Value("${csgo.proxy.expiry.min-remaining-ms:30000}")
+    private long minRemainingMs; // 选代理时优先要求的剩余寿命
+
+    /**
+     * 池子 Key -> 当前快照 (整体替换，读的一方拿到的永远是完整的一份)
+     */
+    private final Map<String, PoolSnapshot> pools = new ConcurrentHashMap<>();
+
+    // --- 运行指标 ---
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong reconcileCount = new AtomicLong();
+    private final AtomicLong driftCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * 池子 Key -> 累计提前移出的代理数 (还没到期就被淘汰，含其他节点移出后通知过来的)，补货控制器据此估算消耗速度；
+     * 到期移出的不算在内，补货时已经按提前量内过期数单独扣除
+     */
+    private final Map<String, AtomicLong> evictedCounts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String poolKey : POOL_KEYS) {
+            pools.put(poolKey, PoolSnapshot.EMPTY);
+            evictedCounts.put(poolKey, new AtomicLong());
+        }
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(RedisKeyConstant.PROXY_EVENT_CHANNEL));
+        reconcile();
+    }
+
+    /**
+     * 随机取一个代理，优先剩余寿命不少于 min-remaining-ms 的；抽几次都不够就用其中最晚过期的
+     *
+     * @return 池子为空时返回 null
+     */
+    public Proxy pick(String poolKey) {
+        PoolSnapshot snapshot = snapshot(poolKey);
+        int size = snapshot.proxies.length;
+        if (size == 0) {
+            return null;
+        }
+        long threshold = System.currentTimeMillis() + minRemainingMs;
+        int best = -1;
+        for (int i = 0; i < MAX_PICK_TRIES; i++) {
+            int candidate = ThreadLocalRandom.current().nextInt(size);
+            if (snapshot.expireAt[candidate] >= threshold) {
+                return snapshot.proxies[candidate];
+            }
+            if (best < 0 || snapshot.expireAt[candidate] > snapshot.expireAt[best]) {
+                best = candidate;
+            }
+        }
+        return snapshot.proxies[best];
+    }
+
+    /**
+     * 池子里剩余寿命足够的代理 (只读)；都快过期时返回全部，不因此改走直连
+     */
+    public List<Proxy> list(String poolKey) {
+        PoolSnapshot snapshot = snapshot(poolKey);
+        long threshold = System.currentTimeMillis() + minRemainingMs;
+        List<Proxy> proxies = new ArrayList<>(snapshot.proxies.length);
+        for (int i = 0; i < snapshot.proxies.length; i++) {
+            if (snapshot.expireAt[i] >= threshold) {
+                proxies.add(snapshot.proxies[i]);
+            }
+        }
+        return proxies.isEmpty() ? Arrays.asList(snapshot.proxies) : proxies;
+    }
+
+    public int size(String poolKey) {
+        return snapshot(poolKey).proxies.length;
+    }
+
+    /**
+     * 池子里 withinMs 内就会过期的代理数
+     */
+    public int expiringWithin(String poolKey, long withinMs) {
+        long limit = System.currentTimeMillis() + withinMs;
+        return (int) Arrays.stream(snapshot(poolKey).expireAt).filter(at -> at <= limit).count();
+    }
+
+    /**
+     * 池子累计提前移出的代理数 (被评分淘汰、外部删除等，到期移出的不算)
+     */
+    public long evictedCount(String poolKey) {
+        AtomicLong count = evictedCounts.get(poolKey);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * 按地址查找镜像中的代理对象
+     *
+     * @return 不在池子里返回 null
+     */
+    public Proxy find(String poolKey, String address) {
+        Member member = snapshot(poolKey).index.get(address);
+        return member == null ? null : member.proxy;
+    }
+
+    /**
+     * 新代理入池 (写 Redis 代理池和过期索引 + 本地镜像 + 通知其他节点)
+     *
+     * @param deadline 过期时间 (yyyy-MM-dd HH:mm:ss)，原样存为 Hash 的 Value
+     * @return 已过期或快过期的代理不入池，返回 false
+     */
+    public boolean admit(String poolKey, String address, String deadline) {
+        long expireAt = parseDeadline(deadline);
+        if (expireAt != NEVER && expireAt - System.currentTimeMillis() <= evictBeforeMs) {
+            log.warn("⚠️ [代理镜像] 代理 {} 即将过期 ({})，不入池", address, deadline);
+            return false;
+        }
+        stringRedisTemplate.opsForHash().put(poolKey, address, StrUtil.nullToEmpty(deadline));
+        if (expireAt != NEVER) {
+            stringRedisTemplate.opsForZSet().add(expiryKeyOf(poolKey), address, expireAt);
+        }
+        add(poolKey, address, expireAt);
+        publish(OP_ADD, poolKey, address + "|" + expireAt);
+        return true;
+    }
+
+    /**
+     * 把代理移出池子 (删 Redis 代理池和过期索引 + 本地镜像 + 通知其他节点)
+     */
+    public void evict(String poolKey, String address) {
+        stringRedisTemplate.opsForHash().delete(poolKey, address);
+        stringRedisTemplate.opsForZSet().remove(expiryKeyOf(poolKey), address);
+        remove(poolKey, address);
+        publish(OP_REMOVE, poolKey, address);
+    }
+
+    /**
+     * 平台使用的代理池
+     */
+    public static String poolKeyOf(PlatformEnum platform) {
+        if (PlatformEnum.STEAM.equals(platform)) {
+            return RedisKeyConstant.PROXY_GLOBAL; // Steam -> 海外池
+        } else if (PlatformEnum.BUFF.equals(platform) || PlatformEnum.YOUPIN.equals(platform)) {
+            return RedisKeyConstant.PROXY_CN;     // Buff/悠悠 -> 国内池
+        }
+        return RedisKeyConstant.PROXY_CN;         // 默认，C5GAME/IGXE -> 国内池
+    }
+
+    /**
+     * 池子的过期索引 ZSet
+     */
+    public static String expiryKeyOf(String poolKey) {
+        return poolKey + RedisKeyConstant.PROXY_EXPIRY_SUFFIX;
+    }
+
+    /**
+     * 代理地址 host:port
+     */
+    public static String addressOf(Proxy proxy) {
+        if (proxy == null || !(proxy.address() instanceof InetSocketAddress address)) {
+            return null;
+        }
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * 其他节点的增删通知，格式: 操作|池子Key|host:port[|过期时间戳]
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 4);
+        if (parts.length < 3 || !pools.containsKey(parts[1])) {
+            return;
+        }
+        eventCount.incrementAndGet();
+        if (OP_ADD.equals(parts[0])) {
+            long expireAt = parts.length == 4 ? Long.parseLong(parts[3]) : NEVER;
+            add(parts[1], parts[2], expireAt);
+        } else if (OP_REMOVE.equals(parts[0])) {
+            remove(parts[1], parts[2]);
+        }
+    }
+
+    /**
+     * 定时清理快过期的代理：先按本地镜像摘掉 (Redis 不可用时也生效)，再从过期索引里取出到点的逐个移出。
+     * 多个节点同时清理时，ZREM 成功的那个节点负责删代理池和发通知
+     */
+    @Scheduled(fixedDelayString = "${csgo.proxy.expiry.sweep-ms:2000}")
+    public void sweepExpired() {
+        long limit = System.currentTimeMillis() + evictBeforeMs;
+        for (String poolKey : POOL_KEYS) {
+            PoolSnapshot current = snapshot(poolKey);
+            for (Map.Entry<String, Member> entry : current.index.entrySet()) {
+                if (entry.getValue().expireAt <= limit) {
+                    remove(poolKey, entry.getKey());
+                }
+            }
+            try {
+                String expiryKey = expiryKeyOf(poolKey);
+                Set<String> due = stringRedisTemplate.opsForZSet().rangeByScore(expiryKey, 0, limit);
+                if (due == null) {
+                    continue;
+                }
+                for (String address : due) {
+                    Long removedCount = stringRedisTemplate.opsForZSet().remove(expiryKey, address);
+                    if (removedCount != null && removedCount > 0) {
+                        stringRedisTemplate.opsForHash().delete(poolKey, address);
+                        publish(OP_REMOVE, poolKey, address);
+                        expiredCount.incrementAndGet();
+                        log.info("⌛ [代理镜像] {} 代理 {} 即将过期，移出代理池", poolKey, address);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ [代理镜像] {} 过期清理失败: {}", poolKey, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 定时与 Redis 全量对账：pub/sub 不保证送达 (断线期间的消息会丢)，也覆盖外部直接改 Redis 的情况
+     */
+    @Scheduled(fixedDelayString = "${csgo.proxy.reconcile-ms:30000}")
+    public void reconcile() {
+        for (String poolKey : POOL_KEYS) {
+            try {
+                Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(poolKey);
+                Map<String, Long> addresses = new HashMap<>(entries.size());
+                Set<ZSetOperations.TypedTuple<String>> expiries = new HashSet<>();
+                entries.forEach((key, value) -> {
+                    long expireAt = parseDeadline((String) value);
+                    addresses.put((String) key, expireAt);
+                    if (expireAt != NEVER) {
+                        expiries.add(ZSetOperations.TypedTuple.of((String) key, (double) expireAt));
+                    }
+                });
+                // 补齐过期索引 (索引之前入池的、或外部直接写进 Hash 的代理)
+                if (!expiries.isEmpty()) {
+                    stringRedisTemplate.opsForZSet().addIfAbsent(expiryKeyOf(poolKey), expiries);
+                }
+                replace(poolKey, addresses);
+            } catch (Exception e) {
+                log.warn("⚠️ [代理镜像] {} 对账失败，继续使用本地镜像: {}", poolKey, e.getMessage());
+            }
+        }
+        reconcileCount.incrementAndGet();
+    }
+
+    /**
+     * 镜像运行指标：各池子代理数 (及其中剩余寿命不足的)、收到的通知数、对账次数及纠正次数、过期移出数
+     */
+    public Map<String, Object> getRegistryStats() {
+        long threshold = System.currentTimeMillis() + minRemainingMs;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (String poolKey : POOL_KEYS) {
+            PoolSnapshot snapshot = snapshot(poolKey);
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("size", snapshot.proxies.length);
+            pool.put("expiringSoon", Arrays.stream(snapshot.expireAt).filter(at -> at < threshold).count());
+            stats.put(poolKey, pool);
+        }
+        stats.put("events", eventCount.get());
+        stats.put("reconciles", reconcileCount.get());
+        stats.put("driftCorrected", driftCount.get());
+        stats.put("expiredEvicted", expiredCount.get());
+        return stats;
+    }
+
+    private PoolSnapshot snapshot(String poolKey) {
+        return pools.getOrDefault(poolKey, PoolSnapshot.EMPTY);
+    }
+
+    private synchronized void add(String poolKey, String address, long expireAt) {
+        PoolSnapshot current = snapshot(poolKey);
+        Member existing = current.index.get(address);
+        if (existing != null && existing.expireAt == expireAt) {
+            return;
+        }
+        // 同一地址重新进货时只更新过期时间
+        Proxy proxy = existing != null ? existing.proxy : parse(address);
+        if (proxy == null) {
+            return;
+        }
+        Map<String, Member> index = new LinkedHashMap<>(current.index);
+        index.put(address, new Member(proxy, expireAt));
+        pools.put(poolKey, new PoolSnapshot(index));
+    }
+
+    private synchronized void remove(String poolKey, String address) {
+        PoolSnapshot current = snapshot(poolKey);
+        if (!current.index.containsKey(address)) {
+            return;
+        }
+        Map<String, Member> index = new LinkedHashMap<>(current.index);
+        Member removed = index.remove(address);
+        pools.put(poolKey, new PoolSnapshot(index));
+        countEviction(poolKey, removed, System.currentTimeMillis());
+        // 移出池子的代理不会再被选中，连接池跟着释放
+        httpClientManager.evictClient(removed.proxy);
+    }
+
+    private synchronized void replace(String poolKey, Map<String, Long> addresses) {
+        PoolSnapshot current = snapshot(poolKey);
+        long limit = System.currentTimeMillis() + evictBeforeMs;
+        Map<String, Member> index = new LinkedHashMap<>();
+        boolean changed = false;
+        for (Map.Entry<String, Long> entry : addresses.entrySet()) {
+            long expireAt = entry.getValue();
+            if (expireAt <= limit) {
+                continue; // 快过期的等清理任务移出 Redis，镜像里先不要
+            }
+            // 已有的 Proxy 对象直接复用，不重复解析
+            Member existing = current.index.get(entry.getKey());
+            if (existing != null && existing.expireAt == expireAt) {
+                index.put(entry.getKey(), existing);
+                continue;
+            }
+            Proxy proxy = existing != null ? existing.proxy : parse(entry.getKey());
+            if (proxy != null) {
+                index.put(entry.getKey(), new Member(proxy, expireAt));
+                changed = true;
+            }
+        }
+        if (changed || index.size() != current.index.size()) {
+            driftCount.incrementAndGet();
+            long now = System.currentTimeMillis();
+            current.index.forEach((address, member) -> {
+                if (!index.containsKey(address)) {
+                    countEviction(poolKey, member, now);
+                    httpClientManager.evictClient(member.proxy);
+                }
+            });
+            log.info("🔄 [代理镜像] {} 对账纠正: {} -> {} 个", poolKey, current.index.size(), index.size());
+            pools.put(poolKey, new PoolSnapshot(index));
+        }
+    }
+
+    /**
+     * 离过期还早就被移出的才计入消耗 (移出原因不随通知传递，按剩余寿命区分；留一个提前量的余量给其他节点清理的时差)
+     */
+    private void countEviction(String poolKey, Member member, long now) {
+        if (member.expireAt - now > evictBeforeMs * 2) {
+            evictedCounts.get(poolKey).incrementAndGet();
+        }
+    }
+
+    private void publish(String op, String poolKey, String address) {
+        try {
+            stringRedisTemplate.convertAndSend(RedisKeyConstant.PROXY_EVENT_CHANNEL, op + "|" + poolKey + "|" + address);
+        } catch (Exception e) {
+            // 通知失败不影响本地，其他节点靠定时对账追上
+            log.warn("⚠️ [代理镜像] 变更通知发送失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 解析青果的过期时间 (yyyy-MM-dd HH:mm:ss，北京时间)
+     *
+     * @return 毫秒时间戳；为空或格式不对时视为不过期
+     */
+    static long parseDeadline(String deadline) {
+        if (StrUtil.isBlank(deadline)) {
+            return NEVER;
+        }
+        try {
+            return LocalDateTime.parse(deadline.trim(), DatePattern.NORM_DATETIME_FORMATTER)
+                    .atZone(DEADLINE_ZONE).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            log.warn("⚠️ [代理镜像] 过期时间格式错误: {}", deadline);
+            return NEVER;
+        }
+    }
+
+    /**
+     * 解析 host:port
+     *
+     * @return 格式不对时返回 null
+     */
+    static Proxy parse(String address) {
+        if (StrUtil.isBlank(address)) {
+            return null;
+        }
+        try {
+            String[] parts = address.split(":");
+            return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(parts[0], Integer.parseInt(parts[1])));
+        } catch (Exception e) {
+            log.warn("⚠️ [代理镜像] 代理地址格式错误: {}", address);
+            return null;
+        }
+    }
+
+    /**
+     * 镜像中的一个代理及其过期时间
+     */
+    private static class Member {
+
+        private final Proxy proxy;
+        private final long expireAt;
+
+        Member(Proxy proxy, long expireAt) {
+            this.proxy = proxy;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 池子快照：创建后不再修改
+     */
+    private static class PoolSnapshot {
+
+        private static final PoolSnapshot EMPTY = new PoolSnapshot(Map.of());
+
+        private final Map<String, Member> index;
+        private final Proxy[] proxies;
+        private final long[] expireAt;
+
+        PoolSnapshot(Map<String, Member> index) {
+            this.index = index;
+            this.proxies = new Proxy[index.size()];
+            this.expireAt = new long[index.size()];
+            int i = 0;
+            for (Member member : index.values()) {
+                proxies[i] = member.proxy;
+                expireAt[i] = member.expireAt;
+                i++;
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.zan.csgo.crawler.proxy;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.zan.csgo.constant.RedisKeyConstant;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/22 10:30
+ * @ClassName: ProxyReplenisher
+ * @Description : 代理补货控制器
+ *                以前国内池只在启动时进一次 10 个，海外池不管用没用完每分钟固定进 5 个。
+ *                现在每个池子按 "保底数量 + 提前量内预计消耗" 算出目标库存，扣掉提前量内就会过期的，差多少进多少；
+ *                消耗速度 = 单位时间内提前移出池子的代理数 (被评分淘汰等) 的移动平均，空闲时自然回落到保底数量；
+ *                到期的代理已经按提前量内过期数扣掉，不再重复计入消耗。
+ *                每个池子每小时的提取量有预算上限，多节点部署时同一时刻只有一个节点去进货；
+ *                进货 (调代理商接口 + 入池验证) 放到单独线程，不占定时任务线程，锁一直持有到进货结束
+ */
+@Component
+@Slf4j
+public class ProxyReplenisher {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ProxyRegistry proxyRegistry;
+
+    @Value("${csgo.proxy.replenish.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csgo.proxy.replenish.lead-ms:60000}")
+    private long leadMs; // 提前量：按这段时间内的预计消耗和即将过期数备货 (需覆盖代理商出货耗时)
+
+    @Value("${csgo.proxy.replenish.burn-alpha:0.3}")
+    private double burnAlpha; // 消耗速度 EWMA 系数
+
+    @Value("${csgo.proxy.replenish.lock-ttl-ms:60000}")
+    private long lockTtlMs; // 进货锁最长持有时间 (进完即释放；需长于 提取接口超时 + 入池验证超时，节点宕机时靠它自动释放)
+
+    @Value("${csgo.proxy.replenish.cn.min-size:10}")
+    private int cnMinSize; // 国内池保底数量
+
+    @Value("${csgo.proxy.replenish.cn.max-per-fetch:20}")
+    private int cnMaxPerFetch; // 国内池单次最多提取
+
+    @Value("${csgo.proxy.replenish.cn.budget-per-hour:600}")
+    private int cnBudgetPerHour; // 国内池每小时提取上限
+
+    @Value("${csgo.proxy.replenish.global.min-size:5}")
+    private int globalMinSize; // 海外池保底数量
+
+    @Value("${csgo.proxy.replenish.global.max-per-fetch:10}")
+    private int globalMaxPerFetch; // 海外池单次最多提取
+
+    @Value("${csgo.proxy.replenish.global.budget-per-hour:120}")
+    private int globalBudgetPerHour; // 海外池每小时提取上限 (海外代理贵)
+
+    /**
+     * 池子 Key -> 进货实现 (没有实现的池子不补货，比如海外搬运工未启用)
+     */
+    private final Map<String, ProxyFetcher> fetchers = new LinkedHashMap<>();
+
+    /**
+     * 池子 Key -> 补货状态
+     */
+    private final Map<String, Plan> plans = new LinkedHashMap<>();
+
+    /**
+     * 进货线程：代理商接口和入池验证可能要好几秒，不能卡住共用的定时任务线程
+     */
+    private ExecutorService orderExecutor;
+
+    private static final DefaultRedisScript<Long> LOCK_RELEASE_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        LOCK_RELEASE_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/lock_release.lua")));
+        LOCK_RELEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    @Autowired
+    public ProxyReplenisher(List<ProxyFetcher> proxyFetchers) {
+        proxyFetchers.forEach(fetcher -> fetchers.put(fetcher.getPoolKey(), fetcher));
+    }
+
+    @PostConstruct
+    public void init() {
+        plans.put(RedisKeyConstant.PROXY_CN, new Plan("cn", cnMinSize, cnMaxPerFetch, cnBudgetPerHour));
+        plans.put(RedisKeyConstant.PROXY_GLOBAL, new Plan("global", globalMinSize, globalMaxPerFetch, globalBudgetPerHour));
+        orderExecutor = Executors.newSingleThreadExecutor(ThreadUtil.newNamedThreadFactory("Proxy-Replenish-", true));
+        log.info("🚀 [代理补货] 已启用的代理池: {}", fetchers.keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        orderExecutor.shutdownNow();
+    }
+
+    /**
+     * 定时检查各池子库存，不够就补 (启动后第一次执行即完成预热)
+     */
+    @Scheduled(fixedDelayString = "${csgo.proxy.replenish.interval-ms:5000}")
+    public void replenish() {
+        if (!enabled) {
+            return;
+        }
+        fetchers.forEach((poolKey, fetcher) -> {
+            try {
+                replenishPool(poolKey, fetcher, plans.get(poolKey));
+            } catch (Exception e) {
+                log.warn("⚠️ [代理补货] {} 补货失败: {}", poolKey, e.getMessage());
+            }
+        });
+    }
+
+    private void replenishPool(String poolKey, ProxyFetcher fetcher, Plan plan) {
+        long now = System.currentTimeMillis();
+        plan.updateBurn(proxyRegistry.evictedCount(poolKey), now, burnAlpha);
+
+        // 1. 目标库存 = 保底 + 提前量内预计消耗；可用库存 = 现有 - 提前量内就会过期的
+        int size = proxyRegistry.size(poolKey);
+        int usable = size - proxyRegistry.expiringWithin(poolKey, leadMs);
+        int target = plan.minSize + (int) Math.ceil(plan.burnPerMin * leadMs / 60000.0);
+        plan.lastSize = size;
+        plan.lastTarget = target;
+        int need = Math.min(target - usable, plan.maxPerFetch);
+        // 上一单还没进完，进完的货到了再按新库存算
+        if (need <= 0 || plan.ordering) {
+            return;
+        }
+
+        // 2. 预算：按小时计数，多节点共享
+        String budgetKey = RedisKeyConstant.PROXY_BUDGET_PREFIX + plan.name + ":" + DateUtil.format(DateUtil.date(now), "yyyyMMddHH");
+        String spentStr = stringRedisTemplate.opsForValue().get(budgetKey);
+        int spent = StrUtil.isBlank(spentStr) ? 0 : Integer.parseInt(spentStr);
+        int num = Math.min(need, plan.budgetPerHour - spent);
+        if (num <= 0) {
+            if (!budgetKey.equals(plan.exhaustedKey)) {
+                plan.exhaustedKey = budgetKey;
+                log.warn("💸 [代理补货] {} 本小时预算 {} 已用完，库存 {} / 目标 {}", plan.name, plan.budgetPerHour, size, target);
+            }
+            return;
+        }
+
+        // 3. 同一时刻只有一个节点进货 (锁持有到进货结束，进完的货通过镜像同步到其他节点)
+        String lockKey = RedisKeyConstant.PROXY_REPLENISH_LOCK_PREFIX + plan.name;
+        String token = IdUtil.fastSimpleUUID();
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token, lockTtlMs, TimeUnit.MILLISECONDS))) {
+            return;
+        }
+        // 按提取数计费，先记账再进货，宁可少进也不超预算
+        stringRedisTemplate.opsForValue().increment(budgetKey, num);
+        stringRedisTemplate.expire(budgetKey, 2, TimeUnit.HOURS);
+
+        log.info("📦 [代理补货] {} 库存 {} (提前量内过期 {})，消耗 {}/分钟，目标 {}，进货 {} 个",
+                plan.name, size, size - usable, String.format("%.1f", plan.burnPerMin), target, num);
+        plan.ordering = true;
+        try {
+            orderExecutor.execute(() -> order(fetcher, plan, num, lockKey, token));
+        } catch (Exception e) {
+            plan.ordering = false;
+            releaseLock(lockKey, token);
+            throw e;
+        }
+    }
+
+    /**
+     * 进货 (在进货线程上执行)，结束后释放锁
+     */
+    private void order(ProxyFetcher fetcher, Plan plan, int num, String lockKey, String token) {
+        try {
+            int admitted = fetcher.fetchProxies(num);
+            plan.fetched += num;
+            plan.admitted += admitted;
+        } catch (Exception e) {
+            log.warn("⚠️ [代理补货] {} 进货失败: {}", plan.name, e.getMessage());
+        } finally {
+            plan.ordering = false;
+            releaseLock(lockKey, token);
+        }
+    }
+
+    /**
+     * 只释放自己持有的锁 (超过 lock-ttl-ms 后锁可能已被其他节点拿到)
+     */
+    private void releaseLock(String lockKey, String token) {
+        try {
+            stringRedisTemplate.execute(LOCK_RELEASE_SCRIPT, List.of(lockKey), token);
+        } catch (Exception e) {
+            log.warn("⚠️ [代理补货] 释放进货锁失败，等待自动过期: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 补货运行指标：各池子库存、目标库存、消耗速度、累计提取数与入池数
+     */
+    public Map<String, Object> getReplenishStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        plans.forEach((poolKey, plan) -> {
+            if (fetchers.containsKey(poolKey)) {
+                stats.put(plan.name, plan.snapshot());
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * 单个池子的补货状态 (消耗和库存只在定时任务线程里写，进货数只在进货线程里写)
+     */
+    private static class Plan {
+
+        private final String name;
+        private final int minSize;
+        private final int maxPerFetch;
+        private final int budgetPerHour;
+
+        private long lastRemoved = -1;
+        private long lastTickAt;
+        private volatile double burnPerMin;
+        private volatile int lastSize;
+        private volatile int lastTarget;
+        private volatile long fetched;
+        private volatile long admitted;
+        private volatile boolean ordering;
+        private String exhaustedKey;
+
+        Plan(String name, int minSize, int maxPerFetch, int budgetPerHour) {
+            this.name = name;
+            this.minSize = minSize;
+            this.maxPerFetch = maxPerFetch;
+            this.budgetPerHour = budgetPerHour;
+        }
+
+        /**
+         * 按两次检查之间提前移出池子的代理数更新消耗速度
+         */
+        void updateBurn(long removed, long now, double alpha) {
+            if (lastRemoved >= 0 && now > lastTickAt) {
+                double rate = (removed - lastRemoved) * 60000.0 / (now - lastTickAt);
+                burnPerMin = burnPerMin + alpha * (rate - burnPerMin);
+            }
+            lastRemoved = removed;
+            lastTickAt = now;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("size", lastSize);
+            item.put("target", lastTarget);
+            item.put("burnPerMin", burnPerMin);
+            item.put("fetched", fetched);
+            item.put("admitted", admitted);
+            item.put("ordering", ordering);
+            item.put("budgetPerHour", budgetPerHour);
+            return item;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.zan.csgo.crawler.proxy;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.BreakerSignalEnum;
+import com.zan.csgo.enums.PlatformEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/21 15:20
+ * @ClassName: ProxyScoreBoard
+ * @Description : 代理评分
+ *                每个代理在每个平台上记录成功率和耗时的指数移动平均，选代理时随机抽两个取分高的 (power of two choices)；
+ *                被 429 / WAF 拦截或成功率跌破阈值时隔离一段时间 (连续隔离时间翻倍)，而不是一次失败就删掉，
+ *                连续隔离多次仍无成功的才真正移出代理池 (移出要写 Redis，放到单独线程，不占 HTTP 的 IO 线程)。
+ *                评分定时与 Redis 合并，各节点共享
+ */
+@Component
+@Slf4j
+public class ProxyScoreBoard {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ProxyRegistry proxyRegistry;
+
+    @Value("${csgo.proxy.score.alpha:0.2}")
+    private double alpha; // EWMA 系数，越大越看重最近的结果
+
+    @Value("${csgo.proxy.score.prior-latency-ms:1500}")
+    private double priorLatencyMs; // 还没有成功样本的代理按此耗时估计
+
+    @Value("${csgo.proxy.score.quarantine-below:0.3}")
+    private double quarantineBelow; // 成功率 EWMA 低于该值时隔离
+
+    @Value("${csgo.proxy.score.quarantine-ms:60000}")
+    private long quarantineMs; // 首次隔离时长，之后每次翻倍
+
+    @Value("${csgo.proxy.score.max-quarantine-ms:1800000}")
+    private long maxQuarantineMs; // 隔离时长上限
+
+    @Value("${csgo.proxy.score.evict-level:5}")
+    private int evictLevel; // 连续隔离这么多次 (中间没有一次成功) 就移出代理池
+
+    /**
+     * 参与评分的平台 (走代理池抓取的平台)
+     */
+    public static final List<PlatformEnum> PLATFORMS = List.of(PlatformEnum.BUFF, PlatformEnum.YOUPIN, PlatformEnum.STEAM);
+
+    // 隔离结束后的成功率起点：给一次重新证明的机会，再失败一两次就会再次隔离
+    private static final double RELEASE_SUCCESS = 0.5;
+
+    /**
+     * 平台 -> (代理 -> 评分)；代理对象来自本地镜像，同一地址是同一个对象，查表不需要拼 Key
+     */
+    private final Map<PlatformEnum, Map<Proxy, Score>> boards = new ConcurrentHashMap<>();
+
+    /**
+     * 移出代理池的线程：请求结果在 HTTP 的 IO 线程上回调，同步写 Redis 会卡住所有请求
+     */
+    private ExecutorService evictExecutor;
+
+    // --- 运行指标 ---
+    private final AtomicLong quarantineCount = new AtomicLong();
+    private final AtomicLong evictCount = new AtomicLong();
+    private final AtomicLong syncCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        evictExecutor = Executors.newSingleThreadExecutor(ThreadUtil.newNamedThreadFactory("Proxy-Evict-", true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictExecutor.shutdownNow();
+    }
+
+    /**
+     * 两个候选里选分高的；被隔离的不选
+     *
+     * @return 两个都在隔离中返回 null
+     */
+    public Proxy choose(PlatformEnum platform, Proxy a, Proxy b) {
+        long now = System.currentTimeMillis();
+        Score sa = score(platform, a);
+        Score sb = score(platform, b);
+        boolean okA = sa == null || !sa.quarantined(now);
+        boolean okB = sb == null || !sb.quarantined(now);
+        if (okA && okB) {
+            return value(sa) >= value(sb) ? a : b;
+        }
+        return okA ? a : okB ? b : null;
+    }
+
+    /**
+     * 代理是否在隔离中
+     */
+    public boolean isQuarantined(PlatformEnum platform, Proxy proxy) {
+        Score score = score(platform, proxy);
+        return score != null && score.quarantined(System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次成功请求
+     */
+    public void recordSuccess(PlatformEnum platform, Proxy proxy, long latencyMs) {
+        if (proxy == null) {
+            return;
+        }
+        scoreOf(platform, proxy).onSuccess(latencyMs);
+    }
+
+    /**
+     * 记录一次失败请求：429 / WAF 直接隔离，其他失败只拉低成功率 (跌破阈值才隔离)；登录失效与代理无关，不计
+     */
+    public void recordFailure(PlatformEnum platform, Proxy proxy, BreakerSignalEnum signal) {
+        if (proxy == null || BreakerSignalEnum.LOGIN_REQUIRED.equals(signal)) {
+            return;
+        }
+        boolean banned = BreakerSignalEnum.RATE_LIMITED.equals(signal) || BreakerSignalEnum.WAF.equals(signal);
+        Score score = scoreOf(platform, proxy);
+        int level = score.onFailure(banned);
+        if (level <= 0) {
+            return;
+        }
+        quarantineCount.incrementAndGet();
+        if (level >= evictLevel) {
+            String address = ProxyRegistry.addressOf(proxy);
+            log.warn("🗑️ [代理评分] {} 代理 {} 连续隔离 {} 次，移出代理池", platform.getName(), address, level);
+            evictCount.incrementAndGet();
+            boards.get(platform).remove(proxy);
+            evictExecutor.execute(() -> {
+                try {
+                    proxyRegistry.evict(ProxyRegistry.poolKeyOf(platform), address);
+                } catch (Exception e) {
+                    log.warn("⚠️ [代理评分] 移出代理池失败: {}", e.getMessage());
+                }
+            });
+        } else {
+            log.info("🚧 [代理评分] {} 代理 {} 隔离 {}ms (第{}次，原因: {})",
+                    platform.getName(), ProxyRegistry.addressOf(proxy), score.quarantineMs(), level, signal.getDesc());
+        }
+    }
+
+    /**
+     * 与 Redis 合并评分：本节点有新数据的条目与远端取平均后写回，没有的直接采用远端；
+     * 本地镜像里还没有的代理 (通知有延迟) 不动它的远端评分，只有 Redis 代理池里也已经没有的才清理
+     */
+    @Scheduled(fixedDelayString = "${csgo.proxy.score.sync-ms:5000}")
+    public void sync() {
+        for (PlatformEnum platform : PLATFORMS) {
+            try {
+                syncPlatform(platform);
+            } catch (Exception e) {
+                log.warn("⚠️ [代理评分] {} 评分同步失败: {}", platform.getName(), e.getMessage());
+            }
+        }
+        syncCount.incrementAndGet();
+    }
+
+    private void syncPlatform(PlatformEnum platform) {
+        String redisKey = RedisKeyConstant.PROXY_SCORE_PREFIX + platform.getCode();
+        String poolKey = ProxyRegistry.poolKeyOf(platform);
+        Map<Proxy, Score> board = boards.computeIfAbsent(platform, k -> new ConcurrentHashMap<>());
+
+        Map<Object, Object> remote = stringRedisTemplate.opsForHash().entries(redisKey);
+        Map<String, String> writes = new HashMap<>();
+        List<Object> missing = new ArrayList<>();
+        remote.forEach((field, value) -> {
+            Proxy proxy = proxyRegistry.find(poolKey, (String) field);
+            if (proxy == null) {
+                missing.add(field);
+                return;
+            }
+            Score score = board.computeIfAbsent(proxy, k -> new Score());
+            if (score.merge((String) value)) {
+                writes.put((String) field, score.encode());
+            }
+        });
+
+        // 只在本地有新数据的条目
+        board.forEach((proxy, score) -> {
+            String address = ProxyRegistry.addressOf(proxy);
+            if (proxyRegistry.find(poolKey, address) == null) {
+                board.remove(proxy);
+            } else if (!remote.containsKey(address) && score.takeDirty()) {
+                writes.put(address, score.encode());
+            }
+        });
+
+        if (!writes.isEmpty()) {
+            stringRedisTemplate.opsForHash().putAll(redisKey, writes);
+        }
+        if (!missing.isEmpty()) {
+            // 以 Redis 代理池为准：入池先写代理池再发通知，代理池里没有了才是真的移出了
+            List<Object> inPool = stringRedisTemplate.opsForHash().multiGet(poolKey, missing);
+            List<Object> stale = new ArrayList<>();
+            for (int i = 0; i < missing.size(); i++) {
+                if (inPool != null && inPool.get(i) == null) {
+                    stale.add(missing.get(i));
+                }
+            }
+            if (!stale.isEmpty()) {
+                stringRedisTemplate.opsForHash().delete(redisKey, stale.toArray());
+            }
+        }
+        stringRedisTemplate.expire(redisKey, 1, TimeUnit.DAYS);
+    }
+
+    /**
+     * 评分运行指标：各平台跟踪的代理数、隔离中的代理、平均成功率和耗时
+     */
+    public Map<String, Object> getScoreStats() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (PlatformEnum platform : PLATFORMS) {
+            Map<Proxy, Score> board = boards.get(platform);
+            if (board == null || board.isEmpty()) {
+                continue;
+            }
+            double success = 0;
+            double latency = 0;
+            List<Map<String, Object>> quarantined = new ArrayList<>();
+            for (Map.Entry<Proxy, Score> entry : board.entrySet()) {
+                Map<String, Object> item = entry.getValue().snapshot(now);
+                success += (double) item.get("success");
+                latency += (double) item.get("latencyMs");
+                if ((long) item.get("quarantineRemainingMs") > 0) {
+                    item.put("proxy", ProxyRegistry.addressOf(entry.getKey()));
+                    quarantined.add(item);
+                }
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("tracked", board.size());
+            item.put("avgSuccess", success / board.size());
+            item.put("avgLatencyMs", latency / board.size());
+            item.put("quarantined", quarantined);
+            stats.put(platform.name(), item);
+        }
+        stats.put("quarantines", quarantineCount.get());
+        stats.put("evicted", evictCount.get());
+        stats.put("syncs", syncCount.get());
+        return stats;
+    }
+
+    private Score score(PlatformEnum platform, Proxy proxy) {
+        Map<Proxy, Score> board = boards.get(platform);
+        return board == null ? null : board.get(proxy);
+    }
+
+    private Score scoreOf(PlatformEnum platform, Proxy proxy) {
+        return boards.computeIfAbsent(platform, k -> new ConcurrentHashMap<>()).computeIfAbsent(proxy, k -> new Score());
+    }
+
+    /**
+     * 分值：成功率的平方 / 耗时，成功率权重更大 (慢一点可以接受，被拦截代价更高)
+     */
+    private double value(Score score) {
+        if (score == null) {
+            return 1.0 / (priorLatencyMs + 100);
+        }
+        return score.value();
+    }
+
+    /**
+     * 单个代理在单个平台上的评分
+     */
+    private class Score {
+
+        private double success = 1.0;
+        private double latencyMs = -1;
+        private long quarantineUntil;
+        private int level;
+        private boolean dirty;
+
+        synchronized boolean quarantined(long now) {
+            return quarantineUntil > now;
+        }
+
+        synchronized double value() {
+            double latency = latencyMs < 0 ? priorLatencyMs : latencyMs;
+            return success * success / (latency + 100);
+        }
+
+        synchronized void onSuccess(long latency) {
+            success = success + alpha * (1 - success);
+            latencyMs = latencyMs < 0 ? latency : latencyMs + alpha * (latency - latencyMs);
+            level = 0;
+            dirty = true;
+        }
+
+        /**
+         * @return 本次触发隔离时返回连续隔离次数，否则返回 0
+         */
+        synchronized int onFailure(boolean banned) {
+            success = success * (1 - alpha);
+            dirty = true;
+            long now = System.currentTimeMillis();
+            if (quarantineUntil > now || (!banned && success >= quarantineBelow)) {
+                return 0;
+            }
+            level++;
+            quarantineUntil = now + quarantineMs();
+            success = RELEASE_SUCCESS;
+            return level;
+        }
+
+        synchronized long quarantineMs() {
+            long duration = quarantineMs << Math.min(Math.max(level - 1, 0), 20);
+            return Math.min(duration, maxQuarantineMs);
+        }
+
+        synchronized boolean takeDirty() {
+            boolean was = dirty;
+            dirty = false;
+            return was;
+        }
+
+        /**
+         * 合并远端评分 (格式: 成功率,耗时,隔离截止时间,隔离次数)
+         *
+         * @return 合并结果需要写回远端时返回 true
+         */
+        synchronized boolean merge(String encoded) {
+            String[] parts = StrUtil.nullToEmpty(encoded).split(",");
+            if (parts.length != 4) {
+                return dirty;
+            }
+            double remoteSuccess = Double.parseDouble(parts[0]);
+            double remoteLatency = Double.parseDouble(parts[1]);
+            long remoteUntil = Long.parseLong(parts[2]);
+            int remoteLevel = Integer.parseInt(parts[3]);
+
+            quarantineUntil = Math.max(quarantineUntil, remoteUntil);
+            if (!dirty) {
+                success = remoteSuccess;
+                latencyMs = remoteLatency;
+                level = remoteLevel;
+                return false;
+            }
+            success = (success + remoteSuccess) / 2;
+            if (remoteLatency >= 0) {
+                latencyMs = latencyMs < 0 ? remoteLatency : (latencyMs + remoteLatency) / 2;
+            }
+            // 本地刚成功过 (level 归零) 以本地为准，否则取较大的隔离次数
+            level = level == 0 ? 0 : Math.max(level, remoteLevel);
+            dirty = false;
+            return true;
+        }
+
+        synchronized String encode() {
+            return success + "," + latencyMs + "," + quarantineUntil + "," + level;
+        }
+
+        synchronized Map<String, Object> snapshot(long now) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("success", success);
+            item.put("latencyMs", latencyMs < 0 ? priorLatencyMs : latencyMs);
+            item.put("quarantineRemainingMs", Math.max(quarantineUntil - now, 0));
+            item.put("level", level);
+            return item;
+        }
+    }
+}
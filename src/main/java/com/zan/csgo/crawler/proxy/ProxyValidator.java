@@ -0,0 +1,153 @@
+package com.zan.csgo.crawler.proxy;
+
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.crawler.http.CrawlerHttpClientManager;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.utils.ProxyProviderUtil;
+import com.zan.csgo.utils.UserAgentUtil;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.Proxy;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/22 14:10
+ * @ClassName: ProxyValidator
+ * @Description : 代理入池前验证
+ *                以前新进的代理直接入池，是死是活、有没有被目标站封过，要等第一个真实的 Buff/Steam 请求去试 (超时就白等 8 秒)。
+ *                现在进货后先并行向目标站的静态资源发一个 HEAD 请求 (超时很短)，通的才入池，并用测得的耗时作为初始评分；
+ *                验证用的就是之后抓取用的那个客户端，连接也顺带预热好了
+ */
+@Component
+@Slf4j
+public class ProxyValidator {
+
+    @Resource
+    private CrawlerHttpClientManager httpClientManager;
+
+    @Resource
+    private ProxyProviderUtil proxyProviderUtil;
+
+    @Resource
+    private ProxyRegistry proxyRegistry;
+
+    @Resource
+    private ProxyScoreBoard proxyScoreBoard;
+
+    @Value("${csgo.proxy.validate.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csgo.proxy.validate.timeout-ms:3000}")
+    private long timeoutMs; // 验证请求超时 (比抓取请求紧得多)
+
+    @Value("${csgo.proxy.validate.cn-url:https://buff.163.com/favicon.ico}")
+    private String cnUrl; // 国内池验证地址 (Buff 的静态资源，不消耗接口限流)
+
+    @Value("${csgo.proxy.validate.global-url:https://steamcommunity.com/favicon.ico}")
+    private String globalUrl; // 海外池验证地址 (Steam 社区的静态资源)
+
+    // --- 运行指标 ---
+    private final AtomicLong probedCount = new AtomicLong();
+    private final AtomicLong passedCount = new AtomicLong();
+    private final AtomicLong passedLatencyMs = new AtomicLong();
+
+    /**
+     * 并行验证一批新进的代理，通过的入池并写入初始评分
+     *
+     * @param candidates host:port -> 过期时间
+     * @return 实际入池的代理数
+     */
+    public CompletableFuture<Integer> admitAsync(String poolKey, Map<String, String> candidates) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(candidates.size());
+        candidates.forEach((address, deadline) -> futures.add(
+                probeAsync(poolKey, address).thenApply(latency -> latency >= 0 && admit(poolKey, address, deadline, latency))));
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> (int) futures.stream().filter(CompletableFuture::join).count());
+    }
+
+    /**
+     * 通过代理请求验证地址
+     *
+     * @return 耗时 (毫秒)；不通、超时或被拦截返回 -1
+     */
+    private CompletableFuture<Long> probeAsync(String poolKey, String address) {
+        Proxy proxy = ProxyRegistry.parse(address);
+        if (!enabled || proxy == null) {
+            return CompletableFuture.completedFuture(proxy == null ? -1L : 0L);
+        }
+        String url = RedisKeyConstant.PROXY_GLOBAL.equals(poolKey) ? globalUrl : cnUrl;
+        HttpRequest request = httpClientManager.newGet(url)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("User-Agent", UserAgentUtil.random())
+                .build();
+
+        probedCount.incrementAndGet();
+        long start = System.currentTimeMillis();
+        return httpClientManager.sendAsync(request, proxy)
+                // 建连阶段的超时由客户端的 connect-timeout 控制，这里统一兜底
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .handle((response, ex) -> {
+                    if (ex != null) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        log.info("🧪 [代理验证] {} 不通，丢弃: {}", address, cause.getClass().getSimpleName());
+                        return -1L;
+                    }
+                    if (response.statusCode() >= 400) {
+                        // 403/429 多半是这个 IP 已经被目标站封了
+                        log.info("🧪 [代理验证] {} 被拦截 HTTP {}，丢弃", address, response.statusCode());
+                        return -1L;
+                    }
+                    return System.currentTimeMillis() - start;
+                });
+    }
+
+    /**
+     * 入池并把验证耗时记为该池各平台的第一个样本
+     */
+    private boolean admit(String poolKey, String address, String deadline, long latency) {
+        if (!proxyProviderUtil.addProxy(poolKey, address, deadline)) {
+            return false;
+        }
+        if (!enabled) {
+            return true;
+        }
+        passedCount.incrementAndGet();
+        passedLatencyMs.addAndGet(latency);
+        Proxy proxy = proxyRegistry.find(poolKey, address);
+        for (PlatformEnum platform : ProxyScoreBoard.PLATFORMS) {
+            if (poolKey.equals(ProxyRegistry.poolKeyOf(platform))) {
+                proxyScoreBoard.recordSuccess(platform, proxy, latency);
+            }
+        }
+        log.info("✅ [代理验证] {} 验证通过 ({}ms)，已入池", address, latency);
+        return true;
+    }
+
+    /**
+     * 验证运行指标：验证数、通过数、通过率、通过代理的平均耗时
+     */
+    public Map<String, Object> getValidateStats() {
+        long probed = probedCount.get();
+        long passed = passedCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("probed", probed);
+        stats.put("passed", passed);
+        stats.put("passRate", probed == 0 ? 0 : (double) passed / probed);
+        stats.put("avgLatencyMs", passed == 0 ? 0 : passedLatencyMs.get() / passed);
+        return stats;
+    }
+}
@@ -0,0 +1,337 @@
+package com.zan.csgo.crawler.resolver;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.zan.csgo.crawler.parser.BuffSearchResponse;
+import com.zan.csgo.crawler.strategy.impl.BuffStrategy;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.service.ISkinItemService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/19 10:40
+ * @ClassName: PlatformIdResolver
+ * @Description : 平台商品ID解析 (MarketHashName -> Buff商品ID)
+ *                抓取链路只查本地映射，查不到的名字放进待解析集合，由后台定时批量搜索：
+ *                按去掉磨损/前缀后的基础名搜索，一页结果里同款各磨损、StatTrak 版本的映射全部收下；
+ *                解析到的映射写回 skin_item 并留在本地缓存；一轮翻不完的基础名下一轮接着往后翻，
+ *                翻完所有页都搜不到的名字才按 TTL 记为负缓存，期间不再重复搜索
+ */
+@Component
+@Slf4j
+public class PlatformIdResolver {
+
+    @Resource
+    private ISkinItemService skinItemService;
+
+    @Resource
+    private ObjectProvider<BuffStrategy> buffStrategyProvider;
+
+    @Value("${csgo.resolver.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csgo.resolver.interval-ms:5000}")
+    private long intervalMs; // 后台解析间隔
+
+    @Value("${csgo.resolver.keywords-per-round:5}")
+    private int keywordsPerRound; // 每轮最多搜索的基础名数量 (搜索同样走 Buff 的限流)
+
+    @Value("${csgo.resolver.max-pages:3}")
+    private int maxPages; // 每个基础名每轮最多翻几页 (没翻完的下一轮接着翻)
+
+    @Value("${csgo.resolver.maximum-size:100000}")
+    private long maximumSize; // 映射缓存最大条数
+
+    @Value("${csgo.resolver.negative-ttl-minutes:360}")
+    private long negativeTtlMinutes; // 搜不到的名字多久之后再试
+
+    // 磨损后缀，如 " (Field-Tested)"
+    private static final Pattern EXTERIOR_PATTERN = Pattern.compile("\\s*\\((Factory New|Minimal Wear|Field-Tested|Well-Worn|Battle-Scarred)\\)$");
+
+    // 前缀，如 "★ "、"StatTrak™ "、"Souvenir "
+    private static final Pattern PREFIX_PATTERN = Pattern.compile("^(★\\s*)?(StatTrak™\\s+|Souvenir\\s+)?");
+
+    /**
+     * HashName -> Buff商品ID
+     */
+    private Cache<String, Long> buffIdCache;
+
+    /**
+     * 搜不到的 HashName (负缓存)
+     */
+    private Cache<String, Boolean> buffMissCache;
+
+    /**
+     * 基础名 -> 下一轮从第几页接着搜 (结果页数超过 max-pages 的基础名)
+     */
+    private Cache<String, Integer> nextPageCache;
+
+    /**
+     * 待解析的 HashName
+     */
+    private final Set<String> pendingNames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 解析线程：搜索是同步 HTTP (含限流等待)，不占用 @Scheduled 的公共调度线程
+     */
+    private ScheduledExecutorService resolveExecutor;
+
+    private volatile boolean warmed;
+
+    // --- 运行指标 ---
+    private final AtomicLong searchCount = new AtomicLong();
+    private final AtomicLong resolvedCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong persistedCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        buffIdCache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+        buffMissCache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(negativeTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        nextPageCache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(negativeTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        if (!enabled) {
+            return;
+        }
+        resolveExecutor = Executors.newSingleThreadScheduledExecutor(ThreadUtil.newNamedThreadFactory("Id-Resolver-", true));
+        resolveExecutor.scheduleWithFixedDelay(this::resolvePending, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (resolveExecutor != null) {
+            resolveExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 查本地映射 (不发任何网络请求)
+     * 未命中时登记到待解析集合，由后台解析，调用方本次按"暂无ID"处理
+     *
+     * @return 平台商品ID；未知时返回 null
+     */
+    public Long resolve(PlatformEnum platformEnum, String marketHashName) {
+        if (!PlatformEnum.BUFF.equals(platformEnum) || StrUtil.isBlank(marketHashName)) {
+            return null;
+        }
+        Long goodsId = buffIdCache.getIfPresent(marketHashName);
+        if (goodsId == null) {
+            submit(marketHashName);
+        }
+        return goodsId;
+    }
+
+    /**
+     * 批量登记待解析的名字 (工人发现没有 Buff ID 的饰品时调用)
+     */
+    public void submit(PlatformEnum platformEnum, Collection<String> marketHashNames) {
+        if (!PlatformEnum.BUFF.equals(platformEnum) || CollectionUtil.isEmpty(marketHashNames)) {
+            return;
+        }
+        marketHashNames.forEach(this::submit);
+    }
+
+    /**
+     * 记录其他途径得到的映射 (如单品抓取回填了ID)
+     */
+    public void remember(PlatformEnum platformEnum, String marketHashName, Long goodsId) {
+        if (!PlatformEnum.BUFF.equals(platformEnum) || StrUtil.isBlank(marketHashName) || goodsId == null || goodsId <= 0) {
+            return;
+        }
+        buffIdCache.put(marketHashName, goodsId);
+        buffMissCache.invalidate(marketHashName);
+        pendingNames.remove(marketHashName);
+    }
+
+    private void submit(String marketHashName) {
+        if (enabled && StrUtil.isNotBlank(marketHashName)
+                && buffIdCache.getIfPresent(marketHashName) == null
+                && buffMissCache.getIfPresent(marketHashName) == null) {
+            pendingNames.add(marketHashName);
+        }
+    }
+
+    /**
+     * 后台批量解析 (在解析线程上执行)
+     */
+    public void resolvePending() {
+        try {
+            doResolvePending();
+        } catch (Exception e) {
+            // 异常不能抛出去，否则定时任务会被取消
+            log.error("❌ [ID解析] 本轮解析失败", e);
+        }
+    }
+
+    private void doResolvePending() {
+        if (!warmed) {
+            warmUp();
+        }
+        if (pendingNames.isEmpty()) {
+            return;
+        }
+
+        // 1. 按基础名分组：同一基础名的不同磨损/StatTrak 版本一次搜索解决
+        Map<String, List<String>> keywordMap = new LinkedHashMap<>();
+        for (String name : pendingNames) {
+            if (buffIdCache.getIfPresent(name) != null) {
+                pendingNames.remove(name);
+                continue;
+            }
+            String keyword = searchKeyword(name);
+            if (!keywordMap.containsKey(keyword) && keywordMap.size() >= keywordsPerRound) {
+                continue;
+            }
+            keywordMap.computeIfAbsent(keyword, k -> new ArrayList<>()).add(name);
+        }
+
+        // 2. 逐个基础名搜索
+        for (Map.Entry<String, List<String>> entry : keywordMap.entrySet()) {
+            resolveKeyword(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void resolveKeyword(String keyword, List<String> names) {
+        BuffStrategy buffStrategy = buffStrategyProvider.getIfAvailable();
+        if (buffStrategy == null) {
+            return;
+        }
+
+        Set<String> unresolved = new HashSet<>(names);
+        Map<String, Long> learned = new HashMap<>();
+        Integer resumePage = nextPageCache.getIfPresent(keyword);
+        int firstPage = resumePage == null ? 1 : resumePage;
+        int lastPage = firstPage + maxPages - 1;
+        boolean exhausted = false;
+        for (int page = firstPage; page <= lastPage; page++) {
+            BuffSearchResponse response = buffStrategy.searchPage(keyword, page);
+            searchCount.incrementAndGet();
+            if (response == null) {
+                // 被拦截/异常：保留在待解析集合，下一轮从这一页再试
+                nextPageCache.put(keyword, page);
+                persist(keyword, learned, unresolved.size());
+                return;
+            }
+
+            // 整页的映射都收下，不只是这次要找的
+            for (Map.Entry<String, Long> item : response.getGoodsIdMap().entrySet()) {
+                if (!Objects.equals(buffIdCache.getIfPresent(item.getKey()), item.getValue())) {
+                    buffIdCache.put(item.getKey(), item.getValue());
+                    learned.put(item.getKey(), item.getValue());
+                }
+                unresolved.remove(item.getKey());
+            }
+            if (page >= response.getTotalPage()) {
+                exhausted = true;
+            }
+            if (unresolved.isEmpty() || exhausted) {
+                break;
+            }
+        }
+
+        resolvedCount.addAndGet(names.size() - unresolved.size());
+        names.stream().filter(name -> !unresolved.contains(name)).forEach(pendingNames::remove);
+        if (unresolved.isEmpty() || exhausted) {
+            nextPageCache.invalidate(keyword);
+            // 所有页都翻过了还没有，才记为搜不到
+            for (String name : unresolved) {
+                pendingNames.remove(name);
+                buffMissCache.put(name, Boolean.TRUE);
+                missCount.incrementAndGet();
+            }
+        } else {
+            // 本轮页数用完还没翻到底：留在待解析集合，下一轮接着往后翻
+            nextPageCache.put(keyword, lastPage + 1);
+        }
+        persist(keyword, learned, unresolved.size());
+    }
+
+    /**
+     * 写回 skin_item (只更新没有ID或ID不一致的行，搜索结果里库中没有的饰品是空操作)
+     */
+    private void persist(String keyword, Map<String, Long> learned, int unresolved) {
+        if (!learned.isEmpty()) {
+            try {
+                int updated = skinItemService.fillBuffGoodsIdByHashName(learned);
+                persistedCount.addAndGet(updated);
+                log.info("🔗 [ID解析] 基础名 [{}] 搜到 {} 个映射，回填 {} 条，未找到 {} 个", keyword, learned.size(), updated, unresolved);
+            } catch (Exception e) {
+                log.error("❌ [ID解析] 映射回填失败: {}", keyword, e);
+            }
+        }
+    }
+
+    /**
+     * 从数据库预热已有映射
+     */
+    private void warmUp() {
+        try {
+            Map<String, Long> map = skinItemService.selectBuffGoodsIdMap();
+            buffIdCache.putAll(map);
+            warmed = true;
+            log.info("🔗 [ID解析] 预热 Buff ID 映射 {} 条", map.size());
+        } catch (Exception e) {
+            log.warn("⚠️ [ID解析] 预热失败，下一轮重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 搜索用的基础名："StatTrak™ AK-47 | Redline (Field-Tested)" -> "AK-47 | Redline"
+     */
+    private static String searchKeyword(String marketHashName) {
+        String keyword = EXTERIOR_PATTERN.matcher(marketHashName).replaceFirst("");
+        keyword = PREFIX_PATTERN.matcher(keyword).replaceFirst("");
+        return StrUtil.isBlank(keyword) ? marketHashName : keyword.trim();
+    }
+
+    /**
+     * ID 解析运行指标
+     */
+    public Map<String, Object> getResolverStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("warmed", warmed);
+        stats.put("cachedMappings", buffIdCache.size());
+        stats.put("negativeCached", buffMissCache.size());
+        stats.put("resumingKeywords", nextPageCache.size());
+        stats.put("pending", pendingNames.size());
+        stats.put("searches", searchCount.get());
+        stats.put("resolved", resolvedCount.get());
+        stats.put("notFound", missCount.get());
+        stats.put("persisted", persistedCount.get());
+        return stats;
+    }
+}
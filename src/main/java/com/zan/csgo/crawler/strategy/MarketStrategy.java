@@ -1,8 +1,11 @@
 package com.zan.csgo.crawler.strategy;
 
+import com.zan.csgo.exception.BusinessException;
 import com.zan.csgo.model.dto.PriceFetchResultDTO;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * @Author Zan
@@ -12,6 +15,11 @@ import java.util.List;
  */
 public interface MarketStrategy {
 
+    /**
+     * 不设截止时间
+     */
+    long NO_DEADLINE = Long.MAX_VALUE;
+
     /**
      * 获取平台名称 (用于日志)
      */
@@ -32,4 +40,57 @@ public interface MarketStrategy {
      * @return 抓取成功的价格列表
      */
     List<PriceFetchResultDTO> batchFetchPrices(List<String> ids);
+
+    /**
+     * 异步获取价格
+     * 默认实现只是把同步方法丢到公共线程池，有异步 HTTP 实现的平台应覆盖此方法
+     */
+    default CompletableFuture<PriceFetchResultDTO> fetchPriceAsync(Object key) {
+        return CompletableFuture.supplyAsync(() -> fetchPrice(key));
+    }
+
+    /**
+     * 异步批量获取价格
+     * 全部失败时以 BusinessException 异常结束 (与同步方法抛异常的语义一致)
+     */
+    default CompletableFuture<List<PriceFetchResultDTO>> batchFetchPricesAsync(List<String> ids) {
+        return batchFetchPricesAsync(ids, NO_DEADLINE);
+    }
+
+    /**
+     * 带截止时间的异步批量获取价格：调用方超时后不会再等结果，过了截止时间就不再发出新的请求 (含重试、拆分)，
+     * 否则这批饰品被补偿重新入队后，旧的请求链还在后台继续抓，同一批饰品会被抓两遍
+     * 默认实现在线程池排到时检查一次 (同步方法一旦开始就只能跑完)，有异步 HTTP 实现的平台应覆盖此方法
+     *
+     * @param deadline 截止时间戳 (毫秒)
+     */
+    default CompletableFuture<List<PriceFetchResultDTO>> batchFetchPricesAsync(List<String> ids, long deadline) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (isExpired(deadline)) {
+                throw new BusinessException(getPlatformName() + " 批次已超过截止时间，不再抓取");
+            }
+            return batchFetchPrices(ids);
+        });
+    }
+
+    /**
+     * 是否已过截止时间
+     */
+    static boolean isExpired(long deadline) {
+        return System.currentTimeMillis() >= deadline;
+    }
+
+    /**
+     * 等待异步结果 (同步方法复用异步实现时使用)，把 CompletionException 还原成原始异常
+     */
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 }
@@ -1,18 +1,20 @@
 package com.zan.csgo.crawler.strategy.impl;
 
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.ObjectUtil;
-import cn.hutool.core.util.RandomUtil;
-import cn.hutool.core.util.ReUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
 import cn.hutool.http.HttpUtil;
-import cn.hutool.json.JSONArray;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.zan.csgo.crawler.breaker.CircuitBreakerRegistry;
+import com.zan.csgo.crawler.http.CrawlerHttpClientManager;
+import com.zan.csgo.crawler.limiter.AdaptiveBatchController;
+import com.zan.csgo.crawler.limiter.HedgePolicy;
+import com.zan.csgo.crawler.limiter.PlatformRateLimiter;
+import com.zan.csgo.crawler.parser.BuffBatchResponse;
+import com.zan.csgo.crawler.parser.BuffSearchResponse;
+import com.zan.csgo.crawler.parser.BuffSellOrderResponse;
+import com.zan.csgo.crawler.resolver.PlatformIdResolver;
 import com.zan.csgo.crawler.strategy.MarketStrategy;
+import com.zan.csgo.enums.BreakerSignalEnum;
 import com.zan.csgo.enums.PlatformEnum;
 import com.zan.csgo.exception.BusinessException;
 import com.zan.csgo.model.dto.PriceFetchResultDTO;
@@ -23,10 +25,20 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
 import java.net.Proxy;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * @Author Zan
@@ -53,8 +65,35 @@ public class BuffStrategy implements MarketStrategy {
     @Resource
     private ProxyProviderUtil proxyProviderUtil;
 
+    @Resource
+    private PlatformRateLimiter platformRateLimiter;
+
+    @Resource
+    private CrawlerHttpClientManager httpClientManager;
+
+    @Resource
+    private AdaptiveBatchController adaptiveBatchController;
+
+    @Resource
+    private HedgePolicy hedgePolicy;
+
+    @Resource
+    private PlatformIdResolver platformIdResolver;
+
+    @Resource
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
     private static final int MAX_RETRIES = 5;
 
+    // 批量接口最多重试次数
+    private static final int BATCH_MAX_RETRIES = 3;
+
+    @Value("${csgo.batch.buff.max-split-depth:4}")
+    private int maxSplitDepth; // 批量失败后最多对半拆分几层 (80 个拆 4 层到 5 个一组)
+
+    @Value("${csgo.batch.buff.max-split-requests:8}")
+    private int maxSplitRequests; // 一个批次因拆分最多追加的子请求数 (防止个别坏 ID 把一批放大成几十个请求)
+
     @Override
     public String getPlatformName() {
         return PlatformEnum.BUFF.getName();
@@ -72,10 +111,10 @@ public class BuffStrategy implements MarketStrategy {
         // 1. 智能参数解析
         if (key instanceof String) {
             marketHashName = (String) key;
-            // 搜索 ID 也需要走代理，防止搜索阶段就被封 IP
-            goodsId = searchId(marketHashName);
+            // 只查本地映射，未知的名字交给后台批量解析，当前请求不再现场搜索
+            goodsId = platformIdResolver.resolve(PlatformEnum.BUFF, marketHashName);
             if (goodsId == null) {
-                return PriceFetchResultDTO.fail(getPlatformName(), "搜索不到该饰品ID: " + marketHashName);
+                return PriceFetchResultDTO.fail(getPlatformName(), "饰品ID解析中: " + marketHashName);
             }
         } else if (key instanceof Long) {
             // 兼容逻辑：如果调用者通过某种方式直接传了 ID (性能优化)
@@ -103,120 +142,211 @@ public class BuffStrategy implements MarketStrategy {
 
         // 🔥 开启重试循环
         while (attempt < MAX_RETRIES) {
+            // 重试途中平台被熔断了 (其他请求发现 Cookie 失效或大面积失败)，剩下的次数不再浪费；半开时每次尝试占一个试探名额
+            if (!circuitBreakerRegistry.allowPlatform(PlatformEnum.BUFF)) {
+                return PriceFetchResultDTO.fail("BUFF", "平台熔断中");
+            }
             attempt++;
 
-            // 1. 获取随机代理
-            Proxy proxy = null;
-            // 如果是最后一次尝试，强制使用直连 (proxy = null)
+            // 如果是最后一次尝试，强制使用直连 (不对冲)
             boolean isLastAttempt = (attempt == MAX_RETRIES);
-
-            if (!isLastAttempt) {
-                proxy = proxyProviderUtil.getRandomProxy(PlatformEnum.BUFF);
-            } else {
+            if (isLastAttempt) {
                 log.warn("🔥 [Buff] 代理全挂，尝试【本机直连】兜底...");
             }
-            String proxyStr = (proxy != null) ? proxy.address().toString() : "直连";
-
-            try {
-                // 2. 提取 CSRF Token
-                String csrfToken = extractCsrfToken(buffCookie);
-
-                // 3. 构造请求 (保留你原有的优秀 Header)
-                HttpRequest request = HttpRequest.get(url)
-                        .header("Cookie", buffCookie)
-                        // 1. 升级 User-Agent (使用最新的 Chrome 标识)
-                        .header("User-Agent", UserAgentUtil.random()) // 随机 UA
-                        // 2. 动态 Referer (必须指向商品详情页)
-                        .header("Referer", "https://buff.163.com/goods/" + goodsId)
-                        // 3. 标记 AJAX 请求 (老生常谈，但必须有)
-                        .header("X-Requested-With", "XMLHttpRequest")
-                        // 4. 告诉服务器我想要 JSON，不要给我 HTML
-                        .header("Accept", "application/json, text/javascript, */*; q=0.01")
-                        // 5. 语言权重 (中文浏览器)
-                        .header("Accept-Language", "zh-CN,zh;q=0.9,en;q=0.8")
-                        // 6. 模拟同源请求，防检测
-                        .header("Sec-Fetch-Dest", "empty")
-                        .header("Sec-Fetch-Mode", "cors")
-                        .header("Sec-Fetch-Site", "same-origin")
-                        // 7. 延长超时时间
-                        .timeout(8000); // 代理慢，超时给8秒
-
-                if (StrUtil.isNotBlank(csrfToken)) {
-                    request.header("X-CSRFToken", csrfToken);
+
+            // 主请求 + (慢的时候) 对冲请求，拿第一个有效的 JSON 响应
+            BuffSellOrderResponse body = hedgedFetch(url, goodsId, attempt, isLastAttempt);
+            if (body == null) {
+                continue; // 都失败了，换 IP 重试
+            }
+
+            if (body.isOk()) {
+                if (body.getLowestPrice() != null) {
+                    log.info("✅ Buff抓取成功 (第{}次) ID:{} -> ¥{}", attempt, goodsId, body.getLowestPrice());
+
+                    return PriceFetchResultDTO.builder()
+                            .success(true)
+                            .platform("BUFF")
+                            .price(body.getLowestPrice())
+                            .volume(body.getTotalCount())
+                            .targetId(goodsId)
+                            .build();
                 }
+                // 没货了，不需要重试
+                return PriceFetchResultDTO.fail("BUFF", "当前无在售商品");
+            }
+
+            // 处理业务错误：如果是 Login Required，说明 Cookie 死了，重试也没用，直接退出
+            if ("Login Required".equals(body.getError())) {
+                log.error("⛔ [Buff] Cookie 已失效，请更新！");
+                circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, null, BreakerSignalEnum.LOGIN_REQUIRED);
+                return PriceFetchResultDTO.fail("BUFF", "Cookie失效");
+            }
+            log.warn("⚠️ [Buff] API错误: {}", body.getError());
+        }
+
+        log.error("❌ [Buff] ID:{} 重试 {} 次后全部失败", goodsId, MAX_RETRIES);
+        return PriceFetchResultDTO.fail("BUFF", "重试耗尽/无可用代理");
+    }
+
+    /**
+     * 对冲请求：主请求超过最近耗时的百分位还没回来，就换一个代理再发一份 (受对冲预算限制)，
+     * 先拿到有效 JSON 的一方胜出，另一方直接取消
+     *
+     * @param direct 是否直连 (直连只有一条出口，不对冲)
+     * @return 胜出的响应；全部失败时返回 null
+     */
+    private BuffSellOrderResponse hedgedFetch(String url, Long goodsId, int attempt, boolean direct) {
+        Proxy primaryProxy = direct ? null : proxyProviderUtil.getRandomProxy(PlatformEnum.BUFF);
+        hedgePolicy.recordPrimary(PlatformEnum.BUFF);
 
-                // 🔥 注入代理
-                if (proxy != null) {
-                    request.setProxy(proxy);
+        CompletableFuture<BuffSellOrderResponse> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        // 主请求是同步抓取的一部分，在调用线程上等令牌
+        platformRateLimiter.acquire(PlatformEnum.BUFF, primaryProxy);
+        CompletableFuture<HttpResponse<BuffSellOrderResponse>> primary = sendSellOrder(url, goodsId, primaryProxy, attempt, false, winner, pending);
+
+        long hedgeDelayMs = hedgePolicy.hedgeDelayMs(PlatformEnum.BUFF);
+        try {
+            if (!direct && primaryProxy != null && hedgeDelayMs >= 0) {
+                try {
+                    return winner.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // 主请求慢于历史百分位，换个代理补发一份
+                    sendHedge(url, goodsId, primaryProxy, attempt, winner, pending);
                 }
+            }
+            // 请求自带超时，这里一定会结束
+            return winner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } finally {
+            // 定下结果 (已有结果时无副作用)，触发取消还没回来的对冲请求
+            winner.complete(null);
+            primary.cancel(true);
+        }
+    }
 
-                // 4. 发送请求 (使用 try-with-resources 自动关闭连接)
-                try (HttpResponse response = request.execute()) {
-                    String res = response.body();
+    /**
+     * 发出对冲请求：先在 pending 里占位再发 (主请求恰好在此刻失败时不会提前以 null 结束)，
+     * 令牌异步等待，不阻塞等结果的调用线程；结果定下后还没回来的对冲请求直接取消
+     */
+    private void sendHedge(String url, Long goodsId, Proxy primaryProxy, int attempt,
+                           CompletableFuture<BuffSellOrderResponse> winner, AtomicInteger pending) {
+        // 只在还有请求在途时占位；已经归零说明主请求刚失败、结果已定，不再对冲
+        if (pending.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+            return;
+        }
+        Proxy hedgeProxy = pickHedgeProxy(primaryProxy);
+        if (hedgeProxy == null || !hedgePolicy.tryAcquireHedge(PlatformEnum.BUFF)) {
+            releasePending(winner, pending);
+            return;
+        }
+        platformRateLimiter.acquireAsync(PlatformEnum.BUFF, hedgeProxy).whenComplete((v, ex) -> {
+            if (ex != null || winner.isDone()) {
+                // 等令牌期间主请求已经有结果了
+                releasePending(winner, pending);
+                return;
+            }
+            CompletableFuture<HttpResponse<BuffSellOrderResponse>> hedge = sendSellOrder(url, goodsId, hedgeProxy, attempt, true, winner, pending);
+            winner.whenComplete((body, e) -> hedge.cancel(true));
+        });
+    }
 
-                    // 5. 【WAF 防御】拦截 HTML 响应
-                    if (StrUtil.isBlank(res) || StrUtil.trim(res).startsWith("<")) {
-                        String title = ReUtil.get("<title>(.*?)</title>", res, 1);
-                        log.warn("⚠️ [Buff] 第{}次被墙/返回HTML: {} (Proxy: {})", attempt, title, proxyStr);
+    /**
+     * 一路请求结束且没有有效结果：所有路都结束后以 null 定下结果
+     */
+    private void releasePending(CompletableFuture<BuffSellOrderResponse> winner, AtomicInteger pending) {
+        if (pending.decrementAndGet() == 0) {
+            winner.complete(null);
+        }
+    }
 
-                        // 🚨 关键：如果是坏代理，从 Redis 移除，防止下次还用到它
-                        if (proxy != null) {
-                            proxyProviderUtil.removeBadProxy(proxy, PlatformEnum.BUFF);
-                        }
-                        continue; // 换下一个 IP 重试
-                    }
+    /**
+     * 发出一路在售列表请求 (调用方已拿到令牌)，结果汇入 winner：有效 JSON 立即胜出；所有路都失败后以 null 结束
+     */
+    private CompletableFuture<HttpResponse<BuffSellOrderResponse>> sendSellOrder(String url, Long goodsId, Proxy proxy, int attempt, boolean isHedge,
+                                                                                  CompletableFuture<BuffSellOrderResponse> winner, AtomicInteger pending) {
+        String proxyStr = (proxy != null) ? proxy.address().toString() : "直连";
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<HttpResponse<BuffSellOrderResponse>> future = httpClientManager.sendJsonAsync(buildSellOrderRequest(url, goodsId), proxy, BuffSellOrderResponse.READER);
+        future.whenComplete((response, ex) -> {
+            BuffSellOrderResponse body = null;
+            if (ex != null) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                if (!(cause instanceof CancellationException)) {
+                    log.warn("⚠️ [Buff] 第{}次{}连接超时: {} (Proxy: {})", attempt, isHedge ? "对冲请求" : "", cause.getMessage(), proxyStr);
+                    circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy, BreakerSignalEnum.of(cause));
+                }
+            } else if (response.body() == null) {
+                // 【WAF 防御】非 200 或返回 HTML
+                log.warn("⚠️ [Buff] 第{}次被墙/非JSON响应 HTTP {} (Proxy: {})", attempt, response.statusCode(), proxyStr);
+                // 🚨 关键：坏代理先隔离 (被拦截多次才移出代理池)，防止下次还用到它
+                circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy, BreakerSignalEnum.ofRejected(response.statusCode()));
+            } else {
+                body = response.body();
+                long latency = System.currentTimeMillis() - start;
+                hedgePolicy.recordLatency(PlatformEnum.BUFF, latency);
+                circuitBreakerRegistry.recordSuccess(PlatformEnum.BUFF, proxy, latency);
+            }
 
-                    // 6. 解析 JSON
-                    JSONObject json = JSONUtil.parseObj(res);
-                    String code = json.getStr("code");
-
-                    if ("OK".equals(code)) {
-                        JSONObject data = json.getJSONObject("data");
-                        JSONArray items = data.getJSONArray("items");
-
-                        if (items != null && !items.isEmpty()) {
-                            JSONObject lowestItem = items.getJSONObject(0);
-                            BigDecimal price = lowestItem.getBigDecimal("price");
-                            Integer totalCount = data.getInt("total_count");
-
-                            log.info("✅ Buff抓取成功 (第{}次) ID:{} -> ¥{}", attempt, goodsId, price);
-
-                            return PriceFetchResultDTO.builder()
-                                    .success(true)
-                                    .platform("BUFF")
-                                    .price(price)
-                                    .volume(totalCount)
-                                    .targetId(goodsId)
-                                    .build();
-                        } else {
-                            // 没货了，不需要重试
-                            return PriceFetchResultDTO.fail("BUFF", "当前无在售商品");
-                        }
-                    } else {
-                        // 7. 处理业务错误
-                        String errorMsg = json.getStr("error");
-
-                        // 如果是 Login Required，说明 Cookie 死了，重试也没用，直接退出
-                        if ("Login Required".equals(errorMsg)) {
-                            log.error("⛔ [Buff] Cookie 已失效，请更新！");
-                            return PriceFetchResultDTO.fail("BUFF", "Cookie失效");
-                        }
-
-                        log.warn("⚠️ [Buff] API错误: {} (Proxy: {})", errorMsg, proxyStr);
-                    }
+            if (body != null) {
+                if (winner.complete(body) && isHedge) {
+                    hedgePolicy.recordHedgeWin(PlatformEnum.BUFF);
+                    log.info("🏁 [Buff] 对冲请求胜出 ID:{} (Proxy: {})", goodsId, proxyStr);
                 }
-            } catch (Exception e) {
-                // 8. 处理网络超时
-                log.warn("⚠️ [Buff] 第{}次连接超时: {} (Proxy: {})", attempt, e.getMessage(), proxyStr);
-                if (proxy != null) proxyProviderUtil.removeBadProxy(proxy, PlatformEnum.BUFF);
-            } finally {
-                long sleep = RandomUtil.randomLong(500, 1500);
-                ThreadUtil.sleep(sleep);
+            } else {
+                releasePending(winner, pending);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 选一个与主请求不同的代理做对冲
+     */
+    private Proxy pickHedgeProxy(Proxy primaryProxy) {
+        for (int i = 0; i < 3; i++) {
+            Proxy proxy = proxyProviderUtil.getRandomProxy(PlatformEnum.BUFF);
+            if (proxy != null && !proxy.address().equals(primaryProxy.address())) {
+                return proxy;
             }
         }
+        return null;
+    }
 
-        log.error("❌ [Buff] ID:{} 重试 {} 次后全部失败", goodsId, MAX_RETRIES);
-        return PriceFetchResultDTO.fail("BUFF", "重试耗尽/无可用代理");
+    /**
+     * 构造在售列表请求 (保留你原有的优秀 Header)，连接由传输层按代理复用
+     */
+    private HttpRequest buildSellOrderRequest(String url, Long goodsId) {
+        // 提取 CSRF Token
+        String csrfToken = extractCsrfToken(buffCookie);
+
+        HttpRequest.Builder request = httpClientManager.newGet(url)
+                .header("Cookie", buffCookie)
+                // 1. 升级 User-Agent (使用最新的 Chrome 标识)
+                .header("User-Agent", UserAgentUtil.random()) // 随机 UA
+                // 2. 动态 Referer (必须指向商品详情页)
+                .header("Referer", "https://buff.163.com/goods/" + goodsId)
+                // 3. 标记 AJAX 请求 (老生常谈，但必须有)
+                .header("X-Requested-With", "XMLHttpRequest")
+                // 4. 告诉服务器我想要 JSON，不要给我 HTML
+                .header("Accept", "application/json, text/javascript, */*; q=0.01")
+                // 5. 语言权重 (中文浏览器)
+                .header("Accept-Language", "zh-CN,zh;q=0.9,en;q=0.8")
+                // 6. 模拟同源请求，防检测
+                .header("Sec-Fetch-Dest", "empty")
+                .header("Sec-Fetch-Mode", "cors")
+                .header("Sec-Fetch-Site", "same-origin");
+
+        if (StrUtil.isNotBlank(csrfToken)) {
+            request.header("X-CSRFToken", csrfToken);
+        }
+        return request.build();
     }
 
     /**
@@ -225,147 +355,238 @@ public class BuffStrategy implements MarketStrategy {
      */
     @Override
     public List<PriceFetchResultDTO> batchFetchPrices(List<String> ids) {
+        return MarketStrategy.await(batchFetchPricesAsync(ids));
+    }
+
+    /**
+     * 🔥 Buff 异步批量抓取：限流等待靠定时器、请求走异步 HTTP，整个过程不占用线程
+     * 整批重试 3 次仍因商品级错误失败 (HTTP 200 的 JSON 业务错误) 时对半拆分、换代理分别重试，逐层缩小到真正有问题的 ID；
+     * 超时 / WAF / 429 是代理或平台的问题，拆分只会放大请求量，不拆；
+     * 返回逐个饰品的成功/失败 (失败的带 targetId)，上层只补偿失败的那几个。一个都没成功时以 BusinessException 结束
+     */
+    @Override
+    public CompletableFuture<List<PriceFetchResultDTO>> batchFetchPricesAsync(List<String> ids, long deadline) {
         log.info("🔥 Buff 批量抓取开始 ids:{}", ids);
-        List<PriceFetchResultDTO> results = new ArrayList<>();
         if (CollectionUtil.isEmpty(ids)) {
-            return results;
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
 
-        // 1. 关键：手动拼接参数，防止逗号被 Hutool 转义为 %2C，导致 Buff 无法识别
-        String idsParam = String.join(",", ids);
-        String url = String.format(buffBatchSearchApiUrl, idsParam);
+        return fetchOrSplitAsync(ids, BATCH_MAX_RETRIES, 0, deadline, new AtomicInteger(maxSplitRequests)).thenApply(results -> {
+            if (results.stream().noneMatch(PriceFetchResultDTO::isSuccess)) {
+                // 拆到底都没有一个成功，说明全挂了。异常结束，通知上层工人回滚数据！
+                throw new BusinessException("Buff 批量重试及拆分后全部失败，触发补偿机制");
+            }
+            return results;
+        });
+    }
 
-        int attempt = 0;
-        while (attempt < 3) { // 批量接口重试 3 次
-            attempt++;
-            Proxy proxy = (proxyProviderUtil != null) ? proxyProviderUtil.getRandomProxy(PlatformEnum.BUFF) : null;
-            String proxyStr = (proxy != null) ? proxy.address().toString() : "直连";
-
-            try {
-                // 2. 发起请求
-                HttpRequest request = HttpRequest.get(url)
-                        .header("Cookie", buffCookie) // BUFF必须要Cookie
-                        .header("User-Agent", UserAgentUtil.random())
-                        .header("Referer", "https://buff.163.com/market/")
-                        .header("X-Requested-With", "XMLHttpRequest") // 必带
-                        .timeout(8000);
-
-                if (proxy != null) request.setProxy(proxy);
-
-                try (HttpResponse response = request.execute()) {
-                    String res = response.body();
-
-                    // 3. WAF / 封禁检测
-                    if (StrUtil.isBlank(res) || StrUtil.trim(res).startsWith("<")) {
-                        log.warn("⚠️ [Buff批量] 第{}次被墙/HTML响应 (Proxy: {})", attempt, proxyStr);
-                        if (proxy != null) proxyProviderUtil.removeBadProxy(proxy, PlatformEnum.BUFF);
-                        continue;
+    /**
+     * 抓取一批，因商品级错误失败则拆成两半分别抓取 (拆分后的子批次各只试 1 次，失败继续拆)，
+     * 拆到单个 ID、达到最大拆分层数或拆分预算用完时，剩下的 ID 逐个记为失败
+     *
+     * @param splitBudget 整个批次剩余可追加的子请求数 (所有层共用)
+     */
+    private CompletableFuture<List<PriceFetchResultDTO>> fetchOrSplitAsync(List<String> ids, int maxAttempts, int depth, long deadline,
+                                                                         AtomicInteger splitBudget) {
+        // 1. 关键：手动拼接参数，防止逗号被转义为 %2C，导致 Buff 无法识别
+        String url = String.format(buffBatchSearchApiUrl, String.join(",", ids));
+        AtomicBoolean itemError = new AtomicBoolean();
+        return batchAttemptAsync(url, ids, 1, maxAttempts, deadline, itemError)
+                .thenApply(results -> markMissing(ids, results))
+                .exceptionallyCompose(ex -> {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    // 只有最后一次失败是商品级错误才值得拆；平台已熔断时拆分只会制造更多注定失败的请求；过了截止时间上层已经不等了
+                    if (!itemError.get() || ids.size() == 1 || depth >= maxSplitDepth || MarketStrategy.isExpired(deadline)
+                            || circuitBreakerRegistry.isPlatformOpen(PlatformEnum.BUFF) || !takeSplitBudget(splitBudget)) {
+                        return CompletableFuture.completedFuture(failAll(ids, cause.getMessage()));
                     }
+                    int mid = ids.size() / 2;
+                    log.info("✂️ [Buff批量] {} 个 ID 请求失败，拆分为 {} + {} 重试 (第{}层)", ids.size(), mid, ids.size() - mid, depth + 1);
+                    CompletableFuture<List<PriceFetchResultDTO>> left = fetchOrSplitAsync(ids.subList(0, mid), 1, depth + 1, deadline, splitBudget);
+                    CompletableFuture<List<PriceFetchResultDTO>> right = fetchOrSplitAsync(ids.subList(mid, ids.size()), 1, depth + 1, deadline, splitBudget);
+                    return left.thenCombine(right, (a, b) -> {
+                        List<PriceFetchResultDTO> merged = new ArrayList<>(a.size() + b.size());
+                        merged.addAll(a);
+                        merged.addAll(b);
+                        return merged;
+                    });
+                });
+    }
 
-                    // 4. 解析 JSON
-                    JSONObject json = JSONUtil.parseObj(res);
-                    String code = json.getStr("code");
-
-                    if ("OK".equals(code)) {
-                        JSONArray items = json.getJSONObject("data").getJSONArray("items");
-                        if (items != null) {
-                            for (int i = 0; i < items.size(); i++) {
-                                JSONObject item = items.getJSONObject(i);
-                                // 注意：列表页最低价字段是 sell_min_price
-                                BigDecimal price = item.getBigDecimal("sell_min_price");
-                                String id = item.getStr("id");
-
-                                if (price != null) {
-                                    results.add(PriceFetchResultDTO.builder()
-                                            .success(true)
-                                            .platform(PlatformEnum.BUFF.getName())
-                                            .targetId(id)
-                                            .price(price)
-                                            .build());
-                                }
-                            }
-                        }
-                        log.info("📦 [Buff批量] 成功抓取 {}/{} 个 (Proxy: {})", results.size(), ids.size(), proxyStr);
-                        return results; // 成功即返回
-                    } else {
-                        String error = json.getStr("error");
-                        if ("Login Required".equals(error)) {
-                            log.error("⛔ [Buff] Cookie 已失效，请更新！");
-                            return results; // Cookie 死了，重试无意义
-                        }
-                        log.warn("⚠️ [Buff批量] API业务错误: {}", error);
-                    }
-                }
-            } catch (Exception e) {
-                log.warn("⚠️ [Buff批量] 网络异常: {} (Proxy: {})", e.getMessage(), proxyStr);
-                if (proxy != null) proxyProviderUtil.removeBadProxy(proxy, PlatformEnum.BUFF);
-            } finally {
-                // 批次内简单休眠
-                ThreadUtil.sleep(RandomUtil.randomInt(500, 1000));
+    /**
+     * 一次拆分追加 2 个子请求，预算不够就不拆
+     */
+    private static boolean takeSplitBudget(AtomicInteger splitBudget) {
+        return splitBudget.getAndUpdate(n -> n >= 2 ? n - 2 : n) >= 2;
+    }
+
+    /**
+     * 请求成功但响应里没有价格的 ID (已下架/无在售/ID 失效)，补一条带 targetId 的失败结果
+     */
+    private List<PriceFetchResultDTO> markMissing(List<String> ids, List<PriceFetchResultDTO> results) {
+        Set<String> returned = results.stream().map(dto -> String.valueOf(dto.getTargetId())).collect(Collectors.toSet());
+        List<PriceFetchResultDTO> merged = new ArrayList<>(results);
+        for (String id : ids) {
+            if (!returned.contains(id)) {
+                PriceFetchResultDTO dto = PriceFetchResultDTO.fail(getPlatformName(), "批量结果中无该商品价格 (可能已下架或无在售)");
+                dto.setTargetId(id);
+                merged.add(dto);
             }
         }
-        // 如果代码走到这里，说明 3 次循环都跑完了，还是没 return，说明全挂了。
-        // 抛出异常，通知上层工人回滚数据！
-        throw new BusinessException("Buff 3次代理重试全部失败，触发补偿机制");
+        return merged;
+    }
+
+    private List<PriceFetchResultDTO> failAll(List<String> ids, String msg) {
+        List<PriceFetchResultDTO> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            PriceFetchResultDTO dto = PriceFetchResultDTO.fail(getPlatformName(), msg);
+            dto.setTargetId(id);
+            results.add(dto);
+        }
+        return results;
     }
 
     /**
-     * 搜索方法 (也加上代理，防止搜索时就被封 IP)
+     * 批量接口的第 attempt 次尝试，失败则换代理递归重试 (最多 maxAttempts 次)
+     *
+     * @param itemError 记录最近一次失败是否为商品级错误 (HTTP 200 的 JSON 业务错误)
      */
-    private Long searchId(String marketHashName) {
-        log.info(">>> [Buff Search] 开始搜索: {}", marketHashName);
-        int page = 1;
-        int maxPage = 3;
+    private CompletableFuture<List<PriceFetchResultDTO>> batchAttemptAsync(String url, List<String> ids, int attempt, int maxAttempts, long deadline,
+                                                                         AtomicBoolean itemError) {
+        if (attempt > maxAttempts) {
+            return CompletableFuture.failedFuture(new BusinessException("Buff " + maxAttempts + "次代理重试全部失败"));
+        }
+        if (MarketStrategy.isExpired(deadline)) {
+            return CompletableFuture.failedFuture(new BusinessException("Buff 批次已超过截止时间，不再重试"));
+        }
+        if (!circuitBreakerRegistry.allowPlatform(PlatformEnum.BUFF)) {
+            return CompletableFuture.failedFuture(new BusinessException("Buff 平台熔断中"));
+        }
 
-        while (page <= maxPage) {
-            String url = String.format(buffSearchApiUrl, HttpUtil.encodeParams(marketHashName, null), page);
+        Proxy proxy = (proxyProviderUtil != null) ? proxyProviderUtil.getRandomProxy(PlatformEnum.BUFF) : null;
+        String proxyStr = (proxy != null) ? proxy.address().toString() : "直连";
+
+        // 2. 发起请求
+        HttpRequest request = httpClientManager.newGet(url)
+                .header("Cookie", buffCookie) // BUFF必须要Cookie
+                .header("User-Agent", UserAgentUtil.random())
+                .header("Referer", "https://buff.163.com/market/")
+                .header("X-Requested-With", "XMLHttpRequest") // 必带
+                .build();
+
+        return platformRateLimiter.acquireAsync(PlatformEnum.BUFF, proxy)
+                // 响应体流式解析，只摘 id 和 sell_min_price；HTML 页面读到首字节就停止接收
+                .thenCompose(v -> {
+                    // 等令牌期间过了截止时间，不再发出
+                    if (MarketStrategy.isExpired(deadline)) {
+                        circuitBreakerRegistry.releasePlatform(PlatformEnum.BUFF);
+                        return CompletableFuture.failedFuture(new BusinessException("Buff 批次已超过截止时间，不再请求"));
+                    }
+                    long sentAt = System.currentTimeMillis(); // 限流排队不算进代理延迟
+                    return httpClientManager.sendJsonAsync(request, proxy, BuffBatchResponse.READER)
+                            .handle((response, ex) -> {
+                                if (ex != null) {
+                                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                                    log.warn("⚠️ [Buff批量] 网络异常: {} (Proxy: {})", cause.getMessage(), proxyStr);
+                                    itemError.set(false);
+                                    adaptiveBatchController.recordRejection(PlatformEnum.BUFF);
+                                    circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy, BreakerSignalEnum.of(cause));
+                                    return null;
+                                }
+                                return parseBatchResponse(response, ids, proxy, proxyStr, attempt, System.currentTimeMillis() - sentAt, itemError);
+                            });
+                })
+                // null 表示本次失败，换代理重试
+                .thenCompose(results -> results != null
+                        ? CompletableFuture.completedFuture(results)
+                        : batchAttemptAsync(url, ids, attempt + 1, maxAttempts, deadline, itemError));
+    }
 
-            // 为了保证搜索成功率，这里也简单加个重试，或者直接拿一个代理用
-            Proxy proxy = proxyProviderUtil.getRandomProxy(PlatformEnum.BUFF);
+    /**
+     * 处理批量接口响应
+     *
+     * @return 抓取结果；需要换代理重试时返回 null
+     */
+    private List<PriceFetchResultDTO> parseBatchResponse(HttpResponse<BuffBatchResponse> response, List<String> ids, Proxy proxy, String proxyStr, int attempt,
+                                                         long latencyMs, AtomicBoolean itemError) {
+        BuffBatchResponse body = response.body();
+
+        // 3. WAF / 封禁检测 (非 200 或不是 JSON 对象时响应体为 null)
+        if (body == null) {
+            itemError.set(false);
+            log.warn("⚠️ [Buff批量] 第{}次被墙/非JSON响应 HTTP {} (Proxy: {})", attempt, response.statusCode(), proxyStr);
+            adaptiveBatchController.recordRejection(PlatformEnum.BUFF);
+            circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy, BreakerSignalEnum.ofRejected(response.statusCode()));
+            return null;
+        }
 
-            try {
-                String csrfToken = extractCsrfToken(buffCookie);
-                HttpRequest request = HttpRequest.get(url)
-                        .header("Cookie", buffCookie)
-                        .header("User-Agent", UserAgentUtil.random())
-                        .header("Referer", "https://buff.163.com/market/")
-                        .header("X-Requested-With", "XMLHttpRequest")
-                        .timeout(8000);
-
-                if (StrUtil.isNotBlank(csrfToken)) request.header("X-CSRFToken", csrfToken);
-                if (proxy != null) {
-                    request.setProxy(proxy); // 👈 搜索也走代理
-                }
+        if (body.isOk()) {
+            log.info("📦 [Buff批量] 成功抓取 {}/{} 个 (Proxy: {})", body.getItems().size(), ids.size(), proxyStr);
+            circuitBreakerRegistry.recordSuccess(PlatformEnum.BUFF, proxy, latencyMs);
+            return body.getItems(); // 成功即返回
+        }
 
-                String res = request.execute().body();
+        if ("Login Required".equals(body.getError())) {
+            log.error("⛔ [Buff] Cookie 已失效，请更新！");
+            circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy, BreakerSignalEnum.LOGIN_REQUIRED);
+            return new ArrayList<>(); // Cookie 死了，重试无意义
+        }
+        log.warn("⚠️ [Buff批量] API业务错误: {}", body.getError());
+        circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy, BreakerSignalEnum.ERROR);
+        // 请求本身到达了平台，是这批 ID 里有问题，拆分能定位出来
+        itemError.set(true);
+        return null;
+    }
 
-                if (res != null && StrUtil.trim(res).startsWith("<")) {
-                    log.warn("⚠️ [Buff Search] 搜索被拦截，跳过当前页 (Proxy: {})", proxy);
-                    if (proxy != null) proxyProviderUtil.removeBadProxy(proxy, PlatformEnum.BUFF);
-                    // 搜索阶段被拦截通常直接导致失败，这里简单处理为返回 null，让外层重试
-                    return null;
-                }
+    /**
+     * 搜索一页 (供后台 ID 解析使用，也走代理，防止搜索时就被封 IP)
+     *
+     * @param keyword 搜索关键字 (通常是去掉磨损和前缀的基础名，一页能覆盖同款的各种磨损)
+     * @return 本页结果；被拦截、异常或平台熔断中时返回 null
+     */
+    public BuffSearchResponse searchPage(String keyword, int page) {
+        if (!circuitBreakerRegistry.allowPlatform(PlatformEnum.BUFF)) {
+            return null;
+        }
+        String url = String.format(buffSearchApiUrl, HttpUtil.encodeParams(keyword, null), page);
 
-                JSONObject json = JSONUtil.parseObj(res);
-                if ("OK".equals(json.getStr("code"))) {
-                    JSONArray items = json.getJSONObject("data").getJSONArray("items");
-                    if (items == null || items.isEmpty()) return null;
-
-                    for (int i = 0; i < items.size(); i++) {
-                        JSONObject item = items.getJSONObject(i);
-                        if (marketHashName.equals(item.getStr("market_hash_name"))) {
-                            Long goodsId = item.getLong("id");
-                            log.info("✅ 找到映射! {} -> {}", marketHashName, goodsId);
-                            return goodsId;
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.error("[Buff Search] 搜索异常", e);
+        Proxy proxy = proxyProviderUtil.getRandomProxy(PlatformEnum.BUFF);
+        platformRateLimiter.acquire(PlatformEnum.BUFF, proxy);
+
+        try {
+            String csrfToken = extractCsrfToken(buffCookie);
+            HttpRequest.Builder request = httpClientManager.newGet(url)
+                    .header("Cookie", buffCookie)
+                    .header("User-Agent", UserAgentUtil.random())
+                    .header("Referer", "https://buff.163.com/market/")
+                    .header("X-Requested-With", "XMLHttpRequest");
+
+            if (StrUtil.isNotBlank(csrfToken)) request.header("X-CSRFToken", csrfToken);
+
+            // 👈 搜索也走代理
+            long start = System.currentTimeMillis();
+            HttpResponse<BuffSearchResponse> response = httpClientManager.sendJsonAsync(request.build(), proxy, BuffSearchResponse.READER).join();
+            long latency = System.currentTimeMillis() - start;
+            BuffSearchResponse body = response.body();
+            if (body == null) {
+                log.warn("⚠️ [Buff Search] 搜索被拦截 HTTP {} (Proxy: {})", response.statusCode(), proxy);
+                circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy, BreakerSignalEnum.ofRejected(response.statusCode()));
+                return null;
+            }
+            if (!body.isOk()) {
+                log.warn("⚠️ [Buff Search] API业务错误: {}", body.getError());
+                circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy,
+                        "Login Required".equals(body.getError()) ? BreakerSignalEnum.LOGIN_REQUIRED : BreakerSignalEnum.ERROR);
+                return null;
             }
-            page++;
+            circuitBreakerRegistry.recordSuccess(PlatformEnum.BUFF, proxy, latency);
+            return body;
+        } catch (Exception e) {
+            log.error("[Buff Search] 搜索异常: {}", keyword, e);
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            circuitBreakerRegistry.recordFailure(PlatformEnum.BUFF, proxy, BreakerSignalEnum.of(cause));
+            return null;
         }
-        return null;
     }
 
     private String extractCsrfToken(String cookie) {
@@ -1,17 +1,19 @@
 package com.zan.csgo.crawler.strategy.impl;
 
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.*;
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.zan.csgo.crawler.breaker.CircuitBreakerRegistry;
+import com.zan.csgo.crawler.dispatch.SteamProxyDispatcher;
+import com.zan.csgo.crawler.http.CrawlerHttpClientManager;
+import com.zan.csgo.crawler.limiter.AdaptiveBatchController;
+import com.zan.csgo.crawler.limiter.PlatformRateLimiter;
+import com.zan.csgo.crawler.parser.SteamPriceResponse;
 import com.zan.csgo.crawler.strategy.MarketStrategy;
+import com.zan.csgo.crawler.sweep.SteamMarketSweeper;
+import com.zan.csgo.enums.BreakerSignalEnum;
 import com.zan.csgo.enums.PlatformEnum;
 import com.zan.csgo.exception.BusinessException;
 import com.zan.csgo.model.dto.PriceFetchResultDTO;
-import com.zan.csgo.utils.ProxyProviderUtil;
 import com.zan.csgo.utils.UserAgentUtil;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -20,12 +22,11 @@ import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.net.Proxy;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * @Author Zan
@@ -40,14 +41,26 @@ public class SteamStrategy implements MarketStrategy {
     @Value("${csgo.monitor.steam.price-api-url}")
     private String steamPriceApiUrl;
 
-    @Value("${csgo.monitor.steam.search-api-url}")
-    private String steamSearchApiUrl;
+    @Resource
+    private PlatformRateLimiter platformRateLimiter;
+
+    @Resource
+    private CrawlerHttpClientManager httpClientManager;
 
     @Resource
-    private ProxyProviderUtil proxyProviderUtil;
+    private AdaptiveBatchController adaptiveBatchController;
 
-    // 线程池配置：Steam 风控极严，并发建议控制在 3~5 以内，太快会被 24小时封禁 IP
-    private final ExecutorService steamExecutor = Executors.newFixedThreadPool(5);
+    @Resource
+    private SteamMarketSweeper steamMarketSweeper;
+
+    @Resource
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Resource
+    private SteamProxyDispatcher steamProxyDispatcher;
+
+    // 单个饰品最多重试次数
+    private static final int MAX_RETRIES = 3;
 
     @Override
     public String getPlatformName() {
@@ -59,7 +72,12 @@ public class SteamStrategy implements MarketStrategy {
      */
     @Override
     public PriceFetchResultDTO fetchPrice(Object key) {
-        return fetchSinglePrice((String) key);
+        return MarketStrategy.await(fetchSinglePriceAsync((String) key, 1, NO_DEADLINE));
+    }
+
+    @Override
+    public CompletableFuture<PriceFetchResultDTO> fetchPriceAsync(Object key) {
+        return fetchSinglePriceAsync((String) key, 1, NO_DEADLINE);
     }
 
     /**
@@ -69,142 +87,190 @@ public class SteamStrategy implements MarketStrategy {
      */
     @Override
     public List<PriceFetchResultDTO> batchFetchPrices(List<String> hashNames) {
-        // 创建线程安全的列表，用于收集并发任务的结果
-        List<PriceFetchResultDTO> results = Collections.synchronizedList(new ArrayList<>());
+        return MarketStrategy.await(batchFetchPricesAsync(hashNames));
+    }
 
+    /**
+     * 🔥 异步批量抓取：所有饰品同时发起，节奏交给按代理调度器 (每个代理各自的间隔，定时器等待，不占线程)
+     * 以前靠 5 个线程 + 随机休眠控制全局并发，现在吞吐随代理数量线性增长，而每个 IP 都低于 Steam 的阈值
+     */
+    @Override
+    public CompletableFuture<List<PriceFetchResultDTO>> batchFetchPricesAsync(List<String> hashNames, long deadline) {
         if (CollectionUtil.isEmpty(hashNames)) {
-            return results;
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
 
         long start = System.currentTimeMillis();
-        log.info(">>> [Steam] 开始批量抓取 {} 个饰品...", hashNames.size());
-
-        // 1. 提交并发任务
-        List<CompletableFuture<Void>> futures = hashNames.stream()
-                .map(name -> CompletableFuture.runAsync(() -> {
-                    // --- 关键防封点：任务启动前随机休眠 ---
-                    // 避免 5 个线程在 1ms 内同时击中 Steam 服务器
-                    ThreadUtil.sleep(RandomUtil.randomInt(200, 1500));
-
-                    PriceFetchResultDTO dto = fetchSinglePrice(name);
-                    if (dto != null) {
-                        results.add(dto);
-                    }
-                }, steamExecutor))
-                .toList();
-
-        // 2. 阻塞等待所有任务完成
-        try {
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        } catch (Exception e) {
-            log.error("⚠️ [Steam] 并发任务执行异常", e);
-        }
 
-        // 3. 结果校验与异常抛出
-        // 如果传入了名字，但结果是空的，说明这批请求全军覆没（可能是 IP 被封了）
-        // 抛出异常触发 TaskWorker 的回滚机制
-        if (CollectionUtil.isNotEmpty(hashNames) && CollectionUtil.isEmpty(results)) {
-            throw new BusinessException("Steam 批量并发全部失败 (可能是IP被封或网络超时)，触发回滚");
+        // 1. 先查全量扫描的快照，只有没扫到 (或已过期) 的才逐个走 priceoverview
+        List<CompletableFuture<PriceFetchResultDTO>> futures = new ArrayList<>(hashNames.size());
+        List<String> missNames = new ArrayList<>();
+        for (String name : hashNames) {
+            PriceFetchResultDTO cached = steamMarketSweeper.lookup(name);
+            if (cached != null) {
+                futures.add(CompletableFuture.completedFuture(cached));
+            } else {
+                missNames.add(name);
+            }
         }
+        log.info(">>> [Steam] 开始批量抓取 {} 个饰品，快照命中 {} 个，逐个查询 {} 个", hashNames.size(), hashNames.size() - missNames.size(), missNames.size());
+
+        // 2. 未命中的提交并发任务
+        missNames.stream()
+                .map(name -> fetchSinglePriceAsync(name, 1, deadline).exceptionally(ex -> {
+                    // 单个饰品失败：带上名字回传，让上层只补偿这一个
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    PriceFetchResultDTO dto = PriceFetchResultDTO.fail(getPlatformName(), cause.getMessage());
+                    dto.setTargetId(name);
+                    return dto;
+                }))
+                .forEach(futures::add);
+
+        // 3. 全部完成后汇总
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<PriceFetchResultDTO> results = futures.stream().map(CompletableFuture::join).toList();
+
+            // 4. 结果校验与异常抛出
+            // 如果传入了名字，但一个都没成功，说明这批请求全军覆没（可能是 IP 被封了）
+            // 异常结束触发 TaskWorker 的回滚机制
+            long successCount = results.stream().filter(PriceFetchResultDTO::isSuccess).count();
+            if (successCount == 0) {
+                throw new BusinessException("Steam 批量并发全部失败 (可能是IP被封或网络超时)，触发回滚");
+            }
 
-        log.info("📦 [Steam并发] 请求 {} 个，成功 {} 个，耗时 {}ms", hashNames.size(), results.size(), System.currentTimeMillis() - start);
-
-        return results;
+            log.info("📦 [Steam并发] 请求 {} 个，成功 {} 个，耗时 {}ms", hashNames.size(), successCount, System.currentTimeMillis() - start);
+            return results;
+        });
     }
 
     /**
-     * 单个饰品抓取逻辑
+     * 单个饰品的第 attempt 次尝试，失败则换代理递归重试 (最多 3 次)
      */
-    private PriceFetchResultDTO fetchSinglePrice(String marketHashName) {
+    private CompletableFuture<PriceFetchResultDTO> fetchSinglePriceAsync(String marketHashName, int attempt, long deadline) {
+        if (attempt > MAX_RETRIES) {
+            return CompletableFuture.failedFuture(new BusinessException("Steam 3次代理重试全部失败，触发补偿机制"));
+        }
+        // 上层已经超时放弃了这一批，不再发起 (含重试)
+        if (MarketStrategy.isExpired(deadline)) {
+            return CompletableFuture.failedFuture(new BusinessException("Steam 批次已超过截止时间，不再请求"));
+        }
+        // 重试前平台已被熔断，剩下的次数不再浪费
+        if (circuitBreakerRegistry.isPlatformOpen(PlatformEnum.STEAM)) {
+            return CompletableFuture.failedFuture(new BusinessException("Steam 平台熔断中"));
+        }
+
         // URL 编码：Steam 名称中包含空格、括号等，必须编码 (例如 " | " -> "%20%7C%20")
         String encodedName = URLUtil.encodeAll(marketHashName);
         String url = String.format(steamPriceApiUrl, encodedName);
 
-        int attempt = 0;
-        // 单个 ID 最多重试 3 次
-        while (attempt < 3) {
-            attempt++;
-
-            // 获取代理 (如果没有配置代理池，则返回 null，走直连)
-            Proxy proxy = (proxyProviderUtil != null) ? proxyProviderUtil.getRandomProxy(PlatformEnum.STEAM) : null;
-            String proxyStr = (proxy != null) ? proxy.address().toString() : "直连";
-
-            try {
-                HttpRequest request = HttpRequest.get(url)
-                        // 伪装成真实浏览器
-                        .header("User-Agent", UserAgentUtil.random())
-                        // 强制中文语言环境，确保 currency=23 返回的是 "¥" 符号，方便解析
-                        .header("Accept-Language", "zh-CN,zh;q=0.9")
-                        .header("Referer", "https://steamcommunity.com/market/")
-                        .header("Connection", "keep-alive")
-                        .timeout(8000); // Steam 响应较慢，超时设长一点
-
-                if (proxy != null) {
-                    request.setProxy(proxy);
-                }
+        // keep-alive 由传输层的连接池负责 (同一代理复用连接)，不再手动设置 Connection 头
+        HttpRequest request = httpClientManager.newGet(url)
+                // 伪装成真实浏览器
+                .header("User-Agent", UserAgentUtil.random())
+                // 强制中文语言环境，确保 currency=23 返回的是 "¥" 符号，方便解析
+                .header("Accept-Language", "zh-CN,zh;q=0.9")
+                .header("Referer", "https://steamcommunity.com/market/")
+                .build();
+
+        // --- 关键防封点：按代理调度 ---
+        // Steam 按 IP 限流，由调度器把请求分给最先到点的代理 (代理池为空时为 null，走直连)，等待期间不占用线程
+        // 带上批次截止时间：上层放弃后还在排队的请求到点即失败，不再占用代理
+        return steamProxyDispatcher.acquire(deadline)
+                .thenCompose(proxy -> sendThroughProxyAsync(request, marketHashName, proxy, deadline))
+                // null 表示本次失败，换代理重试
+                .thenCompose(dto -> dto != null
+                        ? CompletableFuture.completedFuture(dto)
+                        : fetchSinglePriceAsync(marketHashName, attempt + 1, deadline));
+    }
 
-                try (HttpResponse response = request.execute()) {
-                    int status = response.getStatus();
-                    String res = response.body();
-
-                    // --- 状态码处理 ---
-                    if (status == 429) {
-                        log.warn("⚠️ [Steam] 触发429限流 (Proxy: {}) - 该IP可能已暂时被封", proxyStr);
-                        if (proxy != null && proxyProviderUtil != null)
-                            proxyProviderUtil.removeBadProxy(proxy, PlatformEnum.STEAM);
-                        continue; // 换个代理重试
-                    }
-
-                    if (status != 200) {
-                        log.warn("⚠️ [Steam] HTTP状态码 {} (Proxy: {})", status, proxyStr);
-                        continue;
-                    }
-
-                    // --- 响应体验证 ---
-                    if (StrUtil.isBlank(res) || !StrUtil.startWith(res.trim(), "{")) {
-                        // 如果返回 HTML (通常是 WAF 页面)，视为失败
-                        if (proxy != null && proxyProviderUtil != null)
-                            proxyProviderUtil.removeBadProxy(proxy, PlatformEnum.STEAM);
-                        continue;
-                    }
-
-                    // --- JSON 解析 ---
-                    JSONObject json = JSONUtil.parseObj(res);
-                    // 成功标志: "success": true
-                    if (json.getBool("success") != null && json.getBool("success")) {
-                        // 关键字段: lowest_price (最低价), volume (销量，可能为空)
-                        // 示例: "lowest_price": "¥ 138.50"
-                        String priceStr = json.getStr("lowest_price");
-                        String volumeStr = json.getStr("volume");
-
-                        BigDecimal price = parseSteamPrice(priceStr);
-                        Integer volume = parseSteamVolume(volumeStr);
-
-                        if (price != null) {
-                            // 构造返回结果
-                            return PriceFetchResultDTO.builder()
-                                    .success(true)
-                                    .platform(PlatformEnum.STEAM.getName())
-                                    .targetId(marketHashName) // Steam 特殊性：用名字做 Key
-                                    .price(price)
-                                    .volume(volume)
-                                    .build();
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                // 网络超时等异常，移除坏代理
-                log.warn("⚠️ [Steam] 连接异常: {}", e.getMessage());
-                if (proxy != null && proxyProviderUtil != null) {
-                    proxyProviderUtil.removeBadProxy(proxy, PlatformEnum.STEAM);
-                }
-            } finally {
-                // --- 关键防封点：请求结束后强制冷冻 ---
-                // Steam 对连续请求非常敏感，即使换了 ID 也要休息
-                ThreadUtil.sleep(RandomUtil.randomInt(1000, 2500));
+    /**
+     * 用分到的代理发出 priceoverview 请求
+     *
+     * @return 抓取结果；需要换代理重试时以 null 结束
+     */
+    private CompletableFuture<PriceFetchResultDTO> sendThroughProxyAsync(HttpRequest request, String marketHashName, Proxy proxy, long deadline) {
+        // 排队等代理期间过了截止时间
+        if (MarketStrategy.isExpired(deadline)) {
+            return CompletableFuture.failedFuture(new BusinessException("Steam 批次已超过截止时间，不再请求"));
+        }
+        // 排队等代理期间平台被熔断了，不再发出；半开时这个请求占一个试探名额
+        if (!circuitBreakerRegistry.allowPlatform(PlatformEnum.STEAM)) {
+            return CompletableFuture.failedFuture(new BusinessException("Steam 平台熔断中"));
+        }
+        String proxyStr = (proxy != null) ? proxy.address().toString() : "直连";
+
+        // 单代理令牌桶兜底：多个节点共用同一批代理时，合起来也不超过单 IP 速率
+        return platformRateLimiter.acquireProxyAsync(PlatformEnum.STEAM, proxy)
+                // 响应体流式解析，只摘 success / lowest_price / volume
+                .thenCompose(v -> {
+                    long sentAt = System.currentTimeMillis(); // 限流排队不算进代理延迟
+                    return httpClientManager.sendJsonAsync(request, proxy, SteamPriceResponse.READER)
+                            .handle((response, ex) -> {
+                                if (ex != null) {
+                                    // 网络超时等异常，记入代理评分 (分数过低会被隔离)
+                                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                                    log.warn("⚠️ [Steam] 连接异常: {}", cause.getMessage());
+                                    circuitBreakerRegistry.recordFailure(PlatformEnum.STEAM, proxy, BreakerSignalEnum.of(cause));
+                                    return null;
+                                }
+                                return parseSingleResponse(response, marketHashName, proxy, proxyStr, System.currentTimeMillis() - sentAt);
+                            });
+                });
+    }
+
+    /**
+     * 处理 priceoverview 响应
+     *
+     * @return 抓取结果；需要换代理重试时返回 null
+     */
+    private PriceFetchResultDTO parseSingleResponse(HttpResponse<SteamPriceResponse> response, String marketHashName, Proxy proxy, String proxyStr, long latencyMs) {
+        int status = response.statusCode();
+        SteamPriceResponse body = response.body();
+
+        // --- 状态码处理 ---
+        if (status == 429) {
+            log.warn("⚠️ [Steam] 触发429限流 (Proxy: {}) - 该IP可能已暂时被封", proxyStr);
+            adaptiveBatchController.recordRejection(PlatformEnum.STEAM);
+            circuitBreakerRegistry.recordFailure(PlatformEnum.STEAM, proxy, BreakerSignalEnum.RATE_LIMITED);
+            return null; // 该代理被隔离，换个代理重试
+        }
+
+        if (status != 200) {
+            log.warn("⚠️ [Steam] HTTP状态码 {} (Proxy: {})", status, proxyStr);
+            circuitBreakerRegistry.recordFailure(PlatformEnum.STEAM, proxy, BreakerSignalEnum.ofRejected(status));
+            return null;
+        }
+
+        // --- 响应体验证 ---
+        if (body == null) {
+            // 不是 JSON 对象 (通常是 WAF 页面)，视为失败
+            adaptiveBatchController.recordRejection(PlatformEnum.STEAM);
+            circuitBreakerRegistry.recordFailure(PlatformEnum.STEAM, proxy, BreakerSignalEnum.WAF);
+            return null;
+        }
+
+        // 拿到了正常 JSON，通道本身是好的 (success=false 多半是名字不对，不算平台故障)
+        circuitBreakerRegistry.recordSuccess(PlatformEnum.STEAM, proxy, latencyMs);
+
+        // 成功标志: "success": true
+        if (body.isSuccess()) {
+            // 关键字段: lowest_price (最低价), volume (销量，可能为空)
+            // 示例: "lowest_price": "¥ 138.50"
+            BigDecimal price = parseSteamPrice(body.getLowestPrice());
+            Integer volume = parseSteamVolume(body.getVolume());
+
+            if (price != null) {
+                // 构造返回结果
+                return PriceFetchResultDTO.builder()
+                        .success(true)
+                        .platform(PlatformEnum.STEAM.getName())
+                        .targetId(marketHashName) // Steam 特殊性：用名字做 Key
+                        .price(price)
+                        .volume(volume)
+                        .build();
             }
         }
-        throw new BusinessException("Steam 3次代理重试全部失败，触发补偿机制");
+        return null;
     }
 
     /**
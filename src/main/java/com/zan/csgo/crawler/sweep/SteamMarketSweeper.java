@@ -0,0 +1,269 @@
+package com.zan.csgo.crawler.sweep;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.zan.csgo.crawler.breaker.CircuitBreakerRegistry;
+import com.zan.csgo.crawler.dispatch.SteamProxyDispatcher;
+import com.zan.csgo.crawler.http.CrawlerHttpClientManager;
+import com.zan.csgo.crawler.limiter.AdaptiveBatchController;
+import com.zan.csgo.crawler.limiter.PlatformRateLimiter;
+import com.zan.csgo.crawler.parser.SteamSearchResponse;
+import com.zan.csgo.enums.BreakerSignalEnum;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.model.dto.PriceFetchResultDTO;
+import com.zan.csgo.utils.UserAgentUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.net.Proxy;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/19 15:30
+ * @ClassName: SteamMarketSweeper
+ * @Description : Steam 市场全量扫描
+ *                priceoverview 一次只能查一个饰品，而市场搜索接口一页能返回 100 个饰品的最低在售价；
+ *                后台按名称顺序翻完整个 CS2 市场，结果按 HashName 放进快照，抓取时先查快照，没扫到的才走 priceoverview。
+ *                search-api-url 形如 https://steamcommunity.com/market/search/render/?appid=730&norender=1&sort_column=name&sort_dir=asc&start=%d&count=%d
+ *                价格统一按 currency=23 (人民币) 请求，与 priceoverview 一致；搜索结果只有在售数量没有成交量，快照命中时不给 volume
+ */
+@Component
+@Slf4j
+public class SteamMarketSweeper {
+
+    @Value("${csgo.monitor.steam.search-api-url}")
+    private String steamSearchApiUrl;
+
+    @Value("${csgo.sweep.steam.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csgo.sweep.steam.interval-minutes:10}")
+    private long intervalMinutes; // 两轮全量扫描之间的间隔
+
+    @Value("${csgo.sweep.steam.page-size:100}")
+    private int pageSize; // 每页条数 (Steam 上限 100)
+
+    @Value("${csgo.sweep.steam.snapshot-ttl-minutes:30}")
+    private long snapshotTtlMinutes; // 快照有效期，过期的价格不再使用，改走 priceoverview
+
+    @Value("${csgo.sweep.steam.max-retries:3}")
+    private int maxRetries; // 单页最多重试次数，仍失败则本轮暂停，下轮从该页继续
+
+    @Resource
+    private PlatformRateLimiter platformRateLimiter;
+
+    @Resource
+    private CrawlerHttpClientManager httpClientManager;
+
+    @Resource
+    private AdaptiveBatchController adaptiveBatchController;
+
+    @Resource
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Resource
+    private SteamProxyDispatcher steamProxyDispatcher;
+
+    // Steam 的人民币币种代码
+    private static final String CNY_CURRENCY = "23";
+
+    /**
+     * HashName -> 最近一次扫到的最低在售价 (人民币)
+     */
+    private Cache<String, BigDecimal> snapshot;
+
+    /**
+     * 实际使用的搜索地址 (强制人民币)
+     */
+    private String searchUrl;
+
+    private ScheduledExecutorService sweepExecutor;
+
+    /**
+     * 下一页的起始下标，扫描中断后下一轮从这里继续
+     */
+    private volatile int cursor;
+
+    private volatile int lastTotalCount;
+
+    private volatile long sweepStartedAt;
+
+    // --- 运行指标 ---
+    private final AtomicLong pageCount = new AtomicLong();
+    private final AtomicLong completedSweeps = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private volatile long lastSweepMs;
+
+    @PostConstruct
+    public void start() {
+        snapshot = CacheBuilder.newBuilder()
+                .expireAfterWrite(snapshotTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        searchUrl = withCnyCurrency(steamSearchApiUrl);
+        if (!enabled) {
+            return;
+        }
+        // 一轮扫描要几分钟，用单独的线程，不占用 @Scheduled 的公共调度线程
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(ThreadUtil.newNamedThreadFactory("Steam-Sweep-", true));
+        sweepExecutor.scheduleWithFixedDelay(this::sweep, 1, intervalMinutes, TimeUnit.MINUTES);
+        log.info("🧹 [Steam扫描] 已启动，每 {} 分钟一轮，每页 {} 条", intervalMinutes, pageSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweepExecutor != null) {
+            sweepExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 查快照
+     *
+     * @return 快照里的价格 (targetId 为 HashName)；没扫到或已过期返回 null
+     */
+    public PriceFetchResultDTO lookup(String marketHashName) {
+        BigDecimal price = StrUtil.isBlank(marketHashName) ? null : snapshot.getIfPresent(marketHashName);
+        if (price == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        // 搜索接口的 sell_listings 是在售数量，不是 priceoverview 的 24 小时成交量，这里不给 volume
+        return PriceFetchResultDTO.builder()
+                .success(true)
+                .platform(PlatformEnum.STEAM.getName())
+                .targetId(marketHashName)
+                .price(price)
+                .build();
+    }
+
+    /**
+     * 扫描一轮：从上次停下的位置翻到最后一页
+     */
+    private void sweep() {
+        try {
+            if (cursor == 0) {
+                sweepStartedAt = System.currentTimeMillis();
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                SteamSearchResponse page = fetchPage(cursor);
+                if (page == null) {
+                    log.warn("⚠️ [Steam扫描] 第 {} 条起的页面多次失败，本轮暂停，下轮继续", cursor);
+                    return;
+                }
+
+                for (SteamSearchResponse.Row row : page.getResults()) {
+                    if (row.getSellPrice() > 0) {
+                        // 已按人民币请求，单位为分
+                        snapshot.put(row.getHashName(), BigDecimal.valueOf(row.getSellPrice()).movePointLeft(2));
+                    }
+                }
+                pageCount.incrementAndGet();
+                lastTotalCount = page.getTotalCount();
+
+                // Steam 实际返回的条数可能少于请求的 count，按返回的条数前进，否则会漏掉中间的饰品
+                int next = cursor + page.getResults().size();
+                if (page.getResults().isEmpty() || next >= page.getTotalCount()) {
+                    cursor = 0;
+                    completedSweeps.incrementAndGet();
+                    lastSweepMs = System.currentTimeMillis() - sweepStartedAt;
+                    log.info("🧹 [Steam扫描] 完成一轮，共 {} 个饰品，快照 {} 条，耗时 {}ms", page.getTotalCount(), snapshot.size(), lastSweepMs);
+                    return;
+                }
+                cursor = next;
+            }
+        } catch (Exception e) {
+            log.error("❌ [Steam扫描] 扫描异常", e);
+        }
+    }
+
+    /**
+     * 拉取一页，失败换代理重试；Steam 熔断期间直接放弃，本轮暂停
+     */
+    private SteamSearchResponse fetchPage(int start) {
+        String url = String.format(searchUrl, start, pageSize);
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            if (!circuitBreakerRegistry.allowPlatform(PlatformEnum.STEAM)) {
+                return null;
+            }
+            // 与 priceoverview 共用按代理调度，每个 IP 的总请求节奏不变
+            Proxy proxy = steamProxyDispatcher.acquire().join();
+            String proxyStr = (proxy != null) ? proxy.address().toString() : "直连";
+
+            HttpRequest request = httpClientManager.newGet(url)
+                    .header("User-Agent", UserAgentUtil.random())
+                    .header("Accept-Language", "zh-CN,zh;q=0.9")
+                    .header("Referer", "https://steamcommunity.com/market/")
+                    .build();
+
+            platformRateLimiter.acquireProxyAsync(PlatformEnum.STEAM, proxy).join();
+            try {
+                long sentAt = System.currentTimeMillis();
+                HttpResponse<SteamSearchResponse> response = httpClientManager.sendJsonAsync(request, proxy, SteamSearchResponse.READER).join();
+                long latency = System.currentTimeMillis() - sentAt;
+                SteamSearchResponse body = response.body();
+                if (response.statusCode() == 429 || body == null) {
+                    log.warn("⚠️ [Steam扫描] 被限流/非JSON响应 HTTP {} (Proxy: {})", response.statusCode(), proxyStr);
+                    adaptiveBatchController.recordRejection(PlatformEnum.STEAM);
+                    circuitBreakerRegistry.recordFailure(PlatformEnum.STEAM, proxy, BreakerSignalEnum.ofRejected(response.statusCode()));
+                    continue;
+                }
+                circuitBreakerRegistry.recordSuccess(PlatformEnum.STEAM, proxy, latency);
+                if (body.isSuccess()) {
+                    return body;
+                }
+                log.warn("⚠️ [Steam扫描] 接口返回失败 (start={}, Proxy: {})", start, proxyStr);
+            } catch (Exception e) {
+                log.warn("⚠️ [Steam扫描] 连接异常: {} (Proxy: {})", e.getMessage(), proxyStr);
+                circuitBreakerRegistry.recordFailure(PlatformEnum.STEAM, proxy, BreakerSignalEnum.of(e.getCause() != null ? e.getCause() : e));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 搜索地址强制按人民币返回价格 (没带 currency 参数时匿名访问通常是美元，带了别的币种也改掉)
+     */
+    static String withCnyCurrency(String url) {
+        if (url.matches(".*[?&]currency=\\d+.*")) {
+            return url.replaceAll("([?&])currency=\\d+", "$1currency=" + CNY_CURRENCY);
+        }
+        return url + (url.contains("?") ? "&" : "?") + "currency=" + CNY_CURRENCY;
+    }
+
+    /**
+     * 扫描运行指标
+     */
+    public Map<String, Object> getSweepStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("snapshotSize", snapshot.size());
+        stats.put("marketTotal", lastTotalCount);
+        stats.put("cursor", cursor);
+        stats.put("pages", pageCount.get());
+        stats.put("completedSweeps", completedSweeps.get());
+        stats.put("lastSweepMs", lastSweepMs);
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        stats.put("lookupHits", hits);
+        stats.put("lookupMisses", missCount.get());
+        stats.put("hitRate", total == 0 ? 0 : (double) hits / total);
+        return stats;
+    }
+}
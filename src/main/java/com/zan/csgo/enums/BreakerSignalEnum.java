@@ -0,0 +1,55 @@
+package com.zan.csgo.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.net.http.HttpTimeoutException;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/20 10:10
+ * @ClassName: BreakerSignalEnum
+ * @Description : 熔断失败信号
+ */
+@AllArgsConstructor
+@Getter
+public enum BreakerSignalEnum {
+
+    // 网络异常、业务错误等一般失败，只计入失败率
+    ERROR("ERROR", "一般错误"),
+
+    // 请求超时，只计入失败率
+    TIMEOUT("TIMEOUT", "超时"),
+
+    // 429 限流：该代理立即隔离，平台计入失败率
+    RATE_LIMITED("RATE_LIMITED", "429限流"),
+
+    // 返回 WAF 的 HTML 页面：该代理立即隔离，平台计入失败率
+    WAF("WAF", "WAF拦截"),
+
+    // Cookie 失效：换代理也没用，平台立即熔断
+    LOGIN_REQUIRED("LOGIN_REQUIRED", "登录失效"),
+
+    ;
+
+    private final String code;
+
+    private final String desc;
+
+    /**
+     * 按异常类型区分超时和一般错误
+     */
+    public static BreakerSignalEnum of(Throwable e) {
+        return e instanceof HttpTimeoutException ? TIMEOUT : ERROR;
+    }
+
+    /**
+     * 按状态码区分被拒绝的响应 (非 200，或 200 但不是 JSON)
+     */
+    public static BreakerSignalEnum ofRejected(int statusCode) {
+        if (statusCode == 429) {
+            return RATE_LIMITED;
+        }
+        return statusCode >= 500 ? ERROR : WAF;
+    }
+}
@@ -0,0 +1,30 @@
+package com.zan.csgo.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/20 10:05
+ * @ClassName: CircuitStateEnum
+ * @Description : 熔断器状态
+ */
+@AllArgsConstructor
+@Getter
+public enum CircuitStateEnum {
+
+    // 正常放行，按滚动窗口统计失败率
+    CLOSED("CLOSED", "关闭"),
+
+    // 熔断中，所有请求直接失败，冷却时间到后进入半开
+    OPEN("OPEN", "打开"),
+
+    // 放少量试探请求，全部成功则关闭，任一失败则重新打开 (冷却时间翻倍)
+    HALF_OPEN("HALF_OPEN", "半开"),
+
+    ;
+
+    private final String code;
+
+    private final String desc;
+}
@@ -0,0 +1,30 @@
+package com.zan.csgo.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/15 10:05
+ * @ClassName: QueueModeEnum
+ * @Description : 工人任务队列模式
+ */
+@AllArgsConstructor
+@Getter
+public enum QueueModeEnum {
+
+    // 弹出即删除，进程崩溃时在途任务丢失，失败任务回滚至冷门队列
+    LANE("LANE", "普通赛道"),
+
+    // 弹出的任务登记到处理中列表并带租约，逐个确认，失败/超时任务回到原赛道
+    RELIABLE("RELIABLE", "可靠赛道"),
+
+    // 每个饰品在调度 ZSet 中有下次到期时间，到期即领取，抓取后按等级重新排期
+    SCHEDULE("SCHEDULE", "到期调度"),
+
+    ;
+
+    private final String code;
+
+    private final String desc;
+}
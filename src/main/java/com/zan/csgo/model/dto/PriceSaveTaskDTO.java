@@ -0,0 +1,48 @@
+package com.zan.csgo.model.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/16 17:20
+ * @ClassName: PriceSaveTaskDTO
+ * @Description : 待入库的一条价格记录 (抓取线程 -> 入库线程)
+ */
+@Data
+@Builder
+public class PriceSaveTaskDTO {
+
+    /**
+     * 饰品数据库主键
+     */
+    private Long skinId;
+
+    /**
+     * 饰品名称 (报警通知用)
+     */
+    private String skinName;
+
+    /**
+     * 平台名称 (中文名，与历史表一致)
+     */
+    private String platform;
+
+    /**
+     * 抓取到的价格
+     */
+    private BigDecimal price;
+
+    /**
+     * 在售数量
+     */
+    private Integer volume;
+
+    /**
+     * 抓取时间
+     */
+    private LocalDateTime captureTime;
+}
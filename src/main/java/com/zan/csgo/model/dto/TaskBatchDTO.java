@@ -0,0 +1,32 @@
+package com.zan.csgo.model.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/14 10:12
+ * @ClassName: TaskBatchDTO
+ * @Description : 工人一次领取到的任务批次
+ */
+@Data
+@Builder
+public class TaskBatchDTO {
+
+    /**
+     * 来源队列 Key (如 csgo:task:queue:hot)
+     */
+    private String queueKey;
+
+    /**
+     * 来源赛道描述 (用于日志)
+     */
+    private String sourceDesc;
+
+    /**
+     * 数据库主键ID列表 (Redis 中存的是 String)
+     */
+    private List<String> idList;
+}
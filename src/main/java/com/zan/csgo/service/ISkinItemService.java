@@ -3,7 +3,9 @@ package com.zan.csgo.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.zan.csgo.model.entity.SkinItemEntity;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @Author Zan
@@ -17,7 +19,21 @@ public interface ISkinItemService extends IService<SkinItemEntity> {
 
     boolean fillBuffGoodsIdAndYoupinId(SkinItemEntity item);
 
+    Map<String, Long> selectBuffGoodsIdMap();
+
+    int fillBuffGoodsIdByHashName(Map<String, Long> goodsIdMap);
+
     List<Long> selectAllIdList();
 
     List<Long> selectAllIdListByPriority(Integer priority);
+
+    List<Long> selectIdPage(Integer priority, Long lastId, int limit);
+
+    List<Long> selectExistingIdList(Collection<Long> idList);
+
+    List<SkinItemEntity> listFetchItemsByIds(Collection<Long> idList);
+
+    void evictFetchItemCache(Long id);
+
+    Map<String, Object> getFetchItemCacheStats();
 }
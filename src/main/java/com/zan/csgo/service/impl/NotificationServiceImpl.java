@@ -29,8 +29,9 @@ public class NotificationServiceImpl implements INotificationService {
 
     /**
      * 发送价格异动报警 (异步执行，不阻塞主流程)
+     * 显式指定线程池：容器中有多个执行器时，不指定会退化为每次新建线程
      */
-    @Async
+    @Async("monitorExecutor")
     @Override
     public void sendPriceAlert(String skinName, String platform, BigDecimal oldPrice, BigDecimal newPrice, String changeRate) {
 
@@ -7,15 +7,26 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Lists;
 import com.zan.csgo.enums.DelFlagEnum;
 import com.zan.csgo.mapper.SkinItemMapper;
 import com.zan.csgo.model.entity.SkinItemEntity;
 import com.zan.csgo.service.ISkinItemService;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @Author Zan
@@ -27,6 +38,27 @@ import java.util.List;
 @Slf4j
 public class SkinItemServiceImpl extends ServiceImpl<SkinItemMapper, SkinItemEntity> implements ISkinItemService {
 
+    @Value("${csgo.cache.skin-item.maximum-size:50000}")
+    private long cacheMaximumSize; // 抓取用饰品缓存的最大条数
+
+    @Value("${csgo.cache.skin-item.expire-minutes:30}")
+    private long cacheExpireMinutes; // 写入后多久过期 (兜底：等级等字段被其他途径修改时，最多延迟这么久生效)
+
+    /**
+     * 抓取用饰品缓存 (ID -> 只含抓取所需字段的精简实体)
+     * 工人每个批次都要根据 ID 取 BuffId/悠悠ID/HashName，这些字段几乎不变，没必要每批都查一次库
+     */
+    private Cache<Long, SkinItemEntity> fetchItemCache;
+
+    @PostConstruct
+    public void initFetchItemCache() {
+        fetchItemCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(cacheExpireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
     /**
      * 根据饰品ID查询饰品信息
      *
@@ -65,7 +97,63 @@ public class SkinItemServiceImpl extends ServiceImpl<SkinItemMapper, SkinItemEnt
         wrapper.eq(SkinItemEntity::getDelFlag, DelFlagEnum.NO.getValue());
         wrapper.set(ObjectUtil.isNotNull(item.getBuffGoodsId()) && item.getBuffGoodsId() > 0, SkinItemEntity::getBuffGoodsId, item.getBuffGoodsId());
         wrapper.set(ObjectUtil.isNotNull(item.getYoupinId()) && item.getYoupinId() > 0, SkinItemEntity::getYoupinId, item.getYoupinId());
-        return this.update(wrapper);
+        boolean updated = this.update(wrapper);
+        if (updated) {
+            // 映射变了，缓存失效；按 HashName 更新时不知道主键，直接清空 (导入场景下只有第一次清空有开销)
+            if (ObjectUtil.isNotNull(item.getId())) {
+                evictFetchItemCache(item.getId());
+            } else {
+                fetchItemCache.invalidateAll();
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * 查询所有已关联 Buff ID 的饰品映射 (HashName -> Buff商品ID)，用于预热 ID 解析缓存
+     */
+    @Override
+    public Map<String, Long> selectBuffGoodsIdMap() {
+        LambdaQueryWrapper<SkinItemEntity> wrapper = Wrappers.<SkinItemEntity>lambdaQuery()
+                .eq(SkinItemEntity::getDelFlag, DelFlagEnum.NO.getValue())
+                .gt(SkinItemEntity::getBuffGoodsId, 0)
+                .select(SkinItemEntity::getSkinMarketHashName, SkinItemEntity::getBuffGoodsId);
+        Map<String, Long> map = new HashMap<>();
+        for (SkinItemEntity item : this.list(wrapper)) {
+            if (StrUtil.isNotBlank(item.getSkinMarketHashName())) {
+                map.put(item.getSkinMarketHashName(), item.getBuffGoodsId());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 按 HashName 批量回填 Buff 商品ID (只更新没有ID或ID不一致的行)
+     *
+     * @param goodsIdMap HashName -> Buff商品ID
+     * @return 实际更新的行数
+     */
+    @Override
+    public int fillBuffGoodsIdByHashName(Map<String, Long> goodsIdMap) {
+        if (CollectionUtil.isEmpty(goodsIdMap)) {
+            return 0;
+        }
+        int updated = 0;
+        for (Map.Entry<String, Long> entry : goodsIdMap.entrySet()) {
+            LambdaUpdateWrapper<SkinItemEntity> wrapper = new LambdaUpdateWrapper<>();
+            wrapper.eq(SkinItemEntity::getSkinMarketHashName, entry.getKey());
+            wrapper.eq(SkinItemEntity::getDelFlag, DelFlagEnum.NO.getValue());
+            wrapper.and(w -> w.isNull(SkinItemEntity::getBuffGoodsId).or().ne(SkinItemEntity::getBuffGoodsId, entry.getValue()));
+            wrapper.set(SkinItemEntity::getBuffGoodsId, entry.getValue());
+            if (this.update(wrapper)) {
+                updated++;
+            }
+        }
+        if (updated > 0) {
+            // 一次回填多条，不逐个找主键，整体清空一次
+            fetchItemCache.invalidateAll();
+        }
+        return updated;
     }
 
     @Override
@@ -95,4 +183,96 @@ public class SkinItemServiceImpl extends ServiceImpl<SkinItemMapper, SkinItemEnt
         }
         return list.stream().map(SkinItemEntity::getId).toList();
     }
+
+    /**
+     * 按主键游标分页查询ID (keyset 分页：id > lastId 顺序取 limit 条)
+     * 不用 OFFSET，越往后翻也不会变慢，调用方逐页处理，内存占用与总量无关
+     *
+     * @param priority 饰品等级，为空则不限等级
+     * @param lastId   上一页最后一个ID，首页传 null
+     * @param limit    每页条数
+     * @return ID列表 (升序)，不足 limit 条说明已到最后一页
+     */
+    @Override
+    public List<Long> selectIdPage(Integer priority, Long lastId, int limit) {
+        LambdaQueryWrapper<SkinItemEntity> wrapper = Wrappers.<SkinItemEntity>lambdaQuery()
+                .eq(SkinItemEntity::getDelFlag, DelFlagEnum.NO.getValue())
+                .eq(ObjectUtil.isNotNull(priority), SkinItemEntity::getSkinPriority, priority)
+                .gt(ObjectUtil.isNotNull(lastId), SkinItemEntity::getId, lastId)
+                .select(SkinItemEntity::getId)
+                .orderByAsc(SkinItemEntity::getId)
+                .last("LIMIT " + limit);
+        List<SkinItemEntity> list = this.list(wrapper);
+        if (CollectionUtil.isEmpty(list)) {
+            return Lists.newArrayList();
+        }
+        return list.stream().map(SkinItemEntity::getId).toList();
+    }
+
+    /**
+     * 筛选出仍然存在 (未删除) 的ID
+     */
+    @Override
+    public List<Long> selectExistingIdList(Collection<Long> idList) {
+        if (CollectionUtil.isEmpty(idList)) {
+            return Lists.newArrayList();
+        }
+        LambdaQueryWrapper<SkinItemEntity> wrapper = Wrappers.<SkinItemEntity>lambdaQuery()
+                .eq(SkinItemEntity::getDelFlag, DelFlagEnum.NO.getValue())
+                .in(SkinItemEntity::getId, idList)
+                .select(SkinItemEntity::getId);
+        return this.list(wrapper).stream().map(SkinItemEntity::getId).toList();
+    }
+
+    /**
+     * 批量获取抓取用饰品 (先查本地缓存，未命中的再查库并回填)
+     * 返回的是只含 ID、名称、HashName、等级、BuffId、悠悠ID 的精简实体，只读，不要修改
+     */
+    @Override
+    public List<SkinItemEntity> listFetchItemsByIds(Collection<Long> idList) {
+        if (CollectionUtil.isEmpty(idList)) {
+            return Lists.newArrayList();
+        }
+        Map<Long, SkinItemEntity> cached = fetchItemCache.getAllPresent(idList);
+        List<SkinItemEntity> result = new ArrayList<>(cached.values());
+
+        List<Long> missIds = idList.stream().filter(id -> !cached.containsKey(id)).distinct().toList();
+        if (CollectionUtil.isNotEmpty(missIds)) {
+            LambdaQueryWrapper<SkinItemEntity> wrapper = Wrappers.<SkinItemEntity>lambdaQuery()
+                    .in(SkinItemEntity::getId, missIds)
+                    .eq(SkinItemEntity::getDelFlag, DelFlagEnum.NO.getValue())
+                    .select(SkinItemEntity::getId, SkinItemEntity::getSkinName, SkinItemEntity::getSkinMarketHashName,
+                            SkinItemEntity::getSkinPriority, SkinItemEntity::getBuffGoodsId, SkinItemEntity::getYoupinId);
+            List<SkinItemEntity> loaded = this.list(wrapper);
+            loaded.forEach(item -> fetchItemCache.put(item.getId(), item));
+            result.addAll(loaded);
+        }
+        return result;
+    }
+
+    /**
+     * 单个饰品的平台ID映射变化后，清除其缓存
+     */
+    @Override
+    public void evictFetchItemCache(Long id) {
+        if (ObjectUtil.isNotNull(id)) {
+            fetchItemCache.invalidate(id);
+        }
+    }
+
+    /**
+     * 抓取用饰品缓存的命中率等指标
+     */
+    @Override
+    public Map<String, Object> getFetchItemCacheStats() {
+        CacheStats cacheStats = fetchItemCache.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", fetchItemCache.size());
+        stats.put("maximumSize", cacheMaximumSize);
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        return stats;
+    }
 }
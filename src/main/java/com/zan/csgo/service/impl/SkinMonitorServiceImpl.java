@@ -2,6 +2,8 @@ package com.zan.csgo.service.impl;
 
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.zan.csgo.crawler.breaker.CircuitBreakerRegistry;
+import com.zan.csgo.crawler.resolver.PlatformIdResolver;
 import com.zan.csgo.crawler.strategy.MarketStrategy;
 import com.zan.csgo.crawler.strategy.MarketStrategyFactory;
 import com.zan.csgo.enums.PlatformEnum;
@@ -48,6 +50,12 @@ public class SkinMonitorServiceImpl implements ISkinMonitorService {
     @Resource
     private INotificationService notificationService;
 
+    @Resource
+    private PlatformIdResolver platformIdResolver;
+
+    @Resource
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
     /**
      * 执行监控并返回结果 VO
      */
@@ -93,7 +101,10 @@ public class SkinMonitorServiceImpl implements ISkinMonitorService {
         // =======================================================
         // 策略：只允许用 ID 查 (PC接口限制)
         if (item.getYoupinId() != null && item.getYoupinId() > 0) {
-            PlatformPriceVO youpinVO = executeStrategy(PlatformEnum.YOUPIN, item.getYoupinId(), item, null);
+            PlatformPriceVO youpinVO = executeStrategy(PlatformEnum.YOUPIN, item.getYoupinId(), item, (result) -> {
+                // 平台返回的 ID 与库中不一致时同样回填
+                updateSkinIdIfChanged(item, "youpin_id", result.getTargetId());
+            });
             resultMap.put(PlatformEnum.YOUPIN.getName(), youpinVO);
         } else {
             // 无 ID 时的降级处理
@@ -126,6 +137,13 @@ public class SkinMonitorServiceImpl implements ISkinMonitorService {
      */
     private PlatformPriceVO executeStrategy(PlatformEnum platform, Object searchKey, SkinItemEntity item, Consumer<PriceFetchResultDTO> onSuccess) {
         String platformName = platform.getName();
+        if (circuitBreakerRegistry.isPlatformOpen(platform)) {
+            return PlatformPriceVO.builder()
+                    .platform(platformName)
+                    .success(false)
+                    .statusMsg("平台熔断中，请稍后再试")
+                    .build();
+        }
         try {
             MarketStrategy strategy = strategyFactory.getStrategy(platformName);
             PriceFetchResultDTO result = strategy.fetchPrice(searchKey);
@@ -246,12 +264,17 @@ public class SkinMonitorServiceImpl implements ISkinMonitorService {
                 skinItemService.update(null, new LambdaUpdateWrapper<SkinItemEntity>()
                         .eq(SkinItemEntity::getId, item.getId())
                         .set(StrUtil.equals(dbColumnName, "buff_goods_id"), SkinItemEntity::getBuffGoodsId, newId)
-                        .set(StrUtil.equals(dbColumnName, "youpin_id"), SkinItemEntity::getYoupinId, (int) newId)
+                        .set(StrUtil.equals(dbColumnName, "youpin_id"), SkinItemEntity::getYoupinId, newId)
                 );
+                // 工人侧的抓取缓存同步失效
+                skinItemService.evictFetchItemCache(item.getId());
 
                 // 更新内存中的对象，保证后续流程使用的是最新 ID
                 if ("buff_goods_id".equals(dbColumnName)) {
                     item.setBuffGoodsId(newId);
+                    platformIdResolver.remember(PlatformEnum.BUFF, item.getSkinMarketHashName(), newId);
+                } else if ("youpin_id".equals(dbColumnName)) {
+                    item.setYoupinId(newId);
                 }
 
                 log.info(">>> [自学习] 饰品 [{}] 更新 {} -> {}", item.getSkinName(), dbColumnName, newId);
@@ -1,31 +1,35 @@
 package com.zan.csgo.task;
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpUtil;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.zan.csgo.constant.RedisKeyConstant;
-import jakarta.annotation.PostConstruct;
+import com.zan.csgo.crawler.proxy.ProxyFetcher;
+import com.zan.csgo.crawler.proxy.ProxyValidator;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @Author Zan
  * @Create 2026/1/9 16:17
  * @ClassName: GlobalProxyFetcherTask
  * @Description : 海外代理搬运工 (专门给 Steam or 其他国外平台 用)
+ *                进货时机和数量由 ProxyReplenisher 按池子余量、消耗速度和即将过期数决定
  */
 //@Component
 @Slf4j
-public class GlobalProxyFetcherTask {
+public class GlobalProxyFetcherTask implements ProxyFetcher {
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private ProxyValidator proxyValidator;
 
     // 🔥 填入青果海外代理的 API 链接 (地区选不限或HK/US，记得加 &format=json)
     @Value("${csgo.qingguo.global-api-url}")
@@ -37,53 +41,59 @@ public class GlobalProxyFetcherTask {
     @Value("${csgo.qingguo.global-auth-pwd}")
     private String qingGuoAuthPwd;
 
-    @PostConstruct
-    public void init() {
-        log.info("🚀 [海外搬运工系统启动] 正在进行首次代理预热...");
-        fetchProxies();
+    @Value("${csgo.proxy.replenish.fetch-timeout-ms:10000}")
+    private int fetchTimeoutMs; // 提取接口超时 (连接 + 读取)，代理商卡住时不让进货一直挂着
+
+    @Override
+    public String getPoolKey() {
+        return RedisKeyConstant.PROXY_GLOBAL;
     }
 
-    // 海外代理通常比较贵，频率可以低一点，比如 1 min 一次
-    @Scheduled(fixedDelay = 1000 * 60)
-    public void fetchProxies() {
-        log.info("✈️ [海外搬运工] 开始去青果进货...");
+    // 海外代理通常比较贵，按需进货 (预算上限见 csgo.proxy.replenish.global)
+    @Override
+    public int fetchProxies(int num) {
+        log.info("✈️ [海外搬运工] 开始去青果进货 {} 个...", num);
 
         try {
-            String apiUrl = String.format(qingGuoApiUrl, 5, qingGuoAuthKey, qingGuoAuthPwd);
+            String apiUrl = String.format(qingGuoApiUrl, num, qingGuoAuthKey, qingGuoAuthPwd);
 
-            String result = HttpUtil.get(apiUrl);
+            String result;
+            try (HttpResponse response = HttpRequest.get(apiUrl).timeout(fetchTimeoutMs).execute()) {
+                result = response.body();
+            }
             if (StrUtil.isBlank(result)) {
-                return;
+                return 0;
             }
 
             JSONObject json = JSONUtil.parseObj(result);
             if (!"SUCCESS".equals(json.getStr("code"))) {
                 log.warn("⚠️ [海外搬运工] 进货失败: {}", result);
-                return;
+                return 0;
             }
 
             JSONArray data = json.getJSONArray("data");
-            if (data == null || data.isEmpty()) return;
+            if (data == null || data.isEmpty()) return 0;
 
-            int count = 0;
+            Map<String, String> candidates = new LinkedHashMap<>();
             for (int i = 0; i < data.size(); i++) {
                 JSONObject item = data.getJSONObject(i);
                 String proxy = item.getStr("server");
                 String deadline = item.getStr("deadline"); // 海外代理通常有具体过期时间
 
                 if (StrUtil.isNotBlank(proxy)) {
-                    // 🔥 存入海外池
-                    stringRedisTemplate.opsForHash().put(RedisKeyConstant.PROXY_GLOBAL, proxy, deadline);
-                    count++;
-                    log.info("✈️ [海外搬运工] 进货成功: {}", proxy);
+                    candidates.put(proxy, deadline);
                 }
             }
+            // 🔥 验证通过的存入海外池 (不通的、快过期的不入池)
+            int count = proxyValidator.admitAsync(RedisKeyConstant.PROXY_GLOBAL, candidates).join();
             if (count > 0) {
-                log.info("✈️ [海外搬运工] 进货成功: {} 个", count);
+                log.info("✈️ [海外搬运工] 进货成功: {}/{} 个", count, candidates.size());
             }
+            return count;
 
         } catch (Exception e) {
             log.error("❌ [海外搬运工] 异常", e);
+            return 0;
         }
     }
 }
@@ -1,32 +1,36 @@
 package com.zan.csgo.task;
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpUtil;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.zan.csgo.constant.RedisKeyConstant;
-import jakarta.annotation.PostConstruct;
+import com.zan.csgo.crawler.proxy.ProxyFetcher;
+import com.zan.csgo.crawler.proxy.ProxyValidator;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @Author Zan
  * @Create 2026/1/8 11:54
  * @ClassName: InternalFetcherTask
  * @Description : 青果代理搬运工（国内搬运工）
- *                作用：定时去青果 API 进货，放到 Redis 里给爬虫用
+ *                作用：去青果 API 进货，放到 Redis 里给爬虫用
+ *                进货时机和数量由 ProxyReplenisher 按池子余量、消耗速度和即将过期数决定
  */
 @Component
 @Slf4j
-public class InternalFetcherTask {
+public class InternalFetcherTask implements ProxyFetcher {
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private ProxyValidator proxyValidator;
 
     @Value("${csgo.qingguo.internal-api-url}")
     private String qingGuoApiUrl;
@@ -37,29 +41,33 @@ public class InternalFetcherTask {
     @Value("${csgo.qingguo.internal-auth-pwd}")
     private String qingGuoAuthPwd;
 
-    @PostConstruct
-    public void init() {
-        log.info("🚀 [国内搬运工系统启动] 正在进行首次代理预热...");
-        fetchProxies();
+    @Value("${csgo.proxy.replenish.fetch-timeout-ms:10000}")
+    private int fetchTimeoutMs; // 提取接口超时 (连接 + 读取)，代理商卡住时不让进货一直挂着
+
+    @Override
+    public String getPoolKey() {
+        return RedisKeyConstant.PROXY_CN;
     }
 
     /**
-     * 每 60 秒进货一次 (根据青果 IP 的有效期调整)
-     * 假设青果 IP 有效期是 1~5 分钟，我们 60 秒拿一次新的补充进去
+     * 进货 num 个 (青果 IP 有效期 1~5 分钟，补货控制器会在过期前提前补上)
      */
-//    @Scheduled(fixedDelay = 1000 * 60)
-    public void fetchProxies() {
-        log.info("🚚 [国内搬运工] 开始去青果进货...");
+    @Override
+    public int fetchProxies(int num) {
+        log.info("🚚 [国内搬运工] 开始去青果进货 {} 个...", num);
 
         try {
-            String apiUrl = String.format(qingGuoApiUrl, 10, qingGuoAuthKey, qingGuoAuthPwd);
+            String apiUrl = String.format(qingGuoApiUrl, num, qingGuoAuthKey, qingGuoAuthPwd);
 
             // 1. 请求 API
-            String result = HttpUtil.get(apiUrl);
+            String result;
+            try (HttpResponse response = HttpRequest.get(apiUrl).timeout(fetchTimeoutMs).execute()) {
+                result = response.body();
+            }
 
             // 简单防空检查
             if (StrUtil.isBlank(result)) {
-                return;
+                return 0;
             }
 
             // 2. 解析 JSON
@@ -69,42 +77,44 @@ public class InternalFetcherTask {
             String code = json.getStr("code");
             if (!"SUCCESS".equals(code)) {
                 log.warn("⚠️ [国内搬运工] 进货失败, 响应: {}", result);
-                return;
+                return 0;
             }
 
             // 4. 提取 Data 数组
             JSONArray data = json.getJSONArray("data");
             if (data == null || data.isEmpty()) {
-                return;
+                return 0;
             }
 
-            int count = 0;
+            Map<String, String> candidates = new LinkedHashMap<>();
             for (int i = 0; i < data.size(); i++) {
                 JSONObject item = data.getJSONObject(i);
 
                 // 🔥 核心：取 'server' 字段 (格式如 222.139.246.31:20085)
                 String proxyAddress = item.getStr("server");
 
-                // 取过期时间 (deadline)，存入 Redis 的 Value 中，方便以后排查
+                // 取过期时间 (deadline)，存入 Redis 的 Value 中，并按它建过期索引，到期前自动移出
                 String deadline = item.getStr("deadline");
 
                 if (StrUtil.isNotBlank(proxyAddress)) {
-                    // 5. 存入 Redis Hash
-                    // Key: useful_proxy
-                    // Field: 222.139.246.31:20085 (作为唯一标识)
-                    // Value: 2026-01-09 09:44:30 (过期时间)
-                    stringRedisTemplate.opsForHash().put(RedisKeyConstant.PROXY_CN, proxyAddress, deadline);
-                    count++;
-                    log.info("🚚 [国内搬运工] 进货成功: {}", proxyAddress);
+                    candidates.put(proxyAddress, deadline);
                 }
             }
 
+            // 5. 先验证再存入 Redis Hash (不通的、快过期的不入池)
+            // Key: useful_proxy
+            // Field: 222.139.246.31:20085 (作为唯一标识)
+            // Value: 2026-01-09 09:44:30 (过期时间)
+            int count = proxyValidator.admitAsync(RedisKeyConstant.PROXY_CN, candidates).join();
+
             if (count > 0) {
-                log.info("🚚 [国内搬运工] 成功进货 {} 个代理 (模式: JSON)", count);
+                log.info("🚚 [国内搬运工] 成功进货 {}/{} 个代理 (模式: JSON)", count, candidates.size());
             }
+            return count;
 
         } catch (Exception e) {
             log.error("❌ [国内搬运工] 解析异常", e);
+            return 0;
         }
     }
 }
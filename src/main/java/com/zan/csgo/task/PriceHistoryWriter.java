@@ -0,0 +1,283 @@
+package com.zan.csgo.task;
+
+import cn.hutool.core.collection.CollectionUtil;
+import com.zan.csgo.mapper.SkinPriceHistoryMapper;
+import com.zan.csgo.model.dto.PriceSaveTaskDTO;
+import com.zan.csgo.model.entity.SkinPriceHistoryEntity;
+import com.zan.csgo.service.INotificationService;
+import com.zan.csgo.service.ISkinPriceHistoryService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/16 17:30
+ * @ClassName: PriceHistoryWriter
+ * @Description : 价格入库流水线 (Write-Behind)
+ *                抓取线程只负责把结果丢进有界队列，由单独的入库线程攒批：查旧价 -> 价格预警 -> 批量插入
+ *                MySQL 变慢时只会让队列变长，不再拖慢抓取；队列满了抓取线程才会被阻塞 (背压)
+ */
+@Component
+@Slf4j
+public class PriceHistoryWriter {
+
+    @Resource
+    private ISkinPriceHistoryService priceHistoryService;
+
+    @Resource
+    private SkinPriceHistoryMapper skinPriceHistoryMapper;
+
+    @Resource
+    private INotificationService notificationService;
+
+    @Value("${csgo.writer.capacity:10000}")
+    private int capacity; // 队列容量，满了之后抓取线程阻塞等待
+
+    @Value("${csgo.writer.max-batch:500}")
+    private int maxBatch; // 单次入库最大条数
+
+    @Value("${csgo.writer.linger-ms:200}")
+    private long lingerMs; // 攒批等待时间：拿到第一条后最多再等这么久，凑更大的批次
+
+    @Value("${csgo.worker.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs; // 停机时等待队列刷完的最长时间
+
+    @Value("${csgo.notification.min-price:50}")
+    private BigDecimal minNotifyPrice; // 最低报警金额 (默认50)
+
+    @Value("${csgo.notification.fluctuation-limit:0.05}")
+    private BigDecimal fluctuationLimit; // 波动阈值 (默认5%)
+
+    private BlockingQueue<PriceSaveTaskDTO> queue;
+
+    private Thread writerThread;
+
+    private volatile boolean running = false;
+
+    // --- 运行指标 ---
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong blockedOffers = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private volatile int lastFlushSize;
+    private volatile long lastFlushMs;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        writerThread = new Thread(this::runWriter, "Price-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("💾 [入库线程] 已启动，队列容量: {}，单批上限: {}", capacity, maxBatch);
+    }
+
+    /**
+     * 停机：不再接收新数据，把队列里剩余的全部刷入数据库
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        log.info("💾 [入库线程] 收到停机信号，剩余待入库: {}", queue.size());
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warn("⚠️ [入库线程] 停机超时，仍有 {} 条未入库", queue.size());
+        }
+    }
+
+    /**
+     * 提交待入库数据 (抓取线程调用)
+     * 队列满时阻塞直到有空位，把压力传回抓取端；停机后直接同步写入，保证不丢
+     */
+    public void submit(List<PriceSaveTaskDTO> tasks) {
+        if (CollectionUtil.isEmpty(tasks)) {
+            return;
+        }
+        if (!running) {
+            flush(new ArrayList<>(tasks));
+            return;
+        }
+        for (PriceSaveTaskDTO task : tasks) {
+            if (!queue.offer(task)) {
+                blockedOffers.incrementAndGet();
+                try {
+                    queue.put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("⚠️ [入库线程] 提交被中断，丢弃一条: {}", task.getSkinId());
+                    failed.incrementAndGet();
+                    continue;
+                }
+            }
+            enqueued.incrementAndGet();
+        }
+    }
+
+    /**
+     * 入库流水线运行指标
+     */
+    public Map<String, Object> getWriterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running);
+        stats.put("queueDepth", queue.size());
+        stats.put("capacity", capacity);
+        stats.put("enqueued", enqueued.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("blockedOffers", blockedOffers.get());
+        stats.put("flushCount", flushCount.get());
+        stats.put("lastFlushSize", lastFlushSize);
+        stats.put("lastFlushMs", lastFlushMs);
+        return stats;
+    }
+
+    private void runWriter() {
+        List<PriceSaveTaskDTO> batch = new ArrayList<>(maxBatch);
+        // 停机后继续把队列刷空再退出
+        while (running || !queue.isEmpty()) {
+            try {
+                PriceSaveTaskDTO first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+
+                // 攒批：量不够时再等一小会儿 (停机时不等)
+                long deadline = System.currentTimeMillis() + lingerMs;
+                while (running && batch.size() < maxBatch) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PriceSaveTaskDTO next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("❌ [入库线程] 未知异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        log.info("💾 [入库线程] 已退出，累计入库 {} 条", written.get());
+    }
+
+    /**
+     * 一批数据：按平台查旧价 -> 预警 -> 批量插入
+     */
+    private void flush(List<PriceSaveTaskDTO> batch) {
+        if (CollectionUtil.isEmpty(batch)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+
+        // 1. 按平台查旧价 (同一批次里多个工人、多个平台的数据混在一起)
+        Map<String, List<PriceSaveTaskDTO>> platformMap = batch.stream().collect(Collectors.groupingBy(PriceSaveTaskDTO::getPlatform));
+        platformMap.forEach((platform, tasks) -> {
+            Map<Long, BigDecimal> oldPriceMap = new HashMap<>();
+            try {
+                List<Long> skinIds = tasks.stream().map(PriceSaveTaskDTO::getSkinId).distinct().toList();
+                List<SkinPriceHistoryEntity> oldHistoryList = skinPriceHistoryMapper.selectBatchLatestPrices(skinIds, platform);
+                if (CollectionUtil.isNotEmpty(oldHistoryList)) {
+                    oldPriceMap = oldHistoryList.stream().collect(Collectors.toMap(SkinPriceHistoryEntity::getSkinId, SkinPriceHistoryEntity::getPrice, (a, b) -> a));
+                }
+            } catch (Exception e) {
+                log.warn("查旧价失败，跳过报警检测");
+            }
+
+            // 2. 价格预警：只有当有旧价格，且当前价格大于阈值时，才进行波动检测
+            for (PriceSaveTaskDTO task : tasks) {
+                BigDecimal oldPrice = oldPriceMap.get(task.getSkinId());
+                if (oldPrice != null && task.getPrice().compareTo(minNotifyPrice) > 0) {
+                    checkAndNotify(task, oldPrice);
+                }
+            }
+        });
+
+        // 3. 批量插入
+        List<SkinPriceHistoryEntity> entitiesToSave = new ArrayList<>(batch.size());
+        for (PriceSaveTaskDTO task : batch) {
+            SkinPriceHistoryEntity history = new SkinPriceHistoryEntity();
+            history.setSkinId(task.getSkinId()); // 关键：存的是数据库主键
+            history.setPlatform(task.getPlatform()); // 存中文名
+            history.setPrice(task.getPrice());
+            history.setVolume(task.getVolume());
+            history.setCaptureTime(task.getCaptureTime());
+            history.setCreatedAt(LocalDateTime.now());
+            entitiesToSave.add(history);
+        }
+
+        try {
+            priceHistoryService.saveBatch(entitiesToSave, maxBatch);
+            written.addAndGet(entitiesToSave.size());
+            log.info("💾 [入库线程] 成功入库 {} 条 (平台: {})，队列剩余 {}", entitiesToSave.size(), platformMap.keySet(), queue.size());
+        } catch (Exception e) {
+            failed.addAndGet(entitiesToSave.size());
+            log.error("❌ [入库线程] 批量入库失败 {} 条", entitiesToSave.size(), e);
+        }
+
+        flushCount.incrementAndGet();
+        lastFlushSize = entitiesToSave.size();
+        lastFlushMs = System.currentTimeMillis() - start;
+    }
+
+    private void checkAndNotify(PriceSaveTaskDTO task, BigDecimal oldPrice) {
+        // 防止除以0
+        if (oldPrice.compareTo(BigDecimal.ZERO) == 0) {
+            return;
+        }
+
+        BigDecimal currentPrice = task.getPrice();
+        BigDecimal diff = currentPrice.subtract(oldPrice);
+        BigDecimal rate = diff.divide(oldPrice, 4, RoundingMode.HALF_UP);
+        BigDecimal percent = rate.multiply(new BigDecimal(100));
+
+        // 比较波动绝对值是否超过阈值 (例如 5%)
+        if (rate.abs().compareTo(fluctuationLimit) >= 0) {
+            String rateStr = (percent.doubleValue() > 0 ? "+" : "") + percent.setScale(2, RoundingMode.HALF_UP) + "%";
+
+            log.warn("🚨 [价格预警] {} ({}) : {} -> {}", task.getSkinName(), task.getPlatform(), oldPrice, currentPrice);
+
+            // 发送通知
+            notificationService.sendPriceAlert(
+                    task.getSkinName(),
+                    task.getPlatform(),
+                    oldPrice,
+                    currentPrice,
+                    rateStr
+            );
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.zan.csgo.task;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.StrUtil;
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.model.dto.PriceFetchResultDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/16 15:10
+ * @ClassName: RefreshIntervalEngine
+ * @Description : 自适应刷新间隔引擎
+ *                根据每个饰品近期的价格变化速度 (EWMA) 和成交量，推算它自己的刷新间隔：
+ *                价格在动、成交活跃的刷得勤，长期横盘的少刷，省下代理预算
+ *                状态按饰品存在 Redis Hash 中 (带过期时间)，多个节点共享
+ */
+@Component
+@Slf4j
+public class RefreshIntervalEngine {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${csgo.schedule.adaptive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csgo.schedule.adaptive.min-interval-ms:120000}")
+    private long minIntervalMs; // 间隔下限 (2 分钟)
+
+    @Value("${csgo.schedule.adaptive.max-interval-ms:86400000}")
+    private long maxIntervalMs; // 间隔上限 (24 小时)
+
+    @Value("${csgo.schedule.adaptive.target-change-rate:0.01}")
+    private double targetChangeRate; // 预计价格变动达到该比例时刷新一次 (默认 1%)
+
+    @Value("${csgo.schedule.adaptive.ewma-alpha:0.3}")
+    private double ewmaAlpha; // EWMA 平滑系数，越大越看重最近一次的变化
+
+    @Value("${csgo.schedule.adaptive.volume-weight:0.5}")
+    private double volumeWeight; // 成交量加权：每多一个数量级，间隔缩短的比例
+
+    @Value("${csgo.schedule.adaptive.state-ttl-hours:72}")
+    private long stateTtlHours; // 饰品状态保留时长：这么久没再抓到 (下架/删除) 的自动过期
+
+    // 计算变化速度时的最小时间窗口 (1 分钟)，防止两次抓取挨得太近导致速度被放大
+    private static final long MIN_ELAPSED_MS = 60_000;
+
+    private static final String FIELD_RATE = "rate";
+    private static final String FIELD_VOLUME = "volume";
+
+    // 旧版把所有饰品的状态放在一个 Hash 里，只增不减，启动时清掉
+    private static final String LEGACY_STATE_KEY = "csgo:task:volatility";
+
+    private static final DefaultRedisScript<Long> RECORD_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        RECORD_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/volatility_record.lua")));
+        RECORD_SCRIPT.setResultType(Long.class);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            stringRedisTemplate.unlink(LEGACY_STATE_KEY);
+        } catch (Exception e) {
+            log.warn("⚠️ [自适应间隔] 清理旧版状态失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录一个平台的抓取结果，更新每个饰品的变化速度
+     * 读-改-写在 Lua 脚本里原子完成：同一批次的几个平台、多个节点并发记录同一个饰品时不会互相覆盖
+     *
+     * @param resultMap 饰品数据库ID -> 抓取成功的结果
+     */
+    public void record(PlatformEnum platformEnum, Map<Long, PriceFetchResultDTO> resultMap) {
+        if (!enabled || CollectionUtil.isEmpty(resultMap)) {
+            return;
+        }
+        try {
+            List<String> keys = new ArrayList<>();
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(platformEnum.getCode()));
+            args.add(String.valueOf(System.currentTimeMillis()));
+            args.add(String.valueOf(ewmaAlpha));
+            args.add(String.valueOf(MIN_ELAPSED_MS));
+            args.add(String.valueOf(TimeUnit.HOURS.toMillis(stateTtlHours)));
+
+            resultMap.forEach((skinId, dto) -> {
+                if (dto.getPrice() == null || dto.getPrice().compareTo(BigDecimal.ZERO) <= 0) {
+                    return;
+                }
+                keys.add(RedisKeyConstant.TASK_VOLATILITY_PREFIX + skinId);
+                args.add(dto.getPrice().toPlainString());
+                args.add(dto.getVolume() == null ? "" : String.valueOf(dto.getVolume()));
+            });
+
+            if (!keys.isEmpty()) {
+                stringRedisTemplate.execute(RECORD_SCRIPT, keys, args.toArray());
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [自适应间隔] 记录价格变化失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 推算一批饰品的刷新间隔
+     * 还没有变化数据的饰品 (新饰品/只抓过一次) 沿用等级间隔
+     *
+     * @param tierIntervalMap 饰品数据库ID -> 等级间隔 (兜底值)
+     * @return 饰品数据库ID -> 刷新间隔(ms)
+     */
+    public Map<Long, Long> resolveIntervals(Map<Long, Long> tierIntervalMap) {
+        Map<Long, Long> intervalMap = new HashMap<>(tierIntervalMap);
+        if (!enabled || CollectionUtil.isEmpty(tierIntervalMap)) {
+            return intervalMap;
+        }
+        try {
+            Map<Long, List<String>> stateMap = loadStates(new ArrayList<>(tierIntervalMap.keySet()));
+            stateMap.forEach((skinId, state) -> {
+                Long interval = deriveInterval(state.get(0), state.get(1));
+                if (interval != null) {
+                    intervalMap.put(skinId, interval);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("⚠️ [自适应间隔] 推算失败，沿用等级间隔: {}", e.getMessage());
+        }
+        return intervalMap;
+    }
+
+    /**
+     * 间隔 = 目标变化比例 / 每小时变化速度，再按成交量缩短，最后限制在上下限之间
+     */
+    private Long deriveInterval(String rateStr, String volumeStr) {
+        if (StrUtil.isBlank(rateStr)) {
+            return null;
+        }
+        double rate = Double.parseDouble(rateStr);
+
+        double intervalMs = rate <= 0 ? maxIntervalMs : targetChangeRate / rate * 3_600_000;
+
+        // 成交越活跃，价格越容易被刷新，间隔相应缩短
+        int volume = StrUtil.isBlank(volumeStr) ? 0 : Integer.parseInt(volumeStr);
+        if (volume > 0) {
+            intervalMs = intervalMs / (1 + volumeWeight * Math.log10(1 + volume));
+        }
+
+        return Math.max(minIntervalMs, Math.min(maxIntervalMs, (long) intervalMs));
+    }
+
+    /**
+     * 一次 Pipeline 读出一批饰品的 rate 和 volume
+     *
+     * @return 饰品数据库ID -> [rate, volume]，没有状态的饰品不在结果里
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, List<String>> loadStates(List<Long> skinIds) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long skinId : skinIds) {
+                connection.hashCommands().hMGet((RedisKeyConstant.TASK_VOLATILITY_PREFIX + skinId).getBytes(StandardCharsets.UTF_8),
+                        FIELD_RATE.getBytes(StandardCharsets.UTF_8), FIELD_VOLUME.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        Map<Long, List<String>> stateMap = new HashMap<>();
+        for (int i = 0; i < skinIds.size(); i++) {
+            List<String> state = (List<String>) results.get(i);
+            if (state != null && state.get(0) != null) {
+                stateMap.put(skinIds.get(i), state);
+            }
+        }
+        return stateMap;
+    }
+}
@@ -1,7 +1,9 @@
 package com.zan.csgo.task;
 
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.RandomUtil;
 import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.QueueModeEnum;
 import com.zan.csgo.enums.SkinPriorityEnum;
 import com.zan.csgo.service.ISkinItemService;
 import jakarta.annotation.Resource;
@@ -10,7 +12,13 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * @Author Zan
@@ -29,6 +37,15 @@ public class TaskProducer {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private TaskQueueManager taskQueueManager;
+
+    @Resource
+    private TaskScheduleManager taskScheduleManager;
+
+    // 从数据库分页读取 ID 的每页大小
+    private static final int ID_PAGE_SIZE = 2000;
+
     /**
      * 初始化每天的默认获取饰品价格任务
      */
@@ -36,17 +53,10 @@ public class TaskProducer {
     public void dispatchTasks() {
         log.info("📢 [调度中心] 开始派发任务...");
 
-        // 1. 获取所有 ID
-        List<Long> ids = skinItemService.selectAllIdList();
-
-        if (ids.isEmpty()) return;
+        // 按主键分页流式读取全部 ID，逐页推送到 Redis List (RPUSH)
+        long total = streamIdPages(null, page -> taskQueueManager.push(RedisKeyConstant.QUEUE_KEY, page));
 
-        // 2. 推送到 Redis List (RPUSH)
-        // 转换成 String 数组批量推送，减少网络开销
-        String[] idStrs = ids.stream().map(String::valueOf).toArray(String[]::new);
-        stringRedisTemplate.opsForList().rightPushAll(RedisKeyConstant.QUEUE_KEY, idStrs);
-
-        log.info("📢 [调度中心] 派发完成，新增任务数: {}", ids.size());
+        log.info("📢 [调度中心] 派发完成，新增任务数: {}", total);
     }
 
     /**
@@ -55,6 +65,9 @@ public class TaskProducer {
      */
     @Scheduled(fixedDelay = 1000 * 60 * 60 * 4)
     public void dispatchColdTasks() {
+        if (!isLaneMode()) {
+            return;
+        }
         Long size = stringRedisTemplate.opsForList().size(RedisKeyConstant.QUEUE_COMMON);
         if (size != null && size > 1000) {
             log.warn("🧊 [调度] 普通队列堆积 (剩余{}个)，跳过本次派发", size);
@@ -71,6 +84,9 @@ public class TaskProducer {
      */
     @Scheduled(fixedDelay = 1000 * 60 * 5)
     public void dispatchHotTasks() {
+        if (!isLaneMode()) {
+            return;
+        }
         // 防止队列堆积过深（如果上次还没跑完，这次先别推了，避免 Redis 炸了）
         Long size = stringRedisTemplate.opsForList().size(RedisKeyConstant.QUEUE_HOT);
         if (size != null && size > 50) {
@@ -88,6 +104,9 @@ public class TaskProducer {
      */
     @Scheduled(fixedDelay = 1000 * 60 * 60 * 12)
     public void dispatchPriorityTasks() {
+        if (!isLaneMode()) {
+            return;
+        }
         Long size = stringRedisTemplate.opsForList().size(RedisKeyConstant.QUEUE_COLD);
         if (size != null && size > 100) {
             log.warn("🔥 [调度] 冷门队列堆积 (剩余{}个)，跳过本次派发", size);
@@ -98,25 +117,92 @@ public class TaskProducer {
         pushTasksToQueue(SkinPriorityEnum.ICE.getCode(), RedisKeyConstant.QUEUE_COLD, SkinPriorityEnum.ICE.getDesc());
     }
 
+    /**
+     * 📅【到期调度】调度表与数据库对账 (默认每小时一次)
+     * 逻辑：新饰品按等级随机分布到一个刷新周期内入表 (NX，已在表中的保持原排期)，已删除的饰品移出调度表
+     *      日常的刷新节奏完全由调度表驱动，数据库只在对账时扫描
+     */
+    @Scheduled(fixedDelayString = "${csgo.schedule.sync-interval-ms:3600000}")
+    public void syncSchedule() {
+        if (!QueueModeEnum.SCHEDULE.equals(taskQueueManager.getQueueMode())) {
+            return;
+        }
+
+        log.info("📅 [调度] 开始对账调度表...");
+        AtomicLong added = new AtomicLong();
+        AtomicLong removed = new AtomicLong();
+
+        // 1. 数据库 -> 调度表：逐页读取，新饰品入表
+        for (SkinPriorityEnum priorityEnum : SkinPriorityEnum.values()) {
+            // 首次入表：在一个刷新周期内均匀打散，避免所有饰品同一时刻到期
+            long interval = taskScheduleManager.getTierIntervalMs(priorityEnum.getCode());
+            streamIdPages(priorityEnum.getCode(), page -> {
+                long now = System.currentTimeMillis();
+                Map<String, Long> dueTimeMap = new HashMap<>();
+                page.forEach(idStr -> dueTimeMap.put(idStr, now + RandomUtil.randomLong(0, interval + 1)));
+                added.addAndGet(taskScheduleManager.addIfAbsent(dueTimeMap));
+            });
+        }
+
+        // 2. 调度表 -> 数据库：分块扫描调度表，清理数据库中已不存在的饰品
+        taskScheduleManager.scanIds(ID_PAGE_SIZE, chunk -> {
+            List<Long> chunkIds = chunk.stream().map(Long::parseLong).toList();
+            Set<Long> existIds = new HashSet<>(skinItemService.selectExistingIdList(chunkIds));
+            List<String> staleIds = chunkIds.stream()
+                    .filter(id -> !existIds.contains(id))
+                    .map(String::valueOf)
+                    .toList();
+            taskScheduleManager.remove(staleIds);
+            removed.addAndGet(staleIds.size());
+        });
+
+        log.info("📅 [调度] 对账完成，新增 {} 个，移除 {} 个，当前已到期 {} 个", added.get(), removed.get(), taskScheduleManager.dueCount());
+    }
+
+    /**
+     * 赛道派发只在 赛道/可靠赛道 模式下生效，调度模式由调度表驱动
+     */
+    private boolean isLaneMode() {
+        return !QueueModeEnum.SCHEDULE.equals(taskQueueManager.getQueueMode());
+    }
+
     /**
      * 通用推数逻辑
      */
     private void pushTasksToQueue(Integer priority, String queueKey, String logPrefix) {
-        // 1. 只查 ID，减少数据库压力
-        List<Long> idList = skinItemService.selectAllIdListByPriority(priority);
+        // 只查 ID，按主键分页流式读取，每页切块 Pipeline 推入 Redis (RPUSH)
+        // 同时放唤醒令牌，可靠模式下空闲的工人会立即醒来
+        long total = streamIdPages(priority, page -> taskQueueManager.push(queueKey, page));
 
-        if (CollectionUtil.isEmpty(idList)) {
+        if (total == 0) {
             log.warn("📢 [调度] {}任务为空，跳过", logPrefix);
             return;
         }
+        log.info("📢 [调度] {}任务派发完成，新增 {} 个", logPrefix, total);
+    }
 
-        // 转换成String类型
-        List<String> idStrList = idList.stream().map(String::valueOf).toList();
-
-        // 2. 批量推入 Redis (RPUSH)
-        // 建议分批推，防止一次网络包过大，这里假设 ID 不会超过几万，直接推没问题
-        stringRedisTemplate.opsForList().rightPushAll(queueKey, idStrList);
-
-        log.info("📢 [调度] {}任务派发完成，新增 {} 个", logPrefix, idStrList.size());
+    /**
+     * 按主键游标逐页读取饰品 ID，每页交给 consumer 处理
+     * 内存中同一时刻只有一页 ID，饰品总量增长到几十万也不会把全部 ID 读进内存
+     *
+     * @param priority 饰品等级，为空则不限等级
+     * @return 读取的 ID 总数
+     */
+    private long streamIdPages(Integer priority, Consumer<List<String>> consumer) {
+        long total = 0;
+        Long lastId = null;
+        while (true) {
+            List<Long> idList = skinItemService.selectIdPage(priority, lastId, ID_PAGE_SIZE);
+            if (CollectionUtil.isEmpty(idList)) {
+                break;
+            }
+            consumer.accept(idList.stream().map(String::valueOf).toList());
+            total += idList.size();
+            lastId = idList.get(idList.size() - 1);
+            if (idList.size() < ID_PAGE_SIZE) {
+                break;
+            }
+        }
+        return total;
     }
 }
\ No newline at end of file
@@ -0,0 +1,349 @@
+package com.zan.csgo.task;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.EnumUtil;
+import cn.hutool.core.util.StrUtil;
+import com.google.common.collect.Lists;
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.enums.QueueModeEnum;
+import com.zan.csgo.enums.SkinPriorityEnum;
+import com.zan.csgo.model.dto.TaskBatchDTO;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/15 10:20
+ * @ClassName: TaskQueueManager
+ * @Description : 任务队列管理 (入队 + 可靠队列的领取/确认/回收)
+ *                可靠模式下，工人弹出的任务先登记到自己的处理中 Hash 并持有租约，
+ *                处理完逐个确认；进程崩溃导致租约过期时，由回收器放回原赛道。
+ *                因平台熔断失败的任务先进延后 ZSet，冷却结束后再放回原赛道，并记下下次只需补抓的平台
+ */
+@Component
+@Slf4j
+public class TaskQueueManager {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${csgo.worker.queue-mode:SCHEDULE}")
+    private QueueModeEnum queueMode;
+
+    @Value("${csgo.worker.lease-timeout-ms:600000}")
+    private long leaseTimeoutMs; // 租约时长：超过这个时间没续约/确认，视为工人已死
+
+    @Value("${csgo.worker.delay-release-limit:1000}")
+    private int delayReleaseLimit; // 延后任务单次最多放回的数量
+
+    // 赛道优先级：热 -> 普 -> 冷 (LinkedHashMap 保证顺序)
+    private static final Map<String, String> LANE_DESC_MAP = new LinkedHashMap<>();
+
+    static {
+        LANE_DESC_MAP.put(RedisKeyConstant.QUEUE_HOT, SkinPriorityEnum.HOT.getDesc());
+        LANE_DESC_MAP.put(RedisKeyConstant.QUEUE_COMMON, SkinPriorityEnum.COMMON.getDesc());
+        LANE_DESC_MAP.put(RedisKeyConstant.QUEUE_COLD, SkinPriorityEnum.ICE.getDesc());
+    }
+
+    private static final List<String> LANE_KEYS = new ArrayList<>(LANE_DESC_MAP.keySet());
+
+    private static final byte[] SIGNAL_KEY_BYTES = RedisKeyConstant.QUEUE_SIGNAL.getBytes(StandardCharsets.UTF_8);
+
+    // 单条 RPUSH 最多携带的ID数
+    private static final int PUSH_CHUNK_SIZE = 500;
+
+    // 单次回收最多处理的过期工人数
+    private static final int REAP_LIMIT = 100;
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>();
+
+    private static final DefaultRedisScript<Long> COMPLETE_SCRIPT = new DefaultRedisScript<>();
+
+    private static final DefaultRedisScript<Long> REAP_SCRIPT = new DefaultRedisScript<>();
+
+    private static final DefaultRedisScript<Long> DELAY_RELEASE_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        CLAIM_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/task_claim.lua")));
+        CLAIM_SCRIPT.setResultType(List.class);
+        COMPLETE_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/task_complete.lua")));
+        COMPLETE_SCRIPT.setResultType(Long.class);
+        REAP_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/task_reap.lua")));
+        REAP_SCRIPT.setResultType(Long.class);
+        DELAY_RELEASE_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/task_delay_release.lua")));
+        DELAY_RELEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    public QueueModeEnum getQueueMode() {
+        return queueMode;
+    }
+
+    /**
+     * 赛道 Key -> 描述 (热 -> 普 -> 冷)
+     */
+    public Map<String, String> getLaneDescMap() {
+        return LANE_DESC_MAP;
+    }
+
+    /**
+     * 任务入队 (RPUSH)，并放一个唤醒令牌给可靠模式下正在等待的工人
+     * 按固定大小切块，多个 RPUSH 走同一个 Pipeline：单条命令不会过大，也只有一次网络往返
+     */
+    public void push(String queueKey, Collection<String> idStrList) {
+        if (CollectionUtil.isEmpty(idStrList)) {
+            return;
+        }
+        byte[] keyBytes = queueKey.getBytes(StandardCharsets.UTF_8);
+        List<List<String>> chunks = Lists.partition(new ArrayList<>(idStrList), PUSH_CHUNK_SIZE);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<String> chunk : chunks) {
+                byte[][] values = chunk.stream().map(id -> id.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+                connection.listCommands().rPush(keyBytes, values);
+            }
+            return null;
+        });
+        signal();
+    }
+
+    /**
+     * 可靠领取：从最高优先级的非空赛道弹出一批，原子地登记到工人的处理中 Hash
+     * 全部为空时阻塞等待唤醒令牌，空闲期间不会轮询 Redis
+     *
+     * @return 领取到的批次，超时无任务返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public TaskBatchDTO claim(String workerId, int batchSize, int blockTimeoutSeconds) {
+        List<String> keys = new ArrayList<>(LANE_KEYS);
+        keys.add(RedisKeyConstant.QUEUE_PROCESSING_PREFIX + workerId);
+        keys.add(RedisKeyConstant.QUEUE_LEASE);
+        keys.add(RedisKeyConstant.QUEUE_SIGNAL);
+
+        List<String> claimed = stringRedisTemplate.execute(CLAIM_SCRIPT, keys,
+                String.valueOf(batchSize), String.valueOf(System.currentTimeMillis() + leaseTimeoutMs), workerId);
+
+        if (CollectionUtil.isEmpty(claimed) || claimed.size() < 2) {
+            // 所有赛道为空：阻塞等待唤醒令牌 (入队/回滚/回收时会放入)
+            stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.listCommands().bLPop(blockTimeoutSeconds, SIGNAL_KEY_BYTES));
+            return null;
+        }
+
+        String queueKey = claimed.get(0);
+        return TaskBatchDTO.builder()
+                .queueKey(queueKey)
+                .sourceDesc(LANE_DESC_MAP.getOrDefault(queueKey, queueKey))
+                .idList(new ArrayList<>(claimed.subList(1, claimed.size())))
+                .build();
+    }
+
+    /**
+     * 续约：长批次 (如 Steam 慢速抓取) 处理过程中定期调用，防止被回收器误判
+     */
+    public void renewLease(String workerId) {
+        stringRedisTemplate.opsForZSet().add(RedisKeyConstant.QUEUE_LEASE, workerId, System.currentTimeMillis() + leaseTimeoutMs);
+    }
+
+    /**
+     * 结算批次：成功的逐个确认，失败的放回原赛道 (不再整体降级到冷门队列)
+     *
+     * @return 放回赛道的数量
+     */
+    public long complete(String workerId, Collection<String> ackIds, Collection<String> nackIds) {
+        return complete(workerId, ackIds, nackIds, List.of(), 0);
+    }
+
+    /**
+     * 结算批次：成功的逐个确认，失败的放回原赛道，因平台熔断失败的延后到 dueTime 再放回原赛道
+     *
+     * @param delayedIds 延后放回的ID
+     * @param dueTime    延后的ID放回赛道的时间戳
+     * @return 放回赛道和延后的数量
+     */
+    public long complete(String workerId, Collection<String> ackIds, Collection<String> nackIds,
+                         Collection<String> delayedIds, long dueTime) {
+        List<String> args = new ArrayList<>();
+        args.add(workerId);
+        args.add(String.valueOf(ackIds.size()));
+        args.add(String.valueOf(delayedIds.size()));
+        args.add(String.valueOf(dueTime));
+        args.addAll(ackIds);
+        args.addAll(delayedIds);
+        args.addAll(nackIds);
+
+        List<String> keys = settleKeys(workerId);
+        keys.add(RedisKeyConstant.QUEUE_DELAYED);
+        Long settled = stringRedisTemplate.execute(COMPLETE_SCRIPT, keys, args.toArray());
+        return settled == null ? 0 : settled;
+    }
+
+    /**
+     * 赛道模式：任务延后到 dueTime 再放回指定赛道 (弹出即删除，没有处理中 Hash，直接写延后 ZSet)
+     */
+    public void delay(String queueKey, Collection<String> idStrList, long dueTime) {
+        if (CollectionUtil.isEmpty(idStrList)) {
+            return;
+        }
+        String prefix = laneIndex(queueKey) + "|";
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        for (String idStr : idStrList) {
+            tuples.add(ZSetOperations.TypedTuple.of(prefix + idStr, (double) dueTime));
+        }
+        stringRedisTemplate.opsForZSet().add(RedisKeyConstant.QUEUE_DELAYED, tuples);
+    }
+
+    /**
+     * ⏰ 把到点的延后任务放回原赛道 (调度模式有自己的到期时间，不经过这里)
+     */
+    @Scheduled(fixedDelayString = "${csgo.worker.delay-release-interval-ms:5000}")
+    public void releaseDelayed() {
+        if (QueueModeEnum.SCHEDULE.equals(queueMode)) {
+            return;
+        }
+        try {
+            List<String> keys = new ArrayList<>();
+            keys.add(RedisKeyConstant.QUEUE_DELAYED);
+            keys.add(RedisKeyConstant.QUEUE_SIGNAL);
+            keys.addAll(LANE_KEYS);
+            Long released = stringRedisTemplate.execute(DELAY_RELEASE_SCRIPT, keys,
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(delayReleaseLimit));
+            if (released != null && released > 0) {
+                log.info("⏰ [延后队列] {} 个熔断延后的任务已放回原赛道", released);
+            }
+        } catch (Exception e) {
+            log.error("❌ [延后队列] 放回异常", e);
+        }
+    }
+
+    /**
+     * 记下饰品下次只需抓取的平台 (其余平台这次已经抓到)
+     */
+    public void markPendingPlatforms(Map<String, Set<PlatformEnum>> pendingMap) {
+        if (CollectionUtil.isEmpty(pendingMap)) {
+            return;
+        }
+        Map<String, String> values = new HashMap<>();
+        pendingMap.forEach((idStr, platforms) -> values.put(idStr,
+                platforms.stream().map(PlatformEnum::name).collect(Collectors.joining(","))));
+        stringRedisTemplate.opsForHash().putAll(RedisKeyConstant.QUEUE_PENDING_PLATFORMS, values);
+    }
+
+    /**
+     * 查询这批饰品下次只需抓取的平台，没有记录的饰品不在结果里 (全部平台都要抓)
+     */
+    public Map<Long, Set<PlatformEnum>> pendingPlatforms(List<String> idStrList) {
+        Map<Long, Set<PlatformEnum>> pendingMap = new HashMap<>();
+        if (CollectionUtil.isEmpty(idStrList)) {
+            return pendingMap;
+        }
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(RedisKeyConstant.QUEUE_PENDING_PLATFORMS, new ArrayList<>(idStrList));
+        if (values == null) {
+            return pendingMap;
+        }
+        for (int i = 0; i < idStrList.size() && i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            Set<PlatformEnum> platforms = EnumSet.noneOf(PlatformEnum.class);
+            for (String name : StrUtil.split(value.toString(), ',', true, true)) {
+                PlatformEnum platformEnum = EnumUtil.fromStringQuietly(PlatformEnum.class, name);
+                if (platformEnum != null) {
+                    platforms.add(platformEnum);
+                }
+            }
+            if (!platforms.isEmpty()) {
+                pendingMap.put(Long.parseLong(idStrList.get(i)), platforms);
+            }
+        }
+        return pendingMap;
+    }
+
+    /**
+     * 清除饰品的补抓平台记录 (补抓成功或饰品已不存在)
+     */
+    public void clearPendingPlatforms(Collection<String> idStrList) {
+        if (CollectionUtil.isEmpty(idStrList)) {
+            return;
+        }
+        stringRedisTemplate.opsForHash().delete(RedisKeyConstant.QUEUE_PENDING_PLATFORMS, idStrList.toArray());
+    }
+
+    /**
+     * ♻️ 回收器：把租约过期工人手上的任务放回原赛道队头
+     * 先查出过期的工人，再逐个原子回收 (脚本里会再确认一次租约，期间刚续约的不动)
+     */
+    @Scheduled(fixedDelayString = "${csgo.worker.reap-interval-ms:30000}")
+    public void reapExpiredLeases() {
+        if (!QueueModeEnum.RELIABLE.equals(queueMode)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            Set<String> expiredWorkers = stringRedisTemplate.opsForZSet().rangeByScore(RedisKeyConstant.QUEUE_LEASE, 0, now, 0, REAP_LIMIT);
+            if (CollectionUtil.isEmpty(expiredWorkers)) {
+                return;
+            }
+            long total = 0;
+            for (String workerId : expiredWorkers) {
+                Long reaped = stringRedisTemplate.execute(REAP_SCRIPT, settleKeys(workerId), workerId, String.valueOf(now));
+                total += reaped == null ? 0 : reaped;
+            }
+            if (total > 0) {
+                log.warn("♻️ [回收器] 发现 {} 个过期租约，{} 个任务已放回原赛道", expiredWorkers.size(), total);
+            }
+        } catch (Exception e) {
+            log.error("❌ [回收器] 回收异常", e);
+        }
+    }
+
+    /**
+     * 结算/回收脚本用到的 Key：工人处理中 Hash、租约、唤醒信号、三条赛道
+     */
+    private static List<String> settleKeys(String workerId) {
+        List<String> keys = new ArrayList<>();
+        keys.add(RedisKeyConstant.QUEUE_PROCESSING_PREFIX + workerId);
+        keys.add(RedisKeyConstant.QUEUE_LEASE);
+        keys.add(RedisKeyConstant.QUEUE_SIGNAL);
+        keys.addAll(LANE_KEYS);
+        return keys;
+    }
+
+    /**
+     * 赛道 Key 对应的序号 (热 1 / 普 2 / 冷 3)，不认识的按冷门
+     */
+    private static int laneIndex(String queueKey) {
+        int index = LANE_KEYS.indexOf(queueKey);
+        return index < 0 ? LANE_KEYS.size() : index + 1;
+    }
+
+    /**
+     * 放一个唤醒令牌 (最多保留一个，多余的没意义)
+     */
+    private void signal() {
+        stringRedisTemplate.opsForList().leftPush(RedisKeyConstant.QUEUE_SIGNAL, "1");
+        stringRedisTemplate.opsForList().trim(RedisKeyConstant.QUEUE_SIGNAL, 0, 0);
+    }
+}
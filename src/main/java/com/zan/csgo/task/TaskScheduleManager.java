@@ -0,0 +1,229 @@
+package com.zan.csgo.task;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.RandomUtil;
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.QueueModeEnum;
+import com.zan.csgo.enums.SkinPriorityEnum;
+import com.zan.csgo.model.dto.TaskBatchDTO;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/16 09:40
+ * @ClassName: TaskScheduleManager
+ * @Description : 到期调度管理 (Redis ZSet)
+ *                每个饰品有一个"下次到期时间"，工人只领取已到期的饰品，抓取后按等级重新排期；
+ *                相比定时整批派发：负载均匀分布在时间轴上、不会重复入队、也不用每轮全表扫描
+ */
+@Component
+@Slf4j
+public class TaskScheduleManager {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${csgo.schedule.hot-interval-ms:300000}")
+    private long hotIntervalMs; // 热门：5 分钟
+
+    @Value("${csgo.schedule.common-interval-ms:14400000}")
+    private long commonIntervalMs; // 普通：4 小时
+
+    @Value("${csgo.schedule.cold-interval-ms:43200000}")
+    private long coldIntervalMs; // 冷门：12 小时
+
+    @Value("${csgo.schedule.retry-delay-ms:60000}")
+    private long retryDelayMs; // 抓取失败后的重试间隔 (保持原等级，不降级)
+
+    @Value("${csgo.schedule.jitter-ratio:0.1}")
+    private double jitterRatio; // 排期抖动比例，防止同一批饰品永远扎堆到期
+
+    @Value("${csgo.worker.lease-timeout-ms:600000}")
+    private long leaseTimeoutMs; // 领取后的隐身时长，工人崩溃时过了这个时间会重新到期
+
+    private static final byte[] SCHEDULE_KEY_BYTES = RedisKeyConstant.TASK_SCHEDULE.getBytes(StandardCharsets.UTF_8);
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        CLAIM_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/schedule_claim.lua")));
+        CLAIM_SCRIPT.setResultType(List.class);
+    }
+
+    /**
+     * 领取已到期的饰品
+     * 没有到期任务时，睡到最早的到期时间 (最多 maxWaitMs)，而不是固定频率轮询
+     *
+     * @return 领取到的批次，无到期任务返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public TaskBatchDTO claimDue(int batchSize, long maxWaitMs) {
+        long now = System.currentTimeMillis();
+        List<String> claimed = stringRedisTemplate.execute(CLAIM_SCRIPT, List.of(RedisKeyConstant.TASK_SCHEDULE),
+                String.valueOf(now), String.valueOf(batchSize), String.valueOf(now + leaseTimeoutMs));
+
+        if (CollectionUtil.isEmpty(claimed)) {
+            ThreadUtil.sleep(maxWaitMs);
+            return null;
+        }
+
+        if (claimed.size() == 1) {
+            // 只有 "最早到期时间"，说明当前没有到期任务
+            long nextDue = (long) Double.parseDouble(claimed.get(0));
+            long wait = nextDue < 0 ? maxWaitMs : Math.min(Math.max(nextDue - now, 0), maxWaitMs);
+            if (wait > 0) {
+                ThreadUtil.sleep(wait);
+            }
+            return null;
+        }
+
+        return TaskBatchDTO.builder()
+                .queueKey(RedisKeyConstant.TASK_SCHEDULE)
+                .sourceDesc(QueueModeEnum.SCHEDULE.getDesc())
+                .idList(new ArrayList<>(claimed.subList(1, claimed.size())))
+                .build();
+    }
+
+    /**
+     * 按等级计算下次到期时间 (带随机抖动)
+     */
+    public long nextDueTime(Integer priority) {
+        return dueTimeAfter(getTierIntervalMs(priority));
+    }
+
+    /**
+     * 按指定间隔计算下次到期时间 (带随机抖动)
+     */
+    public long dueTimeAfter(long intervalMs) {
+        return System.currentTimeMillis() + withJitter(intervalMs);
+    }
+
+    /**
+     * 失败重试的到期时间 (带随机抖动)
+     */
+    public long retryDueTime() {
+        return System.currentTimeMillis() + withJitter(retryDelayMs);
+    }
+
+    /**
+     * 失败重试的到期时间，至少延后 minDelayMs (平台熔断冷却中时使用)
+     */
+    public long retryDueTime(long minDelayMs) {
+        return System.currentTimeMillis() + withJitter(Math.max(retryDelayMs, minDelayMs));
+    }
+
+    /**
+     * 等级对应的刷新间隔
+     */
+    public long getTierIntervalMs(Integer priority) {
+        if (Objects.equals(SkinPriorityEnum.HOT.getCode(), priority)) {
+            return hotIntervalMs;
+        } else if (Objects.equals(SkinPriorityEnum.ICE.getCode(), priority)) {
+            return coldIntervalMs;
+        }
+        return commonIntervalMs;
+    }
+
+    /**
+     * 重新排期 (ZADD XX)：只更新还在调度表里的饰品，已被移除的不会被"复活"
+     */
+    public void reschedule(Map<String, Long> dueTimeMap) {
+        zAdd(dueTimeMap, RedisZSetCommands.ZAddArgs.ifExists());
+    }
+
+    /**
+     * 新饰品入表 (ZADD NX)：已存在的饰品保持原排期
+     *
+     * @return 新增数量
+     */
+    public long addIfAbsent(Map<String, Long> dueTimeMap) {
+        return zAdd(dueTimeMap, RedisZSetCommands.ZAddArgs.ifNotExists());
+    }
+
+    /**
+     * 从调度表移除 (饰品已删除)
+     */
+    public void remove(Collection<String> idStrList) {
+        if (CollectionUtil.isEmpty(idStrList)) {
+            return;
+        }
+        stringRedisTemplate.opsForZSet().remove(RedisKeyConstant.TASK_SCHEDULE, idStrList.toArray());
+    }
+
+    /**
+     * 分块遍历调度表中的饰品ID (ZSCAN)，不会一次性把整张表读进内存
+     * 遍历期间表有变化时，个别ID可能重复出现，调用方需保证处理幂等
+     *
+     * @param chunkSize 每块大小
+     * @param consumer  每块的处理逻辑
+     */
+    public void scanIds(int chunkSize, Consumer<List<String>> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().count(chunkSize).build();
+        List<String> chunk = new ArrayList<>(chunkSize);
+        try (Cursor<ZSetOperations.TypedTuple<String>> cursor = stringRedisTemplate.opsForZSet().scan(RedisKeyConstant.TASK_SCHEDULE, options)) {
+            while (cursor.hasNext()) {
+                chunk.add(cursor.next().getValue());
+                if (chunk.size() >= chunkSize) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+
+    /**
+     * 当前已到期、等待领取的数量
+     */
+    public long dueCount() {
+        Long count = stringRedisTemplate.opsForZSet().count(RedisKeyConstant.TASK_SCHEDULE, Double.NEGATIVE_INFINITY, System.currentTimeMillis());
+        return count == null ? 0 : count;
+    }
+
+    private long zAdd(Map<String, Long> dueTimeMap, RedisZSetCommands.ZAddArgs args) {
+        if (CollectionUtil.isEmpty(dueTimeMap)) {
+            return 0;
+        }
+        Set<Tuple> tuples = new HashSet<>(dueTimeMap.size());
+        dueTimeMap.forEach((id, dueTime) -> tuples.add(Tuple.of(id.getBytes(StandardCharsets.UTF_8), dueTime.doubleValue())));
+
+        Long added = stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.zSetCommands().zAdd(SCHEDULE_KEY_BYTES, tuples, args));
+        return added == null ? 0 : added;
+    }
+
+    private long withJitter(long intervalMs) {
+        long jitter = (long) (intervalMs * jitterRatio);
+        if (jitter <= 0) {
+            return intervalMs;
+        }
+        return intervalMs + RandomUtil.randomLong(-jitter, jitter + 1);
+    }
+}
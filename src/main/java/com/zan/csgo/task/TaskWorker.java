@@ -1,38 +1,54 @@
 package com.zan.csgo.task;
 
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.net.NetUtil;
 import cn.hutool.core.thread.ThreadUtil;
-import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.RuntimeUtil;
 import cn.hutool.core.util.StrUtil;
 import com.google.common.collect.Lists;
 import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.crawler.breaker.CircuitBreakerRegistry;
+import com.zan.csgo.crawler.limiter.AdaptiveBatchController;
+import com.zan.csgo.crawler.resolver.PlatformIdResolver;
+import com.zan.csgo.crawler.strategy.MarketStrategy;
 import com.zan.csgo.crawler.strategy.impl.BuffStrategy;
 import com.zan.csgo.crawler.strategy.impl.SteamStrategy;
 import com.zan.csgo.crawler.strategy.impl.YoupinStrategy;
 import com.zan.csgo.enums.PlatformEnum;
-import com.zan.csgo.enums.SkinPriorityEnum;
+import com.zan.csgo.enums.QueueModeEnum;
 import com.zan.csgo.exception.BusinessException;
-import com.zan.csgo.mapper.SkinPriceHistoryMapper;
 import com.zan.csgo.model.dto.PriceFetchResultDTO;
+import com.zan.csgo.model.dto.PriceSaveTaskDTO;
+import com.zan.csgo.model.dto.TaskBatchDTO;
 import com.zan.csgo.model.entity.SkinItemEntity;
-import com.zan.csgo.model.entity.SkinPriceHistoryEntity;
-import com.zan.csgo.service.INotificationService;
 import com.zan.csgo.service.ISkinItemService;
-import com.zan.csgo.service.ISkinPriceHistoryService;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @Author Zan
@@ -51,110 +67,422 @@ public class TaskWorker {
     private ISkinItemService skinItemService;
 
     @Resource
-    private ISkinPriceHistoryService priceHistoryService;
+    private BuffStrategy buffStrategy;
 
     @Resource
-    private SkinPriceHistoryMapper skinPriceHistoryMapper;
+    private YoupinStrategy youpinStrategy;
 
     @Resource
-    private BuffStrategy buffStrategy;
+    private SteamStrategy steamStrategy;
+
+    // BLPOP 的 Key 顺序即优先级：热 -> 普 -> 冷
+    private static final byte[][] LANE_KEY_BYTES = Stream.of(RedisKeyConstant.QUEUE_HOT, RedisKeyConstant.QUEUE_COMMON, RedisKeyConstant.QUEUE_COLD)
+            .map(key -> key.getBytes(StandardCharsets.UTF_8))
+            .toArray(byte[][]::new);
 
     @Resource
-    private YoupinStrategy youpinStrategy;
+    private TaskQueueManager taskQueueManager;
 
     @Resource
-    private SteamStrategy steamStrategy;
+    private PriceHistoryWriter priceHistoryWriter;
+
+    @Resource
+    private AdaptiveBatchController adaptiveBatchController;
+
+    @Resource
+    private PlatformIdResolver platformIdResolver;
+
+    @Resource
+    private TaskScheduleManager taskScheduleManager;
+
+    @Resource
+    private RefreshIntervalEngine refreshIntervalEngine;
 
     @Resource
-    private INotificationService notificationService;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Resource(name = "workerExecutor")
+    private SimpleAsyncTaskExecutor workerExecutor;
+
+    @Value("${csgo.worker.concurrency:5}")
+    private int concurrency; // 消费者数量 (即同时在途的批次上限)
+
+    @Value("${csgo.worker.breaker-retry-min-ms:30000}")
+    private long breakerRetryMinMs; // 赛道/可靠模式下因平台熔断失败的任务至少延后多久回赛道 (半开名额占满时没有剩余冷却时间)
+
+    // 运行标记：停机时置为 false，消费者处理完当前批次后退出
+    private volatile boolean running;
+
+    // 存活的消费者数量
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+
+    // 正在处理中的批次数量
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+
+    // 累计处理完成的批次数量
+    private final AtomicLong finishedBatches = new AtomicLong();
+
+    @Resource(name = "platformExecutor")
+    private SimpleAsyncTaskExecutor platformExecutor;
+
+    @Value("${csgo.worker.platform-timeout.buff-ms:120000}")
+    private long buffTimeoutMs; // Buff 单批次超时
 
-    // 每次处理的批量大小（BUFF）
-    private static final int BATCH_SIZE = 80;
+    @Value("${csgo.worker.platform-timeout.youpin-ms:120000}")
+    private long youpinTimeoutMs; // 悠悠 单批次超时
 
-    @Value("${csgo.notification.min-price:50}")
-    private BigDecimal minNotifyPrice; // 最低报警金额 (默认50)
+    @Value("${csgo.worker.platform-timeout.steam-ms:480000}")
+    private long steamTimeoutMs; // Steam 单批次超时 (逐个请求 + 防封休眠，给得最长)
 
-    @Value("${csgo.notification.fluctuation-limit:0.05}")
-    private BigDecimal fluctuationLimit; // 波动阈值 (默认5%)
+    @Value("${csgo.worker.blocking-pop:true}")
+    private boolean blockingPop; // 是否使用阻塞弹出 (BLPOP)
+
+    @Value("${csgo.worker.block-timeout-seconds:5}")
+    private int blockTimeoutSeconds; // 阻塞等待超时 (秒)，需小于 Redis 命令超时
 
     /**
      * 启动后自动运行消费者线程
      */
     @PostConstruct
     public void startWorker() {
-        for (int i = 1; i <= 5; i++) {
-            new Thread(this::runConsumer, "Batch-Worker-" + i).start();
+        running = true;
+        // 工人ID：主机名:进程号-序号，可靠模式下用于区分各自的处理中列表与租约
+        String nodeId = NetUtil.getLocalHostName() + ":" + RuntimeUtil.getPid();
+        for (int i = 1; i <= concurrency; i++) {
+            String workerId = nodeId + "-" + i;
+            workerExecutor.execute(() -> runConsumer(workerId));
         }
+        log.info("👷 [工人] 已派出 {} 个消费者 (队列模式: {})", concurrency, taskQueueManager.getQueueMode().getDesc());
     }
 
-    private void runConsumer() {
-        log.info("👷 [工人] 已就位，准备开始搬砖...");
+    /**
+     * 容器关闭时通知所有消费者退出循环
+     * 正在处理的批次会跑完，执行器 close() 时等待其结束
+     */
+    @PreDestroy
+    public void stopWorker() {
+        running = false;
+        log.info("👷 [工人] 收到停机信号，在途批次: {}", inFlightBatches.get());
+    }
 
-        while (true) {
-            try {
-                List<String> idStrList;
-                String sourceQueue;
+    /**
+     * 工人运行状态快照
+     */
+    public Map<String, Object> getWorkerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running);
+        stats.put("queueMode", taskQueueManager.getQueueMode());
+        stats.put("concurrency", concurrency);
+        stats.put("liveWorkers", liveWorkers.get());
+        stats.put("inFlightBatches", inFlightBatches.get());
+        stats.put("finishedBatches", finishedBatches.get());
+        return stats;
+    }
 
-                // --- 1. 优先级获取任务 (热 -> 普 -> 冷) ---
-                idStrList = stringRedisTemplate.opsForList().leftPop(RedisKeyConstant.QUEUE_HOT, BATCH_SIZE);
-                sourceQueue = SkinPriorityEnum.HOT.getDesc();
+    private void runConsumer(String workerId) {
+        liveWorkers.incrementAndGet();
+        log.info("👷 [工人 {}] 已就位，准备开始搬砖...", workerId);
 
-                if (CollectionUtil.isEmpty(idStrList)) {
-                    idStrList = stringRedisTemplate.opsForList().leftPop(RedisKeyConstant.QUEUE_COMMON, BATCH_SIZE);
-                    sourceQueue = SkinPriorityEnum.COMMON.getDesc();
-                }
+        try {
+            while (running) {
+                consumeOnce(workerId);
+            }
+        } finally {
+            liveWorkers.decrementAndGet();
+            log.info("👷 [工人] 已下班");
+        }
+    }
 
-                if (CollectionUtil.isEmpty(idStrList)) {
-                    idStrList = stringRedisTemplate.opsForList().leftPop(RedisKeyConstant.QUEUE_COLD, BATCH_SIZE);
-                    sourceQueue = SkinPriorityEnum.ICE.getDesc();
-                }
+    /**
+     * 领取并处理一个批次
+     */
+    private void consumeOnce(String workerId) {
+        try {
+            // --- 1. 优先级获取任务 (热 -> 普 -> 冷) ---
+            QueueModeEnum queueMode = taskQueueManager.getQueueMode();
+            TaskBatchDTO batch;
+            if (QueueModeEnum.SCHEDULE.equals(queueMode)) {
+                batch = taskScheduleManager.claimDue(adaptiveBatchController.claimSize(), blockTimeoutSeconds * 1000L);
+            } else if (QueueModeEnum.RELIABLE.equals(queueMode)) {
+                batch = taskQueueManager.claim(workerId, adaptiveBatchController.claimSize(), blockTimeoutSeconds);
+            } else {
+                batch = blockingPop ? blockingPopBatch() : pollBatch();
+            }
 
-                // 如果所有队列都空了，休息一会儿
-                if (CollectionUtil.isEmpty(idStrList)) {
+            if (batch == null || CollectionUtil.isEmpty(batch.getIdList())) {
+                // 阻塞/可靠/调度模式下已经在 Redis 上等过了，直接进入下一轮；轮询模式下休息一会儿
+                if (QueueModeEnum.LANE.equals(queueMode) && !blockingPop) {
                     ThreadUtil.sleep(5000);
-                    continue;
                 }
+                return;
+            }
 
-                log.info("👷 [工人] 抢到 {} 个[{}]任务", idStrList.size(), sourceQueue);
+            inFlightBatches.incrementAndGet();
+            boolean settled = false;
+            try {
+                processBatch(workerId, batch);
+                settled = true;
+            } finally {
+                if (!settled) {
+                    releaseBatch(workerId, batch);
+                }
+                inFlightBatches.decrementAndGet();
+                finishedBatches.incrementAndGet();
+            }
 
-                // --- 2. 准备数据 ---
-                List<Long> dbIds = idStrList.stream().map(Long::parseLong).collect(Collectors.toList());
-                // 批量查询数据库实体 (我们需要用它里面的 BuffId 和 YoupinId)
-                List<SkinItemEntity> items = skinItemService.listByIds(dbIds);
+        } catch (Exception e) {
+            log.error("❌ [工人] 发生意外", e);
+            ThreadUtil.sleep(5000);
+        }
+    }
 
-                if (CollectionUtil.isEmpty(items)) {
-                    log.warn("⚠️ ID对应的数据库记录不存在，跳过");
-                    continue;
-                }
+    /**
+     * 处理一个批次：查实体 -> 多平台抓取 -> 结算
+     */
+    private void processBatch(String workerId, TaskBatchDTO batch) {
+        List<String> idStrList = batch.getIdList();
+        log.info("👷 [工人] 抢到 {} 个[{}]任务", idStrList.size(), batch.getSourceDesc());
+
+        // --- 2. 准备数据 ---
+        List<Long> dbIds = idStrList.stream().map(Long::parseLong).collect(Collectors.toList());
+        // 批量获取饰品 (我们需要用它里面的 BuffId 和 YoupinId)，优先走本地缓存，未命中才查库
+        List<SkinItemEntity> items = skinItemService.listFetchItemsByIds(dbIds);
+        // 因平台熔断延后回来的饰品，只补抓上次失败的平台 (调度模式不延后，不需要查)
+        Map<Long, Set<PlatformEnum>> pendingMap = isScheduled() ? new HashMap<>() : taskQueueManager.pendingPlatforms(idStrList);
+
+        Map<Long, Set<PlatformEnum>> failedMap = new HashMap<>();
+        if (CollectionUtil.isEmpty(items)) {
+            // 数据库里已经没有的 ID，直接确认丢弃
+            log.warn("⚠️ ID对应的数据库记录不存在，跳过");
+        } else {
+            // --- 3. 执行 监听 任务 ---
+            failedMap = processPlatformBatch(workerId, items, pendingMap);
+        }
+
+        // --- 4. 结算 ---
+        settleBatch(workerId, batch, items, failedMap, pendingMap);
+    }
+
+    /**
+     * 批次结算
+     * 调度模式：成功的按等级重新排期，失败的短延迟后重试 (保持原等级，有平台熔断时延后到冷却结束)
+     * 可靠模式：成功的逐个确认，只有失败的 ID 回到原赛道
+     * 普通模式：失败的 ID 回滚至冷门队列
+     * 后两种模式下，失败平台里有熔断中的饰品先进延后队列，冷却结束再回赛道，回来后只补抓失败的平台
+     */
+    private void settleBatch(String workerId, TaskBatchDTO batch, List<SkinItemEntity> items,
+                             Map<Long, Set<PlatformEnum>> failedMap, Map<Long, Set<PlatformEnum>> pendingMap) {
+        QueueModeEnum queueMode = taskQueueManager.getQueueMode();
+        if (QueueModeEnum.SCHEDULE.equals(queueMode)) {
+            rescheduleBatch(batch, items, failedMap.keySet());
+            return;
+        }
 
-                // --- 3. 执行 监听 任务 ---
-                processPlatformBatch(items);
+        List<String> ackIds = new ArrayList<>();
+        List<String> nackIds = new ArrayList<>();
+        Map<String, Set<PlatformEnum>> delayedMap = new HashMap<>();
+        long breakerDelayMs = 0;
+        for (String idStr : batch.getIdList()) {
+            Set<PlatformEnum> failedPlatforms = failedMap.get(Long.parseLong(idStr));
+            if (failedPlatforms == null) {
+                ackIds.add(idStr);
+                continue;
+            }
+            long delayMs = breakerDelayMs(failedPlatforms);
+            if (delayMs > 0) {
+                delayedMap.put(idStr, failedPlatforms);
+                breakerDelayMs = Math.max(breakerDelayMs, delayMs);
+            } else {
+                nackIds.add(idStr);
+            }
+        }
 
-                // --- 4. 批次间休息 ---
-                long sleep = RandomUtil.randomLong(2000, 5000);
-                log.info("💤 本批次结束，休息 {}ms...", sleep);
-                ThreadUtil.sleep(sleep);
+        // 补抓完成 (或饰品已不存在) 的清掉记录；延后的记下这次失败的平台，回来后只补抓这些
+        taskQueueManager.clearPendingPlatforms(ackIds.stream()
+                .filter(idStr -> pendingMap.containsKey(Long.parseLong(idStr)))
+                .toList());
+        taskQueueManager.markPendingPlatforms(delayedMap);
+        long dueTime = System.currentTimeMillis() + breakerDelayMs;
+
+        if (QueueModeEnum.LANE.equals(queueMode)) {
+            rollbackToCold(nackIds);
+            taskQueueManager.delay(RedisKeyConstant.QUEUE_COLD, delayedMap.keySet(), dueTime);
+        } else {
+            long requeued = taskQueueManager.complete(workerId, ackIds, nackIds, delayedMap.keySet(), dueTime);
+            if (requeued > 0) {
+                log.warn("♻️ [补偿机制] 确认 {} 个，{} 个失败任务已放回[{}]赛道", ackIds.size(), requeued, batch.getSourceDesc());
+            }
+        }
+        if (!delayedMap.isEmpty()) {
+            log.warn("♻️ [补偿机制] {} 个任务因平台熔断延后 {}ms 回赛道，届时只补抓失败的平台", delayedMap.size(), breakerDelayMs);
+        }
+    }
 
-            } catch (Exception e) {
-                log.error("❌ [工人] 发生意外", e);
-                ThreadUtil.sleep(5000);
+    /**
+     * 失败的平台里有熔断中的：延后到最晚冷却结束的那个平台，至少 breakerRetryMinMs；都没熔断返回 0 (立即放回)
+     */
+    private long breakerDelayMs(Set<PlatformEnum> failedPlatforms) {
+        long delayMs = 0;
+        for (PlatformEnum platformEnum : failedPlatforms) {
+            if (circuitBreakerRegistry.isPlatformOpen(platformEnum)) {
+                delayMs = Math.max(delayMs, Math.max(circuitBreakerRegistry.remainingOpenMs(platformEnum), breakerRetryMinMs));
             }
         }
+        return delayMs;
+    }
+
+    /**
+     * 批次处理中途异常、没能正常结算时兜底：可靠模式下把还没确认的 ID 全部放回原赛道
+     * (工人一直在领新任务，租约会被不断续上，不放回的话这些 ID 永远留在处理中 Hash 里)；
+     * 调度模式下领取时已推后到期时间，租约一过自然会再被领到，不需要处理
+     */
+    private void releaseBatch(String workerId, TaskBatchDTO batch) {
+        if (!isReliable()) {
+            return;
+        }
+        try {
+            long requeued = taskQueueManager.complete(workerId, List.of(), batch.getIdList());
+            log.warn("♻️ [补偿机制] 批次处理异常，{} 个未确认任务已放回[{}]赛道", requeued, batch.getSourceDesc());
+        } catch (Exception e) {
+            log.error("❌ [工人] 异常批次放回失败，等待租约过期后回收", e);
+        }
+    }
+
+    /**
+     * 调度模式结算：每个饰品按自己的等级重新排期
+     */
+    private void rescheduleBatch(TaskBatchDTO batch, List<SkinItemEntity> items, Set<Long> failedIds) {
+        Map<Long, SkinItemEntity> entityMap = CollectionUtil.isEmpty(items) ? new HashMap<>()
+                : items.stream().collect(Collectors.toMap(SkinItemEntity::getId, item -> item, (v1, v2) -> v1));
+
+        // 成功的饰品：等级间隔兜底，有价格变化数据的用自适应间隔
+        Map<Long, Long> tierIntervalMap = new HashMap<>();
+        entityMap.forEach((id, entity) -> {
+            if (!failedIds.contains(id)) {
+                tierIntervalMap.put(id, taskScheduleManager.getTierIntervalMs(entity.getSkinPriority()));
+            }
+        });
+        Map<Long, Long> intervalMap = refreshIntervalEngine.resolveIntervals(tierIntervalMap);
+
+        // 每个饰品都要抓三个平台，有平台在熔断时提前重试只会再次直接失败，等冷却结束再出队
+        long breakerDelayMs = circuitBreakerRegistry.maxRemainingOpenMs();
+
+        Map<String, Long> dueTimeMap = new HashMap<>();
+        List<String> removedIds = new ArrayList<>();
+        for (String idStr : batch.getIdList()) {
+            Long id = Long.parseLong(idStr);
+            SkinItemEntity entity = entityMap.get(id);
+            if (entity == null) {
+                // 数据库里已经没有了，移出调度表
+                removedIds.add(idStr);
+            } else if (failedIds.contains(id)) {
+                dueTimeMap.put(idStr, taskScheduleManager.retryDueTime(breakerDelayMs));
+            } else {
+                dueTimeMap.put(idStr, taskScheduleManager.dueTimeAfter(intervalMap.get(id)));
+            }
+        }
+
+        taskScheduleManager.reschedule(dueTimeMap);
+        taskScheduleManager.remove(removedIds);
+        if (CollectionUtil.isNotEmpty(failedIds)) {
+            if (breakerDelayMs > 0) {
+                log.warn("♻️ [补偿机制] {} 个失败任务将在平台熔断冷却后重试 ({}ms)", failedIds.size(), breakerDelayMs);
+            } else {
+                log.warn("♻️ [补偿机制] {} 个失败任务将在短延迟后重试", failedIds.size());
+            }
+        }
+    }
+
+    private boolean isReliable() {
+        return QueueModeEnum.RELIABLE.equals(taskQueueManager.getQueueMode());
+    }
+
+    private boolean isScheduled() {
+        return QueueModeEnum.SCHEDULE.equals(taskQueueManager.getQueueMode());
+    }
+
+    /**
+     * 阻塞模式：一次 BLPOP 同时监听三条赛道
+     * BLPOP 按 Key 的顺序检查，天然就是 热 -> 普 -> 冷 的优先级，且整个判断在 Redis 内部原子完成
+     * 队列全空时连接挂起等待，新任务入队后立刻唤醒，空闲时不再产生任何轮询流量
+     */
+    private TaskBatchDTO blockingPopBatch() {
+        List<byte[]> popped = stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.listCommands().bLPop(blockTimeoutSeconds, LANE_KEY_BYTES));
+
+        // 超时返回空，格式为 [队列Key, 元素]
+        if (CollectionUtil.isEmpty(popped) || popped.size() < 2) {
+            return null;
+        }
+
+        String queueKey = new String(popped.get(0), StandardCharsets.UTF_8);
+        int batchSize = adaptiveBatchController.claimSize();
+        List<String> idStrList = new ArrayList<>(batchSize);
+        idStrList.add(new String(popped.get(1), StandardCharsets.UTF_8));
+
+        // 已经确定了最高优先级的非空赛道，再从同一赛道非阻塞地凑满一批 (LPOP count)
+        List<String> rest = stringRedisTemplate.opsForList().leftPop(queueKey, batchSize - 1);
+        if (CollectionUtil.isNotEmpty(rest)) {
+            idStrList.addAll(rest);
+        }
+
+        return TaskBatchDTO.builder()
+                .queueKey(queueKey)
+                .sourceDesc(taskQueueManager.getLaneDescMap().getOrDefault(queueKey, queueKey))
+                .idList(idStrList)
+                .build();
+    }
+
+    /**
+     * 轮询模式 (旧逻辑)：依次 LPOP 三条赛道
+     */
+    private TaskBatchDTO pollBatch() {
+        int batchSize = adaptiveBatchController.claimSize();
+        for (Map.Entry<String, String> lane : taskQueueManager.getLaneDescMap().entrySet()) {
+            List<String> idStrList = stringRedisTemplate.opsForList().leftPop(lane.getKey(), batchSize);
+            if (CollectionUtil.isNotEmpty(idStrList)) {
+                return TaskBatchDTO.builder()
+                        .queueKey(lane.getKey())
+                        .sourceDesc(lane.getValue())
+                        .idList(idStrList)
+                        .build();
+            }
+        }
+        return null;
     }
 
     /**
      * 处理多平台批量请求
+     *
+     * @param pendingMap 只需补抓部分平台的饰品 (数据库ID -> 要抓的平台)，不在其中的饰品三个平台都抓
+     * @return 抓取失败的饰品 数据库ID -> 失败的平台
      */
-    private void processPlatformBatch(List<SkinItemEntity> items) {
+    private Map<Long, Set<PlatformEnum>> processPlatformBatch(String workerId, List<SkinItemEntity> items, Map<Long, Set<PlatformEnum>> pendingMap) {
+        // 各平台并发写入，使用线程安全的集合
+        Map<Long, Set<PlatformEnum>> failedMap = new ConcurrentHashMap<>();
+        if (!pendingMap.isEmpty()) {
+            log.info("♻️ [补偿机制] 本批次 {} 个饰品只补抓上次熔断的平台", pendingMap.size());
+        }
+        List<SkinItemEntity> buffItems = pendingItems(items, PlatformEnum.BUFF, pendingMap);
+        List<SkinItemEntity> youpinItems = pendingItems(items, PlatformEnum.YOUPIN, pendingMap);
+        List<SkinItemEntity> steamItems = pendingItems(items, PlatformEnum.STEAM, pendingMap);
+
         // 1. 提取 Buff ID 列表 (过滤掉空值)
-        List<String> buffIds = items.stream()
+        List<String> buffIds = buffItems.stream()
                 .map(SkinItemEntity::getBuffGoodsId)
                 .filter(id -> id != null && id > 0)
                 .map(String::valueOf)
                 .collect(Collectors.toList());
 
+        // 没有 Buff ID 的饰品交给后台批量解析，解析到后回填入库，下一轮就能按 ID 抓取
+        platformIdResolver.submit(PlatformEnum.BUFF, items.stream()
+                .filter(item -> item.getBuffGoodsId() == null || item.getBuffGoodsId() <= 0)
+                .map(SkinItemEntity::getSkinMarketHashName)
+                .filter(StrUtil::isNotBlank)
+                .toList());
+
         // 2. 提取 悠悠 ID 列表
-        List<String> youpinIds = items.stream()
+        List<String> youpinIds = youpinItems.stream()
                 .map(SkinItemEntity::getYoupinId)
                 .filter(id -> id != null && id > 0)
                 .map(String::valueOf)
@@ -162,184 +490,253 @@ public class TaskWorker {
 
 
         // 3. 提取 Steam Name 列表
-        List<String> steamMarketHashNameList = items.stream()
+        List<String> steamMarketHashNameList = steamItems.stream()
                 .map(SkinItemEntity::getSkinMarketHashName)
                 .filter(StrUtil::isNotBlank)
                 .toList();
 
-        // --- 执行 Buff 抓取 ---
-        if (CollectionUtil.isNotEmpty(buffIds)) {
-            try {
-                // 批量抓取
-                List<PriceFetchResultDTO> results = buffStrategy.batchFetchPrices(buffIds);
-                processResultsAndSave(items, results, PlatformEnum.BUFF);
-            } catch (BusinessException e) {
-                handleRollback(items, PlatformEnum.BUFF);
-            } catch (Exception e) {
-                log.error("❌ [Buff] 批量抓取失败", e);
-            }
+        // 长批次续约，防止处理中途被回收器判定为死亡
+        if (isReliable()) {
+            taskQueueManager.renewLease(workerId);
         }
 
-        // --- 执行 悠悠 抓取 ---
-        if (CollectionUtil.isNotEmpty(youpinIds)) {
-            try {
-                List<PriceFetchResultDTO> results = youpinStrategy.batchFetchPrices(youpinIds);
-                processResultsAndSave(items, results, PlatformEnum.YOUPIN);
-            } catch (BusinessException e) {
-                handleRollback(items, PlatformEnum.YOUPIN);
-            } catch (Exception e) {
-                log.error("❌ [悠悠] 批量抓取失败", e);
-            }
+        // --- 三个平台并发抓取：批次耗时 ≈ 最慢的那个平台，而不是三者之和 ---
+        long start = System.currentTimeMillis();
+        CompletableFuture<Void> buffLeg = fetchPlatformAsync(buffStrategy, PlatformEnum.BUFF, buffIds, buffItems, failedMap, buffTimeoutMs);
+        CompletableFuture<Void> youpinLeg = fetchPlatformAsync(youpinStrategy, PlatformEnum.YOUPIN, youpinIds, youpinItems, failedMap, youpinTimeoutMs);
+        CompletableFuture<Void> steamLeg = fetchPlatformAsync(steamStrategy, PlatformEnum.STEAM, steamMarketHashNameList, steamItems, failedMap, steamTimeoutMs);
+
+        // 每个平台各自兜底了异常和超时，这里只是等它们都结束
+        CompletableFuture.allOf(buffLeg, youpinLeg, steamLeg).join();
+        log.info("⏱️ [工人] 本批次三平台抓取耗时 {}ms", System.currentTimeMillis() - start);
+
+        return failedMap;
+    }
+
+    /**
+     * 本批次要在该平台上抓的饰品：没有补抓记录的全部要抓，有记录的只抓记录里的平台
+     */
+    private List<SkinItemEntity> pendingItems(List<SkinItemEntity> items, PlatformEnum platformEnum, Map<Long, Set<PlatformEnum>> pendingMap) {
+        if (pendingMap.isEmpty()) {
+            return items;
         }
+        return items.stream()
+                .filter(item -> !pendingMap.containsKey(item.getId()) || pendingMap.get(item.getId()).contains(platformEnum))
+                .toList();
+    }
 
-        // --- 执行Steam 抓取 ---
-        if (CollectionUtil.isNotEmpty(steamMarketHashNameList)) {
-            try {
-                List<PriceFetchResultDTO> results = steamStrategy.batchFetchPrices(steamMarketHashNameList);
-                processResultsAndSave(items, results, PlatformEnum.STEAM);
-            } catch (BusinessException e) {
-                handleRollback(items, PlatformEnum.STEAM);
-            } catch (Exception e) {
-                log.error("❌ [Steam] 批量抓取失败", e);
-            }
+    /**
+     * 把饰品记为在该平台上失败
+     */
+    private void markFailed(Map<Long, Set<PlatformEnum>> failedMap, List<Long> ids, PlatformEnum platformEnum) {
+        for (Long id : ids) {
+            failedMap.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(platformEnum);
         }
     }
 
     /**
-     * 纯计算与通知逻辑
+     * 单个平台的批量抓取 + 入库 (异步)，失败的饰品记入 failedMap
+     * 每个平台独立超时、独立兜底异常，一个平台出问题不影响其他平台；哪个平台先回来就先入库
+     * 平台熔断中时不发任何请求，该平台的饰品直接记为失败
      */
-    private void checkAndNotify(SkinItemEntity item, String platform, BigDecimal oldPrice, BigDecimal currentPrice) {
-        // 防止除以0
-        if (oldPrice.compareTo(BigDecimal.ZERO) == 0) {
-            return;
+    private CompletableFuture<Void> fetchPlatformAsync(MarketStrategy strategy, PlatformEnum platformEnum, List<String> keys,
+                                                       List<SkinItemEntity> items, Map<Long, Set<PlatformEnum>> failedMap, long timeoutMs) {
+        if (CollectionUtil.isEmpty(keys)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // 只查询不占试探名额，半开时的名额由真正发出的请求去拿
+        if (circuitBreakerRegistry.isPlatformOpen(platformEnum)) {
+            log.warn("🔴 [{}] 平台熔断中，本批次 {} 个饰品直接失败", platformEnum.getName(), keys.size());
+            markFailed(failedMap, platformItemIds(items, platformEnum), platformEnum);
+            return CompletableFuture.completedFuture(null);
         }
 
-        BigDecimal diff = currentPrice.subtract(oldPrice);
-        BigDecimal rate = diff.divide(oldPrice, 4, RoundingMode.HALF_UP);
-        BigDecimal percent = rate.multiply(new BigDecimal(100));
+        // 抓取全程异步 (等待令牌、等待响应都不占线程)，结果处理切回平台线程池，不占用 HTTP 的 IO 线程
+        // orTimeout 只是不再等结果，后台的请求链要靠截止时间自己停下，否则补偿重抓时同一批饰品会被抓两遍
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        return fetchInChunksAsync(strategy, platformEnum, keys, 0, new ArrayList<>(keys.size()), deadline)
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .handleAsync((results, ex) -> {
+                    if (ex == null) {
+                        try {
+                            processResultsAndSave(items, results, platformEnum);
+                            recordVolatility(items, results, platformEnum);
+                            markFailed(failedMap, collectFailedIds(items, results, platformEnum), platformEnum);
+                        } catch (Exception e) {
+                            log.error("❌ [{}] 结果处理失败", platformEnum.getName(), e);
+                            markFailed(failedMap, platformItemIds(items, platformEnum), platformEnum);
+                        }
+                        return null;
+                    }
 
-        // 比较波动绝对值是否超过阈值 (例如 5%)
-        if (rate.abs().compareTo(fluctuationLimit) >= 0) {
-            String rateStr = (percent.doubleValue() > 0 ? "+" : "") + percent.setScale(2, RoundingMode.HALF_UP) + "%";
+                    Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+                    if (cause instanceof BusinessException) {
+                        log.warn("♻️ [补偿机制] {} 批量全部失败: {}", platformEnum.getName(), cause.getMessage());
+                    } else if (cause instanceof TimeoutException) {
+                        adaptiveBatchController.onFailure(platformEnum, "整体超时");
+                        log.warn("⏱️ [{}] 批量抓取超时 ({}ms)，本批次该平台视为失败", platformEnum.getName(), timeoutMs);
+                    } else {
+                        log.error("❌ [{}] 批量抓取失败", platformEnum.getName(), cause);
+                    }
+                    markFailed(failedMap, platformItemIds(items, platformEnum), platformEnum);
+                    return null;
+                }, platformExecutor);
+    }
 
-            log.warn("🚨 [价格预警] {} ({}) : {} -> {}", item.getSkinName(), platform, oldPrice, currentPrice);
+    /**
+     * 按平台当前的批量大小切分请求，每一小批的结果反馈给批量调节器
+     * 每切一批都重新读取批量大小，收缩能立刻在本次剩余的请求上生效；某一小批失败只影响这一小批
+     * 过了截止时间不再发下一小批 (上层已按超时整批补偿)
+     */
+    private CompletableFuture<List<PriceFetchResultDTO>> fetchInChunksAsync(MarketStrategy strategy, PlatformEnum platformEnum, List<String> keys,
+                                                                          int offset, List<PriceFetchResultDTO> results, long deadline) {
+        if (offset >= keys.size() || MarketStrategy.isExpired(deadline)) {
+            return CompletableFuture.completedFuture(results);
+        }
+        int size = adaptiveBatchController.currentSize(platformEnum);
+        List<String> chunk = keys.subList(offset, Math.min(offset + size, keys.size()));
+
+        long start = System.currentTimeMillis();
+        return strategy.batchFetchPricesAsync(chunk, deadline)
+                .handle((chunkResults, ex) -> {
+                    if (ex == null) {
+                        results.addAll(chunkResults);
+                        adaptiveBatchController.onSuccess(platformEnum, System.currentTimeMillis() - start, chunk.size());
+                        return results;
+                    }
+                    Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+                    if (!(cause instanceof BusinessException)) {
+                        throw new CompletionException(cause);
+                    }
+                    // 因截止时间放弃的小批由上层按整体超时记一次，这里不重复收缩
+                    if (!MarketStrategy.isExpired(deadline)) {
+                        adaptiveBatchController.onFailure(platformEnum, cause.getMessage());
+                    }
+                    log.warn("♻️ [补偿机制] {} 本小批 {} 个全部失败: {}", platformEnum.getName(), chunk.size(), cause.getMessage());
+                    // 带上平台 Key 回传失败，让上层只补偿这一小批
+                    for (String key : chunk) {
+                        PriceFetchResultDTO dto = PriceFetchResultDTO.fail(strategy.getPlatformName(), cause.getMessage());
+                        dto.setTargetId(key);
+                        results.add(dto);
+                    }
+                    return results;
+                })
+                // 上一小批结束后再发下一小批 (依旧每批重新读取批量大小)
+                .thenCompose(r -> fetchInChunksAsync(strategy, platformEnum, keys, offset + chunk.size(), r, deadline));
+    }
+
+    /**
+     * 把成功结果喂给自适应间隔引擎 (调度模式下才有意义)
+     */
+    private void recordVolatility(List<SkinItemEntity> items, List<PriceFetchResultDTO> results, PlatformEnum platformEnum) {
+        if (!QueueModeEnum.SCHEDULE.equals(taskQueueManager.getQueueMode()) || CollectionUtil.isEmpty(results)) {
+            return;
+        }
+        Map<String, SkinItemEntity> map = buildPlatformKeyMap(items, platformEnum);
+        Map<Long, PriceFetchResultDTO> resultMap = new HashMap<>();
+        for (PriceFetchResultDTO dto : results) {
+            SkinItemEntity entity = map.get(String.valueOf(dto.getTargetId()));
+            if (dto.isSuccess() && entity != null) {
+                resultMap.put(entity.getId(), dto);
+            }
+        }
+        refreshIntervalEngine.record(platformEnum, resultMap);
+    }
 
-            // 发送通知
-            notificationService.sendPriceAlert(
-                    item.getSkinName(),
-                    platform,
-                    oldPrice,
-                    currentPrice,
-                    rateStr
-            );
+    /**
+     * 回滚逻辑 (普通模式)：将失败的 DB ID 推回冷门队列
+     */
+    private void rollbackToCold(List<String> rollbackIds) {
+        if (CollectionUtil.isEmpty(rollbackIds)) {
+            return;
         }
+        log.warn("♻️ [补偿机制] {} 个ID已回滚至冷门队列", rollbackIds.size());
+        taskQueueManager.push(RedisKeyConstant.QUEUE_COLD, rollbackIds);
     }
 
     /**
-     * 回滚逻辑：将失败的 DB ID 推回冷门队列
+     * 筛选出该平台涉及到的 数据库ID
      */
-    private void handleRollback(List<SkinItemEntity> items, PlatformEnum platformEnum) {
-        log.warn("♻️ [补偿机制] {} 批量部分失败，准备回滚...", platformEnum.getName());
-        // 筛选出该平台涉及到的 数据库ID
-        List<String> rollbackIds = items.stream()
-                .filter(item -> {
-                    if (PlatformEnum.BUFF.equals(platformEnum)) {
-                        return item.getBuffGoodsId() != null && item.getBuffGoodsId() > 0;
-                    } else if (PlatformEnum.YOUPIN.equals(platformEnum)) {
-                        return item.getYoupinId() != null && item.getYoupinId() > 0;
-                    } else if (PlatformEnum.STEAM.equals(platformEnum)) {
-                        return StrUtil.isNotBlank(item.getSkinMarketHashName());
-                    }
-                    return false;
-                })
-                .map(i -> String.valueOf(i.getId()))
+    private List<Long> platformItemIds(List<SkinItemEntity> items, PlatformEnum platformEnum) {
+        return items.stream()
+                .filter(item -> StrUtil.isNotBlank(platformKey(item, platformEnum)))
+                .map(SkinItemEntity::getId)
                 .collect(Collectors.toList());
+    }
 
-        if (CollectionUtil.isNotEmpty(rollbackIds)) {
-            log.warn("♻️ [补偿机制] {} 批量全部失败，{} 个ID已回滚至冷门队列", platformEnum.getName(), rollbackIds.size());
-            stringRedisTemplate.opsForList().rightPushAll(RedisKeyConstant.QUEUE_COLD, rollbackIds);
+    /**
+     * 从抓取结果中找出单个失败的饰品 (平台返回了失败结果的)
+     */
+    private List<Long> collectFailedIds(List<SkinItemEntity> items, List<PriceFetchResultDTO> results, PlatformEnum platformEnum) {
+        if (CollectionUtil.isEmpty(results)) {
+            return new ArrayList<>();
         }
+        Map<String, SkinItemEntity> map = buildPlatformKeyMap(items, platformEnum);
+        return results.stream()
+                .filter(dto -> !dto.isSuccess() && dto.getTargetId() != null)
+                .map(dto -> map.get(String.valueOf(dto.getTargetId())))
+                .filter(Objects::nonNull)
+                .map(SkinItemEntity::getId)
+                .collect(Collectors.toList());
     }
 
     /**
-     * 核心流程：ID映射 -> 查旧价 -> 报警 -> 批量入库
+     * 饰品在该平台上的查询 Key：Buff/Youpin 用 ID，Steam 用 HashName，没有则返回 null
      */
-    private void processResultsAndSave(List<SkinItemEntity> items, List<PriceFetchResultDTO> results, PlatformEnum platformEnum) {
-        if (CollectionUtil.isEmpty(results)) {
-            return;
+    private String platformKey(SkinItemEntity item, PlatformEnum platformEnum) {
+        if (PlatformEnum.BUFF.equals(platformEnum)) {
+            return item.getBuffGoodsId() != null && item.getBuffGoodsId() > 0 ? String.valueOf(item.getBuffGoodsId()) : null;
+        } else if (PlatformEnum.YOUPIN.equals(platformEnum)) {
+            return item.getYoupinId() != null && item.getYoupinId() > 0 ? String.valueOf(item.getYoupinId()) : null;
+        } else if (PlatformEnum.STEAM.equals(platformEnum)) {
+            return StrUtil.isNotBlank(item.getSkinMarketHashName()) ? item.getSkinMarketHashName() : null;
         }
+        return null;
+    }
 
-        // 1. 构建映射 Map: 平台Key -> 数据库实体
-        // Buff/Youpin 用 ID 匹配，Steam 用 HashName 匹配
-        Map<String, SkinItemEntity> map = items.stream()
+    /**
+     * 构建映射 Map: 平台Key -> 数据库实体
+     */
+    private Map<String, SkinItemEntity> buildPlatformKeyMap(List<SkinItemEntity> items, PlatformEnum platformEnum) {
+        return items.stream()
+                .filter(item -> platformKey(item, platformEnum) != null)
                 .collect(Collectors.toMap(
-                        item -> {
-                            if (PlatformEnum.BUFF.equals(platformEnum)) return String.valueOf(item.getBuffGoodsId());
-                            if (PlatformEnum.YOUPIN.equals(platformEnum)) return String.valueOf(item.getYoupinId());
-                            if (PlatformEnum.STEAM.equals(platformEnum)) return item.getSkinMarketHashName(); // Steam Key
-                            return "";
-                        },
+                        item -> platformKey(item, platformEnum),
                         item -> item,
                         (v1, v2) -> v1
                 ));
+    }
 
-        // 2. 批量查旧价 (优化性能)
-        List<Long> successDbIds = new ArrayList<>();
-        for (PriceFetchResultDTO dto : results) {
-            SkinItemEntity entity = map.get(String.valueOf(dto.getTargetId()));
-            if (entity != null) successDbIds.add(entity.getId());
-        }
-
-        Map<Long, BigDecimal> oldPriceMap = new HashMap<>();
-        if (CollectionUtil.isNotEmpty(successDbIds)) {
-            // 需要在 Mapper 中实现 selectBatchLatestPrices
-            try {
-                List<SkinPriceHistoryEntity> oldHistoryList = skinPriceHistoryMapper.selectBatchLatestPrices(successDbIds, platformEnum.getName());
-                if (CollectionUtil.isNotEmpty(oldHistoryList)) {
-                    oldPriceMap = oldHistoryList.stream().collect(Collectors.toMap(SkinPriceHistoryEntity::getSkinId, SkinPriceHistoryEntity::getPrice));
-                }
-            } catch (Exception e) {
-                log.warn("查旧价失败，跳过报警检测");
-            }
+    /**
+     * 核心流程：ID映射 -> 交给入库线程 (查旧价 -> 报警 -> 批量入库)
+     */
+    private void processResultsAndSave(List<SkinItemEntity> items, List<PriceFetchResultDTO> results, PlatformEnum platformEnum) {
+        if (CollectionUtil.isEmpty(results)) {
+            return;
         }
 
-        List<SkinPriceHistoryEntity> entitiesToSave = new ArrayList<>();
+        // 1. 构建映射 Map: 平台Key -> 数据库实体
+        // Buff/Youpin 用 ID 匹配，Steam 用 HashName 匹配
+        Map<String, SkinItemEntity> map = buildPlatformKeyMap(items, platformEnum);
 
-        // 3. 遍历结果
+        // 2. 只处理抓取成功的结果 (失败的由上层结算)，转成待入库记录
+        LocalDateTime captureTime = LocalDateTime.now();
+        List<PriceSaveTaskDTO> tasks = new ArrayList<>();
         for (PriceFetchResultDTO dto : results) {
             SkinItemEntity entity = map.get(String.valueOf(dto.getTargetId()));
-
-            if (entity != null) {
-                // --- A. 价格预警检测 ---
-                BigDecimal currentPrice = dto.getPrice();
-                BigDecimal oldPrice = oldPriceMap.get(entity.getId());
-
-                // 只有当有旧价格，且当前价格大于阈值时，才进行波动检测
-                if (oldPrice != null && currentPrice.compareTo(minNotifyPrice) > 0) {
-                    checkAndNotify(entity, platformEnum.getName(), oldPrice, currentPrice);
-                }
-
-                // --- B. 准备入库实体 ---
-                SkinPriceHistoryEntity history = new SkinPriceHistoryEntity();
-                history.setSkinId(entity.getId()); // 关键：存的是数据库主键
-                history.setPlatform(platformEnum.getName()); // 存中文名
-                history.setPrice(currentPrice);
-                history.setVolume(dto.getVolume());
-                history.setCaptureTime(LocalDateTime.now());
-                history.setCreatedAt(LocalDateTime.now());
-
-                entitiesToSave.add(history);
+            if (dto.isSuccess() && entity != null) {
+                tasks.add(PriceSaveTaskDTO.builder()
+                        .skinId(entity.getId())
+                        .skinName(entity.getSkinName())
+                        .platform(platformEnum.getName())
+                        .price(dto.getPrice())
+                        .volume(dto.getVolume())
+                        .captureTime(captureTime)
+                        .build());
             }
         }
 
-        // 4 批量入库
-        if (CollectionUtil.isNotEmpty(entitiesToSave)) {
-            try {
-                priceHistoryService.saveBatch(entitiesToSave);
-                log.info("💾 [{}] 成功入库 {} 条", platformEnum.getName(), entitiesToSave.size());
-            } catch (Exception e) {
-                log.error("❌ [{}] 批量入库失败", platformEnum.getName(), e);
-            }
-        }
+        // 3. 交给入库线程 (查旧价、预警、批量插入都在那边做)，抓取线程不再等数据库
+        priceHistoryWriter.submit(tasks);
     }
-}
\ No newline at end of file
+}
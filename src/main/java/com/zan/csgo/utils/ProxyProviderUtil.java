@@ -1,85 +1,86 @@
 package com.zan.csgo.utils;
 
-import cn.hutool.core.util.RandomUtil;
-import cn.hutool.core.util.StrUtil;
-import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.crawler.proxy.ProxyRegistry;
+import com.zan.csgo.crawler.proxy.ProxyScoreBoard;
 import com.zan.csgo.enums.PlatformEnum;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.net.InetSocketAddress;
 import java.net.Proxy;
-import java.util.Set;
+import java.util.List;
 
 /**
  * @Author Zan
  * @Create 2026/1/8 10:00
  * @ClassName: ProxyProvider
  * @Description : 代理池提供者
- *                对接 Redis 中的 use_proxy 键
+ *                对接 Redis 中的代理池 Hash，读走本地镜像 (ProxyRegistry)，写同时更新 Redis 和镜像
  */
 @Component
 @Slf4j
 public class ProxyProviderUtil {
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private ProxyScoreBoard proxyScoreBoard;
+
+    @Resource
+    private ProxyRegistry proxyRegistry;
+
+    // 抽到的两个都在隔离中时最多重抽几次
+    private static final int MAX_PICK_TRIES = 5;
 
     /**
-     * 根据平台类型获取对应区域的代理
+     * 根据平台类型获取对应区域的代理 (读本地镜像，不再每次请求都查 Redis)
+     * 随机抽两个取评分高的 (power of two choices)：好代理被选中的概率更高，又不会所有请求都压到同一个上
      */
     public Proxy getRandomProxy(PlatformEnum platform) {
-        try {
-            // 1. 决定使用哪个代理池
-            String redisKey;
-            if (PlatformEnum.STEAM.equals(platform)) {
-                redisKey = RedisKeyConstant.PROXY_GLOBAL; // Steam -> 海外池
-            } else if (PlatformEnum.BUFF.equals(platform) || PlatformEnum.YOUPIN.equals(platform)) {
-                redisKey = RedisKeyConstant.PROXY_CN;     // Buff/悠悠 -> 国内池
-            } else {
-                redisKey = RedisKeyConstant.PROXY_CN;     // 默认，C5GAME/IGXE -> 国内池
-            }
+        // 1. 决定使用哪个代理池
+        String poolKey = ProxyRegistry.poolKeyOf(platform);
 
-            // 2. 从 Redis 获取所有代理
-            Set<Object> keys = stringRedisTemplate.opsForHash().keys(redisKey);
-            if (keys.isEmpty()) {
+        // 2. 抽两个比较，跳过隔离中的代理 (重抽几次都在隔离就用最后一个，不因此直连)
+        Proxy proxy = null;
+        for (int i = 0; i < MAX_PICK_TRIES; i++) {
+            proxy = proxyRegistry.pick(poolKey);
+            if (proxy == null) {
                 // 如果海外池没货，且是本地开发环境，可以返回 null 让它尝试直连 (走本地梯子)
                 log.warn("⚠️ [{}] 代理池为空", platform.getName());
                 return null;
             }
-
-            // 3. 随机取一个
-            int index = RandomUtil.randomInt(keys.size());
-            String proxyStr = (String) keys.toArray()[index];
-
-            if (StrUtil.isBlank(proxyStr)) {
-                return null;
+            Proxy chosen = proxyScoreBoard.choose(platform, proxy, proxyRegistry.pick(poolKey));
+            if (chosen != null) {
+                return chosen;
             }
+        }
+        return proxy;
+    }
 
-            String[] parts = proxyStr.split(":");
-            return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(parts[0], Integer.parseInt(parts[1])));
+    /**
+     * 获取平台对应代理池中的全部代理 (只读)
+     */
+    public List<Proxy> getProxies(PlatformEnum platform) {
+        return proxyRegistry.list(ProxyRegistry.poolKeyOf(platform));
+    }
 
-        } catch (Exception e) {
-            log.error("获取代理异常", e);
-            return null;
-        }
+    /**
+     * 新代理入池 (写 Redis 并同步到各节点的本地镜像)，按 deadline 建过期索引，到期前自动移出
+     *
+     * @param deadline 过期时间，原样存为 Hash 的 Value
+     * @return 已过期或快过期的代理不入池，返回 false
+     */
+    public boolean addProxy(String poolKey, String address, String deadline) {
+        return proxyRegistry.admit(poolKey, address, deadline);
     }
 
     /**
      * 移除失效代理 (需要判断是哪个池子的)
+     * 请求失败不要直接调用：失败交给熔断/评分记录，代理会先被隔离，连续隔离多次才会移出
      */
     public void removeBadProxy(Proxy proxy, PlatformEnum platform) {
-        if (proxy == null) return;
+        String address = ProxyRegistry.addressOf(proxy);
+        if (address == null) return;
         try {
-            String address = proxy.address().toString();
-            if (address.startsWith("/")) address = address.substring(1);
-
-            String redisKey = PlatformEnum.STEAM.equals(platform) ?
-                    RedisKeyConstant.PROXY_GLOBAL : RedisKeyConstant.PROXY_CN;
-
-            stringRedisTemplate.opsForHash().delete(redisKey, address);
+            proxyRegistry.evict(ProxyRegistry.poolKeyOf(platform), address);
             log.warn("🗑️ [代理池] 移除 {} 失效代理: {}", platform.getName(), address);
         } catch (Exception e) {
             // ignore
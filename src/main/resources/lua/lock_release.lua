@@ -0,0 +1,8 @@
+-- 释放锁：只删除自己持有的锁，锁已过期并被其他节点拿到时不误删
+-- KEYS[1]: 锁 Key
+-- ARGV[1]: 加锁时写入的令牌
+-- 返回: 1 表示已释放；0 表示锁已不属于自己
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
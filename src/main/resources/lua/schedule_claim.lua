@@ -0,0 +1,18 @@
+-- 到期调度领取脚本：取出到期时间已过的饰品，并把它们的到期时间推后到租约结束
+-- 推后即"隐身"：其他工人领不到，工人崩溃时租约一过又会自然到期，无需额外回收
+-- KEYS[1]: 调度 ZSet (Member: 饰品ID，Score: 下次到期时间戳)
+-- ARGV[1]: 当前时间戳(ms)   ARGV[2]: 批量大小   ARGV[3]: 租约到期时间戳(ms)
+-- 返回: {领取后最早的到期时间(无则 -1), id1, id2, ...}
+local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+for _, id in ipairs(ids) do
+    redis.call('ZADD', KEYS[1], 'XX', ARGV[3], id)
+end
+
+local nextDue = -1
+local head = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+if head[2] then
+    nextDue = head[2]
+end
+
+table.insert(ids, 1, tostring(nextDue))
+return ids
@@ -0,0 +1,25 @@
+-- 可靠队列领取脚本：按 热 -> 普 -> 冷 的顺序，从第一个非空赛道弹出一批任务，
+-- 原子地登记到当前工人的处理中 Hash (ID -> 来源赛道序号)，并写入租约到期时间
+-- 只登记赛道序号而不是赛道 Key：结算/回收时由调用方在 KEYS 里传入赛道，脚本不拼接、不读出 Key (兼容 Redis Cluster)
+-- KEYS[1..3]: 热/普/冷 赛道   KEYS[4]: 工人处理中 Hash   KEYS[5]: 租约 ZSet   KEYS[6]: 唤醒信号 List
+-- ARGV[1]: 批量大小   ARGV[2]: 租约到期时间戳(ms)   ARGV[3]: 工人ID
+-- 返回: {来源赛道, id1, id2, ...}，全部为空时返回 nil
+for i = 1, 3 do
+    local ids = redis.call('LPOP', KEYS[i], ARGV[1])
+    if ids then
+        for _, id in ipairs(ids) do
+            redis.call('HSET', KEYS[4], id, i)
+        end
+        redis.call('ZADD', KEYS[5], ARGV[2], ARGV[3])
+
+        -- 赛道里还有剩余任务，留一个唤醒令牌给其他正在等待的工人
+        if redis.call('LLEN', KEYS[1]) + redis.call('LLEN', KEYS[2]) + redis.call('LLEN', KEYS[3]) > 0 then
+            redis.call('LPUSH', KEYS[6], '1')
+            redis.call('LTRIM', KEYS[6], 0, 0)
+        end
+
+        table.insert(ids, 1, KEYS[i])
+        return ids
+    end
+end
+return nil
@@ -0,0 +1,57 @@
+-- 可靠队列结算脚本：成功的 ID 逐个确认 (ACK)，失败的 ID 放回其原来的赛道队尾 (NACK)，
+-- 因平台熔断失败的 ID 放进延后 ZSet，冷却结束后再由放回任务送回原赛道 (DELAY)
+-- 只处理仍登记在处理中 Hash 里的 ID，已确认过的重复结算不会再次入队
+-- KEYS[1]: 工人处理中 Hash   KEYS[2]: 租约 ZSet   KEYS[3]: 唤醒信号 List   KEYS[4..6]: 热/普/冷 赛道   KEYS[7]: 延后 ZSet
+-- ARGV[1]: 工人ID   ARGV[2]: 确认数量 N   ARGV[3]: 延后数量 M   ARGV[4]: 放回赛道的时间戳(ms)
+-- ARGV[5..N+4]: 确认的ID   ARGV[N+5..N+M+4]: 延后的ID   ARGV[N+M+5..]: 失败的ID
+-- 返回: 放回赛道和延后的数量
+local function laneIndex(value)
+    local index = tonumber(value)
+    if index and index >= 1 and index <= 3 then
+        return index
+    end
+    -- 旧版本登记的是赛道 Key 本身，只认声明过的三个
+    for i = 4, 6 do
+        if KEYS[i] == value then
+            return i - 3
+        end
+    end
+    return 3
+end
+
+local ackCount = tonumber(ARGV[2])
+local delayCount = tonumber(ARGV[3])
+for i = 5, ackCount + 4 do
+    redis.call('HDEL', KEYS[1], ARGV[i])
+end
+
+local delayed = 0
+for i = ackCount + 5, ackCount + delayCount + 4 do
+    local lane = redis.call('HGET', KEYS[1], ARGV[i])
+    if lane then
+        redis.call('HDEL', KEYS[1], ARGV[i])
+        redis.call('ZADD', KEYS[7], ARGV[4], laneIndex(lane) .. '|' .. ARGV[i])
+        delayed = delayed + 1
+    end
+end
+
+local requeued = 0
+for i = ackCount + delayCount + 5, #ARGV do
+    local lane = redis.call('HGET', KEYS[1], ARGV[i])
+    if lane then
+        redis.call('HDEL', KEYS[1], ARGV[i])
+        redis.call('RPUSH', KEYS[3 + laneIndex(lane)], ARGV[i])
+        requeued = requeued + 1
+    end
+end
+
+-- 当前工人手上已经清空，释放租约
+if redis.call('HLEN', KEYS[1]) == 0 then
+    redis.call('ZREM', KEYS[2], ARGV[1])
+end
+
+if requeued > 0 then
+    redis.call('LPUSH', KEYS[3], '1')
+    redis.call('LTRIM', KEYS[3], 0, 0)
+end
+return requeued + delayed
@@ -0,0 +1,23 @@
+-- 延后任务放回脚本：把到点的任务从延后 ZSet 移回原赛道队尾 (赛道模式 / 可靠模式)
+-- KEYS[1]: 延后 ZSet   KEYS[2]: 唤醒信号 List   KEYS[3..5]: 热/普/冷 赛道
+-- ARGV[1]: 当前时间戳(ms)   ARGV[2]: 单次最多放回的数量
+-- 返回: 放回赛道的数量
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+local released = 0
+for _, member in ipairs(due) do
+    redis.call('ZREM', KEYS[1], member)
+    -- Member 格式: 赛道序号|饰品ID，序号不认识的一律回冷门赛道
+    local sep = string.find(member, '|', 1, true)
+    local index = sep and tonumber(string.sub(member, 1, sep - 1))
+    if not index or index < 1 or index > 3 then
+        index = 3
+    end
+    redis.call('RPUSH', KEYS[2 + index], sep and string.sub(member, sep + 1) or member)
+    released = released + 1
+end
+
+if released > 0 then
+    redis.call('LPUSH', KEYS[2], '1')
+    redis.call('LTRIM', KEYS[2], 0, 0)
+end
+return released
@@ -0,0 +1,38 @@
+-- 可靠队列回收脚本：回收单个租约已过期的工人 (进程崩溃/卡死)，把其处理中的任务放回原赛道队头
+-- 过期工人由调用方先查出来，逐个调用本脚本，涉及的 Key 全部通过 KEYS 声明
+-- KEYS[1]: 该工人的处理中 Hash   KEYS[2]: 租约 ZSet   KEYS[3]: 唤醒信号 List   KEYS[4..6]: 热/普/冷 赛道
+-- ARGV[1]: 工人ID   ARGV[2]: 当前时间戳(ms)
+-- 返回: 回收的任务数量 (租约已被续上时返回 0)
+local lease = redis.call('ZSCORE', KEYS[2], ARGV[1])
+if lease and tonumber(lease) > tonumber(ARGV[2]) then
+    return 0
+end
+
+local function laneKey(value)
+    local index = tonumber(value)
+    if index and index >= 1 and index <= 3 then
+        return KEYS[3 + index]
+    end
+    -- 旧版本登记的是赛道 Key 本身，只认声明过的三个
+    for i = 4, 6 do
+        if KEYS[i] == value then
+            return KEYS[i]
+        end
+    end
+    return KEYS[6]
+end
+
+local entries = redis.call('HGETALL', KEYS[1])
+local total = 0
+for j = 1, #entries, 2 do
+    redis.call('LPUSH', laneKey(entries[j + 1]), entries[j])
+    total = total + 1
+end
+redis.call('DEL', KEYS[1])
+redis.call('ZREM', KEYS[2], ARGV[1])
+
+if total > 0 then
+    redis.call('LPUSH', KEYS[3], '1')
+    redis.call('LTRIM', KEYS[3], 0, 0)
+end
+return total
@@ -0,0 +1,42 @@
+-- 令牌桶限流脚本：一次原子地检查多个桶 (平台桶 + 可选的代理桶)，全部有令牌才一起扣减
+-- 时间取 Redis 服务器时间，多节点之间不受本机时钟偏差影响
+-- KEYS[1..n]: 令牌桶 Hash (tokens: 剩余令牌, ts: 上次计算时间ms)
+-- ARGV[1]: 本次需要的令牌数   ARGV[2i]: 第 i 个桶每秒补充速率   ARGV[2i+1]: 第 i 个桶容量 (突发上限)
+-- 返回: 0 表示获取成功；>0 表示还需等待的毫秒数 (此时不扣减任何桶)
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local requested = tonumber(ARGV[1])
+
+local wait = 0
+local tokensList = {}
+for i, key in ipairs(KEYS) do
+    local rate = tonumber(ARGV[i * 2])
+    local burst = tonumber(ARGV[i * 2 + 1])
+    local state = redis.call('HMGET', key, 'tokens', 'ts')
+    local tokens = tonumber(state[1]) or burst
+    local ts = tonumber(state[2]) or now
+
+    -- 按流逝时间补充令牌，不超过容量
+    tokens = math.min(burst, tokens + math.max(0, now - ts) * rate / 1000)
+    tokensList[i] = tokens
+
+    if tokens < requested then
+        local need = math.ceil((requested - tokens) * 1000 / rate)
+        if need > wait then
+            wait = need
+        end
+    end
+end
+
+if wait > 0 then
+    return wait
+end
+
+for i, key in ipairs(KEYS) do
+    local rate = tonumber(ARGV[i * 2])
+    local burst = tonumber(ARGV[i * 2 + 1])
+    redis.call('HSET', key, 'tokens', tostring(tokensList[i] - requested), 'ts', tostring(now))
+    -- 桶补满所需时间之后就没必要保留了 (长期不用的代理桶自动清理)
+    redis.call('PEXPIRE', key, math.ceil(burst * 1000 / rate) + 60000)
+end
+return 0
@@ -0,0 +1,41 @@
+-- 自适应间隔记录脚本：原子地更新一批饰品的价格变化状态
+-- 同一批次的 Buff/悠悠/Steam 会并发记录同一个饰品，多个节点也会，读-改-写必须在脚本里完成，否则互相覆盖
+-- KEYS[i]: 第 i 个饰品的状态 Hash (rate: 变化速度EWMA, volume: 成交量, <平台>:price / <平台>:ts: 该平台上次价格和时间)
+-- ARGV[1]: 平台编码   ARGV[2]: 当前时间戳(ms)   ARGV[3]: EWMA 系数   ARGV[4]: 最小时间窗口(ms)   ARGV[5]: 状态保留时长(ms)
+-- ARGV[4 + 2i]: 第 i 个饰品的价格   ARGV[5 + 2i]: 第 i 个饰品的成交量 (空串表示没有)
+-- 返回: 更新的饰品数
+local priceField = ARGV[1] .. ':price'
+local tsField = ARGV[1] .. ':ts'
+local now = tonumber(ARGV[2])
+local alpha = tonumber(ARGV[3])
+local minElapsed = tonumber(ARGV[4])
+local ttl = tonumber(ARGV[5])
+
+for i, key in ipairs(KEYS) do
+    local price = tonumber(ARGV[4 + i * 2])
+    local volume = ARGV[5 + i * 2]
+    local state = redis.call('HMGET', key, priceField, tsField, 'rate')
+    local lastPrice = tonumber(state[1])
+    local lastTs = tonumber(state[2])
+
+    -- 与该平台上一次价格对比 (平台之间价格不可比)，得出每小时的变化速度再做 EWMA
+    if lastPrice and lastPrice > 0 and lastTs then
+        local elapsedHours = math.max(now - lastTs, minElapsed) / 3600000
+        local sample = math.abs(price - lastPrice) / lastPrice / elapsedHours
+        local oldRate = tonumber(state[3])
+        local rate = sample
+        if oldRate then
+            rate = alpha * sample + (1 - alpha) * oldRate
+        end
+        redis.call('HSET', key, 'rate', tostring(rate))
+    end
+
+    -- 成交量取各平台里最新的非空值
+    if volume ~= '' then
+        redis.call('HSET', key, 'volume', volume)
+    end
+    redis.call('HSET', key, priceField, ARGV[4 + i * 2], tsField, ARGV[2])
+    -- 长期没再抓到的饰品 (下架/删除) 状态自动过期
+    redis.call('PEXPIRE', key, ttl)
+end
+return #KEYS
@@ -0,0 +1,153 @@
+package com.zan.csgo.crawler.breaker;
+
+import com.zan.csgo.crawler.proxy.ProxyScoreBoard;
+import com.zan.csgo.enums.BreakerSignalEnum;
+import com.zan.csgo.enums.PlatformEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/24 16:10
+ * @ClassName: CircuitBreakerRegistryTest
+ * @Description : 平台熔断器状态机测试 (打开 / 半开试探 / 恢复 / 试探超时)
+ */
+class CircuitBreakerRegistryTest {
+
+    private static final PlatformEnum BUFF = PlatformEnum.BUFF;
+
+    private static final long OPEN_MS = 50;
+
+    private CircuitBreakerRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new CircuitBreakerRegistry();
+        ReflectionTestUtils.setField(registry, "proxyScoreBoard", mock(ProxyScoreBoard.class));
+        ReflectionTestUtils.setField(registry, "enabled", true);
+        ReflectionTestUtils.setField(registry, "platformWindow", 10);
+        ReflectionTestUtils.setField(registry, "platformMinCalls", 4);
+        ReflectionTestUtils.setField(registry, "platformFailureRate", 0.5);
+        ReflectionTestUtils.setField(registry, "platformOpenMs", OPEN_MS);
+        ReflectionTestUtils.setField(registry, "loginOpenMs", 60000L);
+        ReflectionTestUtils.setField(registry, "halfOpenCalls", 2);
+        ReflectionTestUtils.setField(registry, "trialTimeoutMs", 60000L);
+        ReflectionTestUtils.setField(registry, "maxOpenMs", 1000L);
+    }
+
+    @Test
+    void opensOnlyAfterMinCallsAndFailureRate() {
+        registry.recordFailure(BUFF, null, BreakerSignalEnum.ERROR);
+        registry.recordFailure(BUFF, null, BreakerSignalEnum.ERROR);
+        registry.recordSuccess(BUFF, null, 100);
+        assertThat(registry.allowPlatform(BUFF)).isTrue();
+
+        registry.recordFailure(BUFF, null, BreakerSignalEnum.TIMEOUT);
+
+        assertThat(registry.isPlatformOpen(BUFF)).isTrue();
+        assertThat(registry.allowPlatform(BUFF)).isFalse();
+        assertThat(state()).isEqualTo("OPEN");
+    }
+
+    @Test
+    void loginRequiredTripsImmediately() {
+        registry.recordFailure(BUFF, null, BreakerSignalEnum.LOGIN_REQUIRED);
+
+        assertThat(registry.isPlatformOpen(BUFF)).isTrue();
+        assertThat(registry.maxRemainingOpenMs()).isGreaterThan(OPEN_MS);
+    }
+
+    @Test
+    void halfOpenHandsOutLimitedTrialsAndClosesAfterRecordedSuccesses() throws InterruptedException {
+        openAndCoolDown();
+
+        assertThat(registry.isPlatformOpen(BUFF)).isFalse();
+        assertThat(registry.allowPlatform(BUFF)).isTrue();
+        assertThat(registry.allowPlatform(BUFF)).isTrue();
+        // 名额占满：只查询的入口也视为不可用，再要许可被拒
+        assertThat(registry.isPlatformOpen(BUFF)).isTrue();
+        assertThat(registry.allowPlatform(BUFF)).isFalse();
+        assertThat(state()).isEqualTo("HALF_OPEN");
+
+        registry.recordSuccess(BUFF, null, 100);
+        assertThat(state()).isEqualTo("HALF_OPEN");
+        registry.recordSuccess(BUFF, null, 100);
+
+        assertThat(state()).isEqualTo("CLOSED");
+        assertThat(registry.allowPlatform(BUFF)).isTrue();
+    }
+
+    @Test
+    void releasedPermitFreesTrialSlot() throws InterruptedException {
+        openAndCoolDown();
+        registry.allowPlatform(BUFF);
+        registry.allowPlatform(BUFF);
+
+        // 拿了许可但最终没有发出
+        registry.releasePlatform(BUFF);
+
+        assertThat(registry.allowPlatform(BUFF)).isTrue();
+    }
+
+    @Test
+    void trialFailureReopensWithDoubledCooldown() throws InterruptedException {
+        openAndCoolDown();
+        registry.allowPlatform(BUFF);
+
+        registry.recordFailure(BUFF, null, BreakerSignalEnum.ERROR);
+
+        assertThat(state()).isEqualTo("OPEN");
+        assertThat(snapshot().get("openMs")).isEqualTo(OPEN_MS * 2);
+    }
+
+    @Test
+    void unreturnedPermitsExpireAndReopen() throws InterruptedException {
+        ReflectionTestUtils.setField(registry, "trialTimeoutMs", 30L);
+        openAndCoolDown();
+        registry.allowPlatform(BUFF);
+        registry.allowPlatform(BUFF);
+        assertThat(registry.allowPlatform(BUFF)).isFalse();
+
+        // 两个试探请求都没有结果回来
+        Thread.sleep(40);
+
+        assertThat(state()).isEqualTo("OPEN");
+        assertThat(snapshot().get("lastSignal")).isEqualTo(BreakerSignalEnum.TIMEOUT.getCode());
+        // 冷却结束后重新进入半开，名额重新发放
+        Thread.sleep(OPEN_MS + 10);
+        assertThat(registry.allowPlatform(BUFF)).isTrue();
+        assertThat(state()).isEqualTo("HALF_OPEN");
+    }
+
+    @Test
+    void disabledRegistryAlwaysAllows() {
+        ReflectionTestUtils.setField(registry, "enabled", false);
+        registry.recordFailure(BUFF, null, BreakerSignalEnum.LOGIN_REQUIRED);
+
+        assertThat(registry.allowPlatform(BUFF)).isTrue();
+        assertThat(registry.isPlatformOpen(BUFF)).isFalse();
+    }
+
+    private void openAndCoolDown() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            registry.recordFailure(BUFF, null, BreakerSignalEnum.ERROR);
+        }
+        assertThat(state()).isEqualTo("OPEN");
+        Thread.sleep(OPEN_MS + 10);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> snapshot() {
+        return (Map<String, Object>) registry.getBreakerStats().get(BUFF.name());
+    }
+
+    private Object state() {
+        return snapshot().get("state");
+    }
+}
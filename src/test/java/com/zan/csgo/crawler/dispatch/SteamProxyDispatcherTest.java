@@ -0,0 +1,80 @@
+package com.zan.csgo.crawler.dispatch;
+
+import com.zan.csgo.crawler.breaker.CircuitBreakerRegistry;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.exception.BusinessException;
+import com.zan.csgo.utils.ProxyProviderUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/24 17:20
+ * @ClassName: SteamProxyDispatcherTest
+ * @Description : Steam 按代理调度测试 (等待请求的截止时间与队列上限)
+ */
+class SteamProxyDispatcherTest {
+
+    private SteamProxyDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        ProxyProviderUtil proxyProviderUtil = mock(ProxyProviderUtil.class);
+        // 池子为空时只有一个直连槽位，立即可用，之后每个间隔一次
+        when(proxyProviderUtil.getProxies(PlatformEnum.STEAM)).thenReturn(List.of());
+
+        dispatcher = new SteamProxyDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "proxyProviderUtil", proxyProviderUtil);
+        ReflectionTestUtils.setField(dispatcher, "circuitBreakerRegistry", mock(CircuitBreakerRegistry.class));
+        ReflectionTestUtils.setField(dispatcher, "intervalMs", 60000L);
+        ReflectionTestUtils.setField(dispatcher, "jitterMs", 0L);
+        ReflectionTestUtils.setField(dispatcher, "refreshMs", 60000L);
+        ReflectionTestUtils.setField(dispatcher, "maxWaiters", 2);
+        dispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void expiredWaiterFailsWithoutTakingProxy() throws Exception {
+        // 第一个请求用掉直连槽位，后面的请求要等满一个间隔
+        assertThat(dispatcher.acquire().get(2, TimeUnit.SECONDS)).isNull();
+        CompletableFuture<Proxy> waiting = dispatcher.acquire(System.currentTimeMillis() + 100);
+
+        // 截止时间一到就失败，不用等到槽位可用
+        assertThatThrownBy(() -> waiting.get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(BusinessException.class);
+        assertThat(dispatcher.getDispatchStats()).containsEntry("expired", 1L).containsEntry("assigned", 1L)
+                .containsEntry("waiting", 0);
+    }
+
+    @Test
+    void rejectsWhenWaitersFull() throws Exception {
+        dispatcher.acquire().get(2, TimeUnit.SECONDS);
+        dispatcher.acquire();
+        dispatcher.acquire();
+        CompletableFuture<Proxy> overflow = dispatcher.acquire();
+
+        assertThatThrownBy(() -> overflow.get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(BusinessException.class);
+        assertThat(dispatcher.getDispatchStats()).containsEntry("rejected", 1L);
+    }
+}
@@ -0,0 +1,170 @@
+package com.zan.csgo.crawler.http;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.zan.csgo.crawler.parser.BuffBatchResponse;
+import com.zan.csgo.crawler.parser.SteamPriceResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/23 11:30
+ * @ClassName: JsonBodySubscriberTest
+ * @Description : 流式 JSON 订阅者 + 字段读取器测试 (数据按小块到达，块边界切在 token / gzip 头中间；按字段路径过滤)
+ */
+class JsonBodySubscriberTest {
+
+    private static final String BUFF_BATCH = "{\"code\":\"OK\",\"data\":{\"page_num\":1,\"items\":["
+            + "{\"id\":33960,\"name\":\"AK-47 | 红线\",\"goods_info\":{\"info\":{\"tags\":{\"rarity\":{\"name\":\"保密\"}}}},\"sell_min_price\":\"138.5\"},"
+            + "{\"id\":42,\"sell_min_price\":\"\"},"
+            + "{\"id\":\"7\",\"sell_min_price\":\"0.03\",\"tags\":[1,2,[3]]}"
+            + "]},\"msg\":null}";
+
+    private static final String STEAM_PRICE = "﻿{\"success\":true,\"lowest_price\":\"¥ 1,138.50\",\"volume\":\"1,234\",\"median_price\":\"¥ 1,140.00\"}";
+
+    private static final String WAF_PAGE = "<!DOCTYPE html><html><body>" + "blocked ".repeat(2000) + "</body></html>";
+
+    @Test
+    void readsBuffBatchSplitIntoTinyChunks() {
+        Result<BuffBatchResponse> result = run(utf8(BUFF_BATCH), false, 3, BuffBatchResponse.READER);
+
+        BuffBatchResponse response = result.body;
+        assertThat(response.isOk()).isTrue();
+        assertThat(response.getItems()).extracting(dto -> String.valueOf(dto.getTargetId())).containsExactly("33960", "7");
+        assertThat(response.getItems()).extracting(dto -> dto.getPrice().toPlainString()).containsExactly("138.5", "0.03");
+        assertThat(result.received.get()).isEqualTo(utf8(BUFF_BATCH).length);
+    }
+
+    @Test
+    void unselectedSubtreesNeverReachTheBuffer() {
+        // 逐个 token 记录读取器能看到的全部内容，不跳过任何东西
+        JsonStreamReader<List<String>> recorder = JsonStreamReader.select(parser -> {
+            List<String> seen = new ArrayList<>();
+            seen.add(parser.currentToken().asString());
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                seen.add(token == JsonToken.FIELD_NAME ? parser.currentName() : parser.getText());
+            }
+            return seen;
+        }, "code", "data.items[].id", "data.items[].sell_min_price");
+
+        List<String> seen = run(utf8(BUFF_BATCH), false, 7, recorder).body;
+
+        assertThat(seen).containsExactly("{", "code", "OK", "data", "{", "items", "[",
+                "{", "id", "33960", "sell_min_price", "138.5", "}",
+                "{", "id", "42", "sell_min_price", "", "}",
+                "{", "id", "7", "sell_min_price", "0.03", "}",
+                "]", "}", "}");
+        assertThat(seen).doesNotContain("name", "goods_info", "保密", "tags", "page_num", "msg");
+    }
+
+    @Test
+    void defaultReaderKeepsWholeBody() {
+        List<String> fields = run(utf8(STEAM_PRICE), false, 4, parser -> {
+            List<String> names = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                names.add(parser.currentName());
+                parser.nextToken();
+            }
+            return names;
+        }).body;
+
+        assertThat(fields).containsExactly("success", "lowest_price", "volume", "median_price");
+    }
+
+    @Test
+    void readsGzipBodyChunkByChunk() throws IOException {
+        byte[] gzip = gzip(STEAM_PRICE);
+
+        for (int chunk : new int[]{1, 5, 11, gzip.length}) {
+            SteamPriceResponse response = run(gzip, true, chunk, SteamPriceResponse.READER).body;
+            assertThat(response.isSuccess()).isTrue();
+            assertThat(response.getLowestPrice()).isEqualTo("¥ 1,138.50");
+            assertThat(response.getVolume()).isEqualTo("1,234");
+        }
+    }
+
+    @Test
+    void rejectsHtmlOnFirstChunk() {
+        Result<SteamPriceResponse> result = run(utf8(WAF_PAGE), false, 64, SteamPriceResponse.READER);
+
+        assertThat(result.body).isNull();
+        assertThat(result.cancelled.get()).isTrue();
+        assertThat(result.received.get()).isEqualTo(64);
+    }
+
+    @Test
+    void rejectsGzipHtmlBeforeReadingWholeBody() throws IOException {
+        byte[] gzip = gzip(WAF_PAGE);
+
+        Result<SteamPriceResponse> result = run(gzip, true, 16, SteamPriceResponse.READER);
+
+        assertThat(result.body).isNull();
+        assertThat(result.cancelled.get()).isTrue();
+        assertThat(result.received.get()).isLessThan(gzip.length);
+    }
+
+    @Test
+    void nonObjectRootIsTreatedAsNoBody() {
+        assertThat(run(utf8("[1,2,3]"), false, 2, SteamPriceResponse.READER).body).isNull();
+        assertThat(run(new byte[0], false, 1, SteamPriceResponse.READER).body).isNull();
+    }
+
+    /**
+     * 模拟 HttpClient：按 chunkSize 切块逐个 onNext，订阅被取消后不再推送
+     */
+    private static <T> Result<T> run(byte[] body, boolean gzip, int chunkSize, JsonStreamReader<T> reader) {
+        Result<T> result = new Result<>();
+        JsonBodySubscriber<T> subscriber = new JsonBodySubscriber<>(gzip, reader, result.received);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+                result.cancelled.set(true);
+            }
+        });
+        for (int i = 0; i < body.length && !result.cancelled.get(); i += chunkSize) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(Arrays.copyOfRange(body, i, Math.min(i + chunkSize, body.length)))));
+        }
+        if (!result.cancelled.get()) {
+            subscriber.onComplete();
+        }
+        result.body = subscriber.getBody().toCompletableFuture().join();
+        return result;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(String s) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(utf8(s));
+        }
+        return out.toByteArray();
+    }
+
+    private static class Result<T> {
+
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private T body;
+    }
+}
@@ -0,0 +1,96 @@
+package com.zan.csgo.crawler.limiter;
+
+import com.zan.csgo.enums.PlatformEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/23 11:05
+ * @ClassName: AdaptiveBatchControllerTest
+ * @Description : 自适应批量 (AIMD) 测试
+ */
+class AdaptiveBatchControllerTest {
+
+    private AdaptiveBatchController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new AdaptiveBatchController();
+        ReflectionTestUtils.setField(controller, "buffInitial", 80);
+        ReflectionTestUtils.setField(controller, "buffMin", 10);
+        ReflectionTestUtils.setField(controller, "buffMax", 100);
+        ReflectionTestUtils.setField(controller, "buffTargetLatencyMs", 5000L);
+        ReflectionTestUtils.setField(controller, "youpinInitial", 50);
+        ReflectionTestUtils.setField(controller, "youpinMin", 10);
+        ReflectionTestUtils.setField(controller, "youpinMax", 100);
+        ReflectionTestUtils.setField(controller, "youpinTargetLatencyMs", 5000L);
+        ReflectionTestUtils.setField(controller, "steamInitial", 20);
+        ReflectionTestUtils.setField(controller, "steamMin", 5);
+        ReflectionTestUtils.setField(controller, "steamMax", 80);
+        ReflectionTestUtils.setField(controller, "steamTargetLatencyMs", 60000L);
+        ReflectionTestUtils.setField(controller, "increaseStep", 5);
+        ReflectionTestUtils.setField(controller, "decreaseFactor", 0.5);
+        controller.init();
+    }
+
+    @Test
+    void fullBatchWithinTargetIncreasesAdditivelyUpToMax() {
+        controller.onSuccess(PlatformEnum.BUFF, 1000, 80);
+        assertThat(controller.currentSize(PlatformEnum.BUFF)).isEqualTo(85);
+
+        for (int i = 0; i < 10; i++) {
+            controller.onSuccess(PlatformEnum.BUFF, 1000, 100);
+        }
+        assertThat(controller.currentSize(PlatformEnum.BUFF)).isEqualTo(100);
+    }
+
+    @Test
+    void partialBatchDoesNotGrowSize() {
+        controller.onSuccess(PlatformEnum.BUFF, 1000, 20);
+
+        assertThat(controller.currentSize(PlatformEnum.BUFF)).isEqualTo(80);
+    }
+
+    @Test
+    void slowOrRejectedBatchHalvesSize() {
+        controller.onSuccess(PlatformEnum.BUFF, 6000, 80);
+        assertThat(controller.currentSize(PlatformEnum.BUFF)).isEqualTo(40);
+
+        controller.recordRejection(PlatformEnum.BUFF);
+        controller.onSuccess(PlatformEnum.BUFF, 1000, 40);
+        assertThat(controller.currentSize(PlatformEnum.BUFF)).isEqualTo(20);
+
+        // 拦截计数已被上一批消费，下一批正常增长
+        controller.onSuccess(PlatformEnum.BUFF, 1000, 20);
+        assertThat(controller.currentSize(PlatformEnum.BUFF)).isEqualTo(25);
+    }
+
+    @Test
+    void failureDecreasesButNotBelowMin() {
+        for (int i = 0; i < 10; i++) {
+            controller.onFailure(PlatformEnum.STEAM, "timeout");
+        }
+
+        assertThat(controller.currentSize(PlatformEnum.STEAM)).isEqualTo(5);
+    }
+
+    @Test
+    void claimSizeFollowsLargestPlatformSoEveryLegCanGrow() {
+        assertThat(controller.claimSize()).isEqualTo(80);
+
+        // Steam 收缩不拖累领取量，Buff 照样切出满批继续增长
+        controller.onFailure(PlatformEnum.STEAM, "timeout");
+        assertThat(controller.claimSize()).isEqualTo(80);
+        controller.onSuccess(PlatformEnum.BUFF, 1000, controller.claimSize());
+
+        assertThat(controller.currentSize(PlatformEnum.BUFF)).isEqualTo(85);
+        assertThat(controller.claimSize()).isEqualTo(85);
+
+        controller.onFailure(PlatformEnum.BUFF, "blocked");
+        assertThat(controller.claimSize()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,136 @@
+package com.zan.csgo.crawler.limiter;
+
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.support.RedisTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/23 10:40
+ * @ClassName: PlatformRateLimiterTest
+ * @Description : 令牌桶限流测试：桶参数组装、等待重试、Redis 故障兜底，以及 Lua 脚本本身 (需要本地 Redis)
+ */
+class PlatformRateLimiterTest {
+
+    private static final Proxy PROXY = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("10.0.0.1", 8080));
+
+    private StringRedisTemplate redis;
+
+    private PlatformRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        limiter = newLimiter(redis);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void acquireChecksPlatformAndProxyBucketsTogether() {
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+
+        limiter.acquire(PlatformEnum.BUFF, PROXY);
+
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redis).execute(any(RedisScript.class), keys.capture(), args.capture());
+        assertThat(keys.getValue()).containsExactly(
+                RedisKeyConstant.LIMITER_PREFIX + PlatformEnum.BUFF.getCode(),
+                RedisKeyConstant.LIMITER_PREFIX + PlatformEnum.BUFF.getCode() + ":proxy:10.0.0.1:8080");
+        assertThat(args.getValue()).containsExactly("1", "2.0", "4.0", "0.5", "2.0");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void acquireAsyncRetriesAfterReportedWait() throws Exception {
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(50L, 0L);
+
+        long start = System.currentTimeMillis();
+        limiter.acquireAsync(PlatformEnum.STEAM, null).get(2, TimeUnit.SECONDS);
+
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(50);
+        verify(redis, times(2)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+        Map<String, Object> steam = (Map<String, Object>) limiter.getLimiterStats().get("STEAM");
+        assertThat(steam.get("granted")).isEqualTo(1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void proxyOnlyAcquireFallsBackToPlatformBucketWhenDirect() {
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+
+        limiter.acquireProxyAsync(PlatformEnum.STEAM, null).join();
+
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(redis).execute(any(RedisScript.class), keys.capture(), any(Object[].class));
+        assertThat(keys.getValue()).containsExactly(RedisKeyConstant.LIMITER_PREFIX + PlatformEnum.STEAM.getCode());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisFailureReleasesAfterFallbackDelay() throws Exception {
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("down"));
+        ReflectionTestUtils.setField(limiter, "fallbackDelayMs", 30L);
+
+        long start = System.currentTimeMillis();
+        limiter.acquireAsync(PlatformEnum.BUFF, PROXY).get(2, TimeUnit.SECONDS);
+
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(30);
+    }
+
+    @Test
+    void scriptGrantsBurstThenReportsWait() {
+        StringRedisTemplate real = RedisTestSupport.connectOrSkip();
+        try {
+            PlatformRateLimiter redisLimiter = newLimiter(real);
+            ReflectionTestUtils.setField(redisLimiter, "steamRate", 1.0);
+            ReflectionTestUtils.setField(redisLimiter, "steamBurst", 2.0);
+
+            // 桶满时可以连续拿 burst 个，第三个需要等约 1 秒
+            long start = System.currentTimeMillis();
+            redisLimiter.acquire(PlatformEnum.STEAM);
+            redisLimiter.acquire(PlatformEnum.STEAM);
+            assertThat(System.currentTimeMillis() - start).isLessThan(500);
+            redisLimiter.acquire(PlatformEnum.STEAM);
+            assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(800);
+        } finally {
+            RedisTestSupport.close(real);
+        }
+    }
+
+    private static PlatformRateLimiter newLimiter(StringRedisTemplate template) {
+        PlatformRateLimiter limiter = new PlatformRateLimiter();
+        ReflectionTestUtils.setField(limiter, "stringRedisTemplate", template);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "buffRate", 2.0);
+        ReflectionTestUtils.setField(limiter, "buffBurst", 4.0);
+        ReflectionTestUtils.setField(limiter, "youpinRate", 2.0);
+        ReflectionTestUtils.setField(limiter, "youpinBurst", 4.0);
+        ReflectionTestUtils.setField(limiter, "steamRate", 1.0);
+        ReflectionTestUtils.setField(limiter, "steamBurst", 3.0);
+        ReflectionTestUtils.setField(limiter, "proxyRate", 0.5);
+        ReflectionTestUtils.setField(limiter, "proxyBurst", 2.0);
+        ReflectionTestUtils.setField(limiter, "fallbackDelayMs", 1000L);
+        return limiter;
+    }
+}
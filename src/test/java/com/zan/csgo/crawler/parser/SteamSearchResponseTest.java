@@ -0,0 +1,61 @@
+package com.zan.csgo.crawler.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/23 14:10
+ * @ClassName: SteamSearchResponseTest
+ * @Description : Steam 市场搜索接口流式读取测试
+ */
+class SteamSearchResponseTest {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Test
+    void readsRowsAndSkipsNestedDescriptions() throws IOException {
+        String json = "{\"success\":true,\"start\":100,\"pagesize\":100,\"total_count\":23456,\"searchdata\":{\"query\":\"\"},"
+                + "\"results\":["
+                + "{\"name\":\"AK-47 | 红线\",\"hash_name\":\"AK-47 | Redline (Field-Tested)\",\"sell_listings\":812,\"sell_price\":13850,"
+                + "\"sell_price_text\":\"¥ 138.50\",\"asset_description\":{\"appid\":730,\"descriptions\":[{\"type\":\"html\",\"value\":\"x\"}]}},"
+                + "{\"hash_name\":\"\",\"sell_price\":1},"
+                + "{\"hash_name\":\"Sticker | Crown (Foil)\",\"sell_listings\":\"3\",\"sell_price\":\"250000\"}"
+                + "]}";
+
+        SteamSearchResponse response = read(json);
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getStart()).isEqualTo(100);
+        assertThat(response.getTotalCount()).isEqualTo(23456);
+        assertThat(response.getResults()).hasSize(2);
+        SteamSearchResponse.Row first = response.getResults().get(0);
+        assertThat(first.getHashName()).isEqualTo("AK-47 | Redline (Field-Tested)");
+        assertThat(first.getSellPrice()).isEqualTo(13850);
+        assertThat(first.getSellListings()).isEqualTo(812);
+        // 字符串形式的数字也能读
+        assertThat(response.getResults().get(1).getSellPrice()).isEqualTo(250000);
+        assertThat(response.getResults().get(1).getSellListings()).isEqualTo(3);
+    }
+
+    @Test
+    void failedResponseHasNoRows() throws IOException {
+        SteamSearchResponse response = read("{\"success\":false,\"results\":null}");
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getResults()).isEmpty();
+    }
+
+    private static SteamSearchResponse read(String json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            assertThat(parser.nextToken()).isEqualTo(JsonToken.START_OBJECT);
+            return SteamSearchResponse.read(parser);
+        }
+    }
+}
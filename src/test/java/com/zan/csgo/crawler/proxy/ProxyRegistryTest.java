@@ -0,0 +1,192 @@
+package com.zan.csgo.crawler.proxy;
+
+import cn.hutool.core.date.DatePattern;
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.crawler.http.CrawlerHttpClientManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.Proxy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/24 19:40
+ * @ClassName: ProxyRegistryTest
+ * @Description : 代理池本地镜像测试 (deadline 解析、入池拦截、选代理避开快过期的、过期清理)
+ */
+class ProxyRegistryTest {
+
+    private static final String POOL = RedisKeyConstant.PROXY_CN;
+
+    private static final String EXPIRY = ProxyRegistry.expiryKeyOf(POOL);
+
+    private static final ZoneId BEIJING = ZoneId.of("Asia/Shanghai");
+
+    private StringRedisTemplate redis;
+
+    private HashOperations<String, Object, Object> hashOps;
+
+    private ZSetOperations<String, String> zSetOps;
+
+    private CrawlerHttpClientManager httpClientManager;
+
+    private Map<Object, Object> redisPool;
+
+    private ProxyRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        hashOps = mock(HashOperations.class);
+        zSetOps = mock(ZSetOperations.class);
+        httpClientManager = mock(CrawlerHttpClientManager.class);
+        redisPool = new HashMap<>();
+        when(redis.opsForHash()).thenReturn(hashOps);
+        when(redis.opsForZSet()).thenReturn(zSetOps);
+        when(hashOps.entries(anyString())).thenReturn(Map.of());
+        when(hashOps.entries(POOL)).thenAnswer(invocation -> new HashMap<>(redisPool));
+
+        registry = new ProxyRegistry();
+        ReflectionTestUtils.setField(registry, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(registry, "redisMessageListenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(registry, "httpClientManager", httpClientManager);
+        ReflectionTestUtils.setField(registry, "evictBeforeMs", 10000L);
+        ReflectionTestUtils.setField(registry, "minRemainingMs", 30000L);
+        registry.init();
+    }
+
+    @Test
+    void parseDeadlineUsesBeijingTime() {
+        long expected = LocalDateTime.of(2026, 1, 24, 12, 0, 0).atZone(BEIJING).toInstant().toEpochMilli();
+
+        assertThat(ProxyRegistry.parseDeadline("2026-01-24 12:00:00")).isEqualTo(expected);
+        assertThat(ProxyRegistry.parseDeadline(" 2026-01-24 12:00:00 ")).isEqualTo(expected);
+    }
+
+    @Test
+    void blankOrMalformedDeadlineNeverExpires() {
+        assertThat(ProxyRegistry.parseDeadline(null)).isEqualTo(Long.MAX_VALUE);
+        assertThat(ProxyRegistry.parseDeadline("")).isEqualTo(Long.MAX_VALUE);
+        assertThat(ProxyRegistry.parseDeadline("2026/01/24 12:00")).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void admitRejectsProxyAboutToExpire() {
+        boolean admitted = registry.admit(POOL, "10.0.0.1:8080", deadlineIn(5000));
+
+        assertThat(admitted).isFalse();
+        assertThat(registry.size(POOL)).isZero();
+        verify(hashOps, never()).put(anyString(), any(), any());
+    }
+
+    @Test
+    void admitIndexesDeadlineOnlyWhenPresent() {
+        String deadline = deadlineIn(600000);
+
+        assertThat(registry.admit(POOL, "10.0.0.1:8080", deadline)).isTrue();
+        assertThat(registry.admit(POOL, "10.0.0.2:8080", null)).isTrue();
+
+        assertThat(registry.size(POOL)).isEqualTo(2);
+        verify(hashOps).put(POOL, "10.0.0.1:8080", deadline);
+        verify(zSetOps).add(EXPIRY, "10.0.0.1:8080", (double) ProxyRegistry.parseDeadline(deadline));
+        verify(zSetOps, never()).add(eq(EXPIRY), eq("10.0.0.2:8080"), anyDouble());
+    }
+
+    @Test
+    void listPrefersProxiesWithEnoughRemainingLife() {
+        registry.admit(POOL, "10.0.0.1:8080", deadlineIn(20000));
+        registry.admit(POOL, "10.0.0.2:8080", deadlineIn(600000));
+
+        assertThat(registry.list(POOL)).extracting(ProxyRegistry::addressOf).containsExactly("10.0.0.2:8080");
+        assertThat(registry.expiringWithin(POOL, 60000)).isEqualTo(1);
+    }
+
+    @Test
+    void listFallsBackToAllWhenEveryProxyIsShortLived() {
+        registry.admit(POOL, "10.0.0.1:8080", deadlineIn(20000));
+        registry.admit(POOL, "10.0.0.2:8080", deadlineIn(25000));
+
+        assertThat(registry.list(POOL)).hasSize(2);
+        assertThat(registry.pick(POOL)).isNotNull();
+    }
+
+    @Test
+    void sweepRemovesDueProxiesAndOnlyZremWinnerDeletesPool() {
+        registry.admit(POOL, "10.0.0.1:8080", deadlineIn(600000));
+        registry.admit(POOL, "10.0.0.2:8080", deadlineIn(600000));
+        Proxy due = registry.find(POOL, "10.0.0.1:8080");
+        // 调大提前量，两个代理都进入待清理范围
+        ReflectionTestUtils.setField(registry, "evictBeforeMs", 700000L);
+        when(zSetOps.rangeByScore(eq(EXPIRY), eq(0.0), anyDouble())).thenReturn(Set.of("10.0.0.1:8080", "10.0.0.2:8080"));
+        when(zSetOps.remove(EXPIRY, "10.0.0.1:8080")).thenReturn(1L);
+        when(zSetOps.remove(EXPIRY, "10.0.0.2:8080")).thenReturn(0L);
+
+        registry.sweepExpired();
+
+        assertThat(registry.size(POOL)).isZero();
+        // 到期移出的不计入消耗
+        assertThat(registry.evictedCount(POOL)).isZero();
+        verify(hashOps).delete(POOL, "10.0.0.1:8080");
+        // 另一个节点抢先 ZREM 了，由它负责删代理池
+        verify(hashOps, never()).delete(POOL, "10.0.0.2:8080");
+        verify(redis).convertAndSend(RedisKeyConstant.PROXY_EVENT_CHANNEL, "-|" + POOL + "|10.0.0.1:8080");
+        verify(httpClientManager).evictClient(due);
+        assertThat(registry.getRegistryStats()).containsEntry("expiredEvicted", 1L);
+    }
+
+    @Test
+    void reconcileDropsShortLivedAndCountsEvictions() {
+        registry.admit(POOL, "10.0.0.1:8080", deadlineIn(600000));
+        redisPool.put("10.0.0.2:8080", deadlineIn(600000));
+        redisPool.put("10.0.0.3:8080", deadlineIn(5000));
+
+        registry.reconcile();
+
+        assertThat(registry.find(POOL, "10.0.0.1:8080")).isNull();
+        assertThat(registry.find(POOL, "10.0.0.2:8080")).isNotNull();
+        // 快过期的等清理任务移出 Redis，镜像里先不要
+        assertThat(registry.find(POOL, "10.0.0.3:8080")).isNull();
+        // 还没到期就被外部删掉的计入消耗
+        assertThat(registry.evictedCount(POOL)).isEqualTo(1);
+        verify(zSetOps).addIfAbsent(eq(EXPIRY), anySet());
+    }
+
+    @Test
+    void evictCountsEarlyRemovalAndNotifies() {
+        registry.admit(POOL, "10.0.0.1:8080", deadlineIn(600000));
+
+        registry.evict(POOL, "10.0.0.1:8080");
+
+        assertThat(registry.size(POOL)).isZero();
+        assertThat(registry.evictedCount(POOL)).isEqualTo(1);
+        verify(hashOps).delete(POOL, "10.0.0.1:8080");
+        verify(zSetOps).remove(EXPIRY, "10.0.0.1:8080");
+        verify(redis).convertAndSend(RedisKeyConstant.PROXY_EVENT_CHANNEL, "-|" + POOL + "|10.0.0.1:8080");
+    }
+
+    private static String deadlineIn(long ms) {
+        return LocalDateTime.now(BEIJING).plusNanos(ms * 1_000_000).format(DatePattern.NORM_DATETIME_FORMATTER);
+    }
+}
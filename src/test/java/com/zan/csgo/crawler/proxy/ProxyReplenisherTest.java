@@ -0,0 +1,157 @@
+package com.zan.csgo.crawler.proxy;
+
+import com.zan.csgo.constant.RedisKeyConstant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/24 20:30
+ * @ClassName: ProxyReplenisherTest
+ * @Description : 代理补货测试 (消耗速度不重复计入到期、进货在单独线程、锁持有到进货结束)
+ */
+class ProxyReplenisherTest {
+
+    private static final String POOL = RedisKeyConstant.PROXY_CN;
+
+    private static final String LOCK_KEY = RedisKeyConstant.PROXY_REPLENISH_LOCK_PREFIX + "cn";
+
+    private StringRedisTemplate redis;
+
+    private ValueOperations<String, String> valueOps;
+
+    private ProxyRegistry registry;
+
+    private ProxyFetcher fetcher;
+
+    private ProxyReplenisher replenisher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any())).thenReturn(true);
+        registry = mock(ProxyRegistry.class);
+        fetcher = mock(ProxyFetcher.class);
+        when(fetcher.getPoolKey()).thenReturn(POOL);
+
+        replenisher = new ProxyReplenisher(List.of(fetcher));
+        ReflectionTestUtils.setField(replenisher, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(replenisher, "proxyRegistry", registry);
+        ReflectionTestUtils.setField(replenisher, "enabled", true);
+        ReflectionTestUtils.setField(replenisher, "leadMs", 60000L);
+        ReflectionTestUtils.setField(replenisher, "burnAlpha", 1.0);
+        ReflectionTestUtils.setField(replenisher, "lockTtlMs", 60000L);
+        ReflectionTestUtils.setField(replenisher, "cnMinSize", 10);
+        ReflectionTestUtils.setField(replenisher, "cnMaxPerFetch", 20);
+        ReflectionTestUtils.setField(replenisher, "cnBudgetPerHour", 600);
+        ReflectionTestUtils.setField(replenisher, "globalMinSize", 5);
+        ReflectionTestUtils.setField(replenisher, "globalMaxPerFetch", 10);
+        ReflectionTestUtils.setField(replenisher, "globalBudgetPerHour", 120);
+        replenisher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        replenisher.shutdown();
+    }
+
+    @Test
+    void idlePoolOnlyReplacesExpiringProxies() throws InterruptedException {
+        // 没有提前淘汰，只有 4 个代理在提前量内过期
+        when(registry.evictedCount(POOL)).thenReturn(0L);
+        when(registry.size(POOL)).thenReturn(10);
+        when(registry.expiringWithin(POOL, 60000L)).thenReturn(4);
+
+        replenisher.replenish();
+        awaitIdle();
+        Thread.sleep(5);
+        replenisher.replenish();
+        awaitIdle();
+
+        // 目标一直是保底 10，每次只补过期的 4 个
+        verify(fetcher, timeout(1000).times(2)).fetchProxies(4);
+        assertThat(stats()).containsEntry("target", 10).containsEntry("burnPerMin", 0.0);
+    }
+
+    @Test
+    void earlyEvictionsRaiseTarget() throws InterruptedException {
+        when(registry.size(POOL)).thenReturn(10);
+        when(registry.evictedCount(POOL)).thenReturn(0L);
+        replenisher.replenish();
+
+        // 100ms 内提前淘汰 1 个 => 600 个/分钟，目标涨到上限
+        Thread.sleep(100);
+        when(registry.evictedCount(POOL)).thenReturn(1L);
+        replenisher.replenish();
+        awaitIdle();
+
+        verify(fetcher, timeout(1000)).fetchProxies(20);
+        assertThat((int) stats().get("target")).isGreaterThan(10);
+    }
+
+    @Test
+    void orderRunsOffSchedulerAndHoldsLockUntilDone() throws InterruptedException {
+        when(registry.size(POOL)).thenReturn(0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fetcher.fetchProxies(10)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 10;
+        });
+
+        // 代理商卡住时定时任务照常返回
+        replenisher.replenish();
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(stats()).containsEntry("ordering", true);
+
+        // 上一单没进完，不重复下单也不释放锁
+        replenisher.replenish();
+        verify(valueOps, times(1)).setIfAbsent(eq(LOCK_KEY), anyString(), eq(60000L), eq(TimeUnit.MILLISECONDS));
+        verify(redis, never()).execute(ArgumentMatchers.<RedisScript<Long>>any(), eq(List.of(LOCK_KEY)), any());
+
+        release.countDown();
+        verify(redis, timeout(1000)).execute(ArgumentMatchers.<RedisScript<Long>>any(), eq(List.of(LOCK_KEY)), any());
+        assertThat(stats()).containsEntry("ordering", false).containsEntry("admitted", 10L);
+    }
+
+    /**
+     * 等进货线程上的单子跑完
+     */
+    private void awaitIdle() throws InterruptedException {
+        for (int i = 0; i < 100 && Boolean.TRUE.equals(stats().get("ordering")); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats() {
+        return (Map<String, Object>) replenisher.getReplenishStats().get("cn");
+    }
+}
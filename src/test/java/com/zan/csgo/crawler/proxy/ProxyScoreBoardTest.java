@@ -0,0 +1,196 @@
+package com.zan.csgo.crawler.proxy;
+
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.BreakerSignalEnum;
+import com.zan.csgo.enums.PlatformEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/24 18:30
+ * @ClassName: ProxyScoreBoardTest
+ * @Description : 代理评分测试 (EWMA 选择、隔离与退避、连续隔离移出、Redis 合并)
+ */
+class ProxyScoreBoardTest {
+
+    private static final PlatformEnum BUFF = PlatformEnum.BUFF;
+
+    private static final Proxy FAST = proxy("10.0.0.1");
+    private static final Proxy SLOW = proxy("10.0.0.2");
+
+    private StringRedisTemplate redis;
+
+    private HashOperations<String, Object, Object> hashOps;
+
+    private ProxyRegistry registry;
+
+    private ProxyScoreBoard scoreBoard;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        hashOps = mock(HashOperations.class);
+        when(redis.opsForHash()).thenReturn(hashOps);
+        registry = mock(ProxyRegistry.class);
+
+        scoreBoard = new ProxyScoreBoard();
+        ReflectionTestUtils.setField(scoreBoard, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(scoreBoard, "proxyRegistry", registry);
+        ReflectionTestUtils.setField(scoreBoard, "alpha", 0.2);
+        ReflectionTestUtils.setField(scoreBoard, "priorLatencyMs", 1500.0);
+        ReflectionTestUtils.setField(scoreBoard, "quarantineBelow", 0.3);
+        ReflectionTestUtils.setField(scoreBoard, "quarantineMs", 60000L);
+        ReflectionTestUtils.setField(scoreBoard, "maxQuarantineMs", 1800000L);
+        ReflectionTestUtils.setField(scoreBoard, "evictLevel", 5);
+        scoreBoard.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scoreBoard.shutdown();
+    }
+
+    @Test
+    void choosesProxyWithBetterLatencyEwma() {
+        for (int i = 0; i < 5; i++) {
+            scoreBoard.recordSuccess(BUFF, FAST, 200);
+            scoreBoard.recordSuccess(BUFF, SLOW, 3000);
+        }
+
+        assertThat(scoreBoard.choose(BUFF, FAST, SLOW)).isSameAs(FAST);
+        assertThat(scoreBoard.choose(BUFF, SLOW, FAST)).isSameAs(FAST);
+    }
+
+    @Test
+    void rateLimitedQuarantinesImmediately() {
+        scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.RATE_LIMITED);
+
+        assertThat(scoreBoard.isQuarantined(BUFF, FAST)).isTrue();
+        assertThat(scoreBoard.choose(BUFF, FAST, SLOW)).isSameAs(SLOW);
+        // 其他平台不受影响
+        assertThat(scoreBoard.isQuarantined(PlatformEnum.STEAM, FAST)).isFalse();
+    }
+
+    @Test
+    void ordinaryFailuresQuarantineOnlyBelowThreshold() {
+        // 1.0 * 0.8^5 = 0.33，还在阈值之上
+        for (int i = 0; i < 5; i++) {
+            scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.TIMEOUT);
+        }
+        assertThat(scoreBoard.isQuarantined(BUFF, FAST)).isFalse();
+
+        scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.TIMEOUT);
+
+        assertThat(scoreBoard.isQuarantined(BUFF, FAST)).isTrue();
+    }
+
+    @Test
+    void loginRequiredAndDirectAreNotScored() {
+        scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.LOGIN_REQUIRED);
+        scoreBoard.recordFailure(BUFF, null, BreakerSignalEnum.WAF);
+
+        assertThat(scoreBoard.isQuarantined(BUFF, FAST)).isFalse();
+        assertThat(scoreBoard.getScoreStats()).doesNotContainKey(BUFF.name());
+    }
+
+    @Test
+    void quarantineBacksOffAndEvictsOffCallerThread() throws InterruptedException {
+        ReflectionTestUtils.setField(scoreBoard, "quarantineMs", 50L);
+        ReflectionTestUtils.setField(scoreBoard, "evictLevel", 3);
+
+        scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.WAF);
+        assertThat(quarantineRemainingMs()).isLessThanOrEqualTo(50L);
+        Thread.sleep(60);
+        scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.WAF);
+        // 第二次隔离时长翻倍
+        assertThat(quarantineRemainingMs()).isGreaterThan(50L);
+        verify(registry, never()).evict(anyString(), anyString());
+
+        Thread.sleep(110);
+        scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.WAF);
+
+        verify(registry, timeout(1000)).evict(RedisKeyConstant.PROXY_CN, "10.0.0.1:8080");
+        assertThat(scoreBoard.getScoreStats()).containsEntry("evicted", 1L);
+    }
+
+    @Test
+    void successResetsQuarantineLevel() throws InterruptedException {
+        ReflectionTestUtils.setField(scoreBoard, "quarantineMs", 5L);
+        ReflectionTestUtils.setField(scoreBoard, "evictLevel", 2);
+
+        scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.WAF);
+        Thread.sleep(10);
+        scoreBoard.recordSuccess(BUFF, FAST, 300);
+        scoreBoard.recordFailure(BUFF, FAST, BreakerSignalEnum.WAF);
+
+        assertThat(scoreBoard.isQuarantined(BUFF, FAST)).isTrue();
+        verify(registry, never()).evict(anyString(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void syncKeepsRemoteScoresOfProxiesStillInRedisPool() {
+        String scoreKey = RedisKeyConstant.PROXY_SCORE_PREFIX + BUFF.getCode();
+        Map<Object, Object> remote = new HashMap<>();
+        remote.put("10.0.0.7:8080", "0.9,500.0,0,0"); // 本节点镜像还没收到入池通知
+        remote.put("10.0.0.8:8080", "0.9,500.0,0,0"); // 已移出代理池
+        when(hashOps.entries(anyString())).thenReturn(Map.of());
+        when(hashOps.entries(scoreKey)).thenReturn(remote);
+        when(hashOps.multiGet(eq(RedisKeyConstant.PROXY_CN), any())).thenAnswer(invocation -> {
+            List<Object> fields = invocation.getArgument(1);
+            return fields.stream().map(field -> "10.0.0.7:8080".equals(field) ? "2026-01-24 20:00:00" : null).toList();
+        });
+
+        scoreBoard.sync();
+
+        verify(hashOps).delete(scoreKey, "10.0.0.8:8080");
+        verify(hashOps, never()).delete(eq(scoreKey), eq("10.0.0.7:8080"));
+    }
+
+    @Test
+    void syncAdoptsRemoteScoreForTrackedProxy() {
+        String scoreKey = RedisKeyConstant.PROXY_SCORE_PREFIX + BUFF.getCode();
+        long until = System.currentTimeMillis() + 60000;
+        when(hashOps.entries(anyString())).thenReturn(Map.of());
+        when(hashOps.entries(scoreKey)).thenReturn(Map.of("10.0.0.1:8080", "0.9,500.0," + until + ",1"));
+        when(registry.find(RedisKeyConstant.PROXY_CN, "10.0.0.1:8080")).thenReturn(FAST);
+
+        scoreBoard.sync();
+
+        // 其他节点隔离了这个代理，本节点同样跳过
+        assertThat(scoreBoard.isQuarantined(BUFF, FAST)).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private long quarantineRemainingMs() {
+        Map<String, Object> buff = (Map<String, Object>) scoreBoard.getScoreStats().get(BUFF.name());
+        List<Map<String, Object>> quarantined = (List<Map<String, Object>>) buff.get("quarantined");
+        return (long) quarantined.get(0).get("quarantineRemainingMs");
+    }
+
+    private static Proxy proxy(String host) {
+        return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(host, 8080));
+    }
+}
@@ -0,0 +1,29 @@
+package com.zan.csgo.crawler.sweep;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/23 14:20
+ * @ClassName: SteamMarketSweeperTest
+ * @Description : Steam 全量扫描的搜索地址测试 (价格必须按人民币请求)
+ */
+class SteamMarketSweeperTest {
+
+    private static final String BASE = "https://steamcommunity.com/market/search/render/?appid=730&norender=1&start=%d&count=%d";
+
+    @Test
+    void appendsCnyCurrencyWhenMissing() {
+        assertThat(SteamMarketSweeper.withCnyCurrency(BASE)).isEqualTo(BASE + "&currency=23");
+        assertThat(SteamMarketSweeper.withCnyCurrency("https://host/render")).isEqualTo("https://host/render?currency=23");
+    }
+
+    @Test
+    void replacesOtherCurrency() {
+        assertThat(SteamMarketSweeper.withCnyCurrency("https://host/render?currency=1&start=%d"))
+                .isEqualTo("https://host/render?currency=23&start=%d");
+        assertThat(SteamMarketSweeper.withCnyCurrency(BASE + "&currency=23")).isEqualTo(BASE + "&currency=23");
+    }
+}
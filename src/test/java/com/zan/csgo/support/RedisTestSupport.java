@@ -0,0 +1,47 @@
+package com.zan.csgo.support;
+
+import org.junit.jupiter.api.Assumptions;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/23 10:00
+ * @ClassName: RedisTestSupport
+ * @Description : Lua 脚本测试用的本地 Redis (127.0.0.1:6379 的 15 号库)，连不上时跳过测试
+ */
+public final class RedisTestSupport {
+
+    private static final int TEST_DATABASE = 15;
+
+    private RedisTestSupport() {
+    }
+
+    /**
+     * 连接本地 Redis 并清空测试库；没有可用的 Redis 时跳过当前测试
+     */
+    public static StringRedisTemplate connectOrSkip() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("127.0.0.1", 6379);
+        config.setDatabase(TEST_DATABASE);
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(config);
+        factory.afterPropertiesSet();
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        try {
+            template.execute((org.springframework.data.redis.core.RedisCallback<Object>) connection -> {
+                connection.serverCommands().flushDb();
+                return null;
+            });
+        } catch (Exception e) {
+            factory.destroy();
+            Assumptions.abort("本地 Redis 不可用，跳过: " + e.getMessage());
+        }
+        return template;
+    }
+
+    public static void close(StringRedisTemplate template) {
+        if (template != null && template.getConnectionFactory() instanceof LettuceConnectionFactory factory) {
+            factory.destroy();
+        }
+    }
+}
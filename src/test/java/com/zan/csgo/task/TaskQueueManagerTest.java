@@ -0,0 +1,170 @@
+package com.zan.csgo.task;
+
+import com.zan.csgo.constant.RedisKeyConstant;
+import com.zan.csgo.enums.PlatformEnum;
+import com.zan.csgo.enums.QueueModeEnum;
+import com.zan.csgo.model.dto.TaskBatchDTO;
+import com.zan.csgo.support.RedisTestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @Author Zan
+ * @Create 2026/1/23 10:10
+ * @ClassName: TaskQueueManagerTest
+ * @Description : 可靠队列 领取/结算/回收/熔断延后 脚本测试 (需要本地 Redis)
+ */
+class TaskQueueManagerTest {
+
+    private static final String WORKER = "node-1";
+
+    private StringRedisTemplate redis;
+
+    private TaskQueueManager manager;
+
+    @BeforeEach
+    void setUp() {
+        redis = RedisTestSupport.connectOrSkip();
+        manager = new TaskQueueManager();
+        ReflectionTestUtils.setField(manager, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(manager, "queueMode", QueueModeEnum.RELIABLE);
+        ReflectionTestUtils.setField(manager, "leaseTimeoutMs", 600000L);
+        ReflectionTestUtils.setField(manager, "delayReleaseLimit", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RedisTestSupport.close(redis);
+    }
+
+    @Test
+    void claimTakesHighestNonEmptyLaneAndRegistersLaneIndex() {
+        redis.opsForList().rightPushAll(RedisKeyConstant.QUEUE_COLD, "9");
+        redis.opsForList().rightPushAll(RedisKeyConstant.QUEUE_COMMON, "1", "2", "3");
+
+        TaskBatchDTO batch = manager.claim(WORKER, 2, 1);
+
+        assertThat(batch.getQueueKey()).isEqualTo(RedisKeyConstant.QUEUE_COMMON);
+        assertThat(batch.getIdList()).containsExactly("1", "2");
+        // 处理中 Hash 只登记赛道序号，不存 Key
+        assertThat(redis.opsForHash().entries(RedisKeyConstant.QUEUE_PROCESSING_PREFIX + WORKER))
+                .containsEntry("1", "2").containsEntry("2", "2");
+        assertThat(redis.opsForZSet().score(RedisKeyConstant.QUEUE_LEASE, WORKER)).isNotNull();
+    }
+
+    @Test
+    void completeAcksAndRequeuesFailedToOriginalLane() {
+        redis.opsForList().rightPushAll(RedisKeyConstant.QUEUE_HOT, "1", "2", "3");
+        manager.claim(WORKER, 3, 1);
+
+        long requeued = manager.complete(WORKER, List.of("1", "2"), List.of("3"));
+
+        assertThat(requeued).isEqualTo(1);
+        assertThat(redis.opsForList().range(RedisKeyConstant.QUEUE_HOT, 0, -1)).containsExactly("3");
+        assertThat(redis.hasKey(RedisKeyConstant.QUEUE_PROCESSING_PREFIX + WORKER)).isFalse();
+        // 手上清空后释放租约
+        assertThat(redis.opsForZSet().score(RedisKeyConstant.QUEUE_LEASE, WORKER)).isNull();
+    }
+
+    @Test
+    void completeIgnoresAlreadyAckedIds() {
+        redis.opsForList().rightPushAll(RedisKeyConstant.QUEUE_HOT, "1", "2");
+        manager.claim(WORKER, 2, 1);
+        manager.complete(WORKER, List.of("1"), List.of());
+
+        // 异常兜底会把整批 nack，已确认的不能再次入队
+        long requeued = manager.complete(WORKER, List.of(), List.of("1", "2"));
+
+        assertThat(requeued).isEqualTo(1);
+        assertThat(redis.opsForList().range(RedisKeyConstant.QUEUE_HOT, 0, -1)).containsExactly("2");
+    }
+
+    @Test
+    void completeHoldsDelayedIdsUntilDueThenReleasesToOriginalLane() {
+        redis.opsForList().rightPushAll(RedisKeyConstant.QUEUE_COMMON, "1", "2", "3");
+        manager.claim(WORKER, 3, 1);
+        long due = System.currentTimeMillis() + 60000;
+
+        long settled = manager.complete(WORKER, List.of("1"), List.of("2"), List.of("3"), due);
+
+        assertThat(settled).isEqualTo(2);
+        // 熔断延后的不回赛道，工人不会立刻再领到
+        assertThat(redis.opsForList().range(RedisKeyConstant.QUEUE_COMMON, 0, -1)).containsExactly("2");
+        assertThat(redis.opsForZSet().score(RedisKeyConstant.QUEUE_DELAYED, "2|3")).isEqualTo((double) due);
+        assertThat(redis.hasKey(RedisKeyConstant.QUEUE_PROCESSING_PREFIX + WORKER)).isFalse();
+
+        manager.releaseDelayed();
+        assertThat(redis.opsForList().size(RedisKeyConstant.QUEUE_COMMON)).isEqualTo(1);
+
+        // 冷却结束后放回原赛道
+        redis.opsForZSet().add(RedisKeyConstant.QUEUE_DELAYED, "2|3", 1);
+        manager.releaseDelayed();
+        assertThat(redis.opsForList().range(RedisKeyConstant.QUEUE_COMMON, 0, -1)).containsExactly("2", "3");
+        assertThat(redis.opsForZSet().size(RedisKeyConstant.QUEUE_DELAYED)).isZero();
+    }
+
+    @Test
+    void laneModeDelayReleasesToGivenLane() {
+        ReflectionTestUtils.setField(manager, "queueMode", QueueModeEnum.LANE);
+
+        manager.delay(RedisKeyConstant.QUEUE_COLD, List.of("5", "6"), 1);
+        manager.releaseDelayed();
+
+        assertThat(redis.opsForList().range(RedisKeyConstant.QUEUE_COLD, 0, -1)).containsExactlyInAnyOrder("5", "6");
+    }
+
+    @Test
+    void pendingPlatformsRoundTrip() {
+        manager.markPendingPlatforms(Map.of("7", EnumSet.of(PlatformEnum.STEAM)));
+
+        assertThat(manager.pendingPlatforms(List.of("7", "8"))).containsOnlyKeys(7L)
+                .containsEntry(7L, EnumSet.of(PlatformEnum.STEAM));
+
+        manager.clearPendingPlatforms(List.of("7"));
+        assertThat(manager.pendingPlatforms(List.of("7"))).isEmpty();
+    }
+
+    @Test
+    void completeAcceptsLegacyLaneKeyValues() {
+        redis.opsForHash().put(RedisKeyConstant.QUEUE_PROCESSING_PREFIX + WORKER, "7", RedisKeyConstant.QUEUE_COMMON);
+
+        manager.complete(WORKER, List.of(), List.of("7"));
+
+        assertThat(redis.opsForList().range(RedisKeyConstant.QUEUE_COMMON, 0, -1)).containsExactly("7");
+    }
+
+    @Test
+    void reapReturnsExpiredWorkersTasksToLaneHead() {
+        redis.opsForList().rightPushAll(RedisKeyConstant.QUEUE_COLD, "1", "2", "3");
+        manager.claim(WORKER, 2, 1);
+        // 租约已过期
+        redis.opsForZSet().add(RedisKeyConstant.QUEUE_LEASE, WORKER, 1);
+
+        manager.reapExpiredLeases();
+
+        assertThat(redis.opsForList().range(RedisKeyConstant.QUEUE_COLD, 0, -1)).containsExactlyInAnyOrder("1", "2", "3");
+        assertThat(redis.opsForList().index(RedisKeyConstant.QUEUE_COLD, -1)).isEqualTo("3");
+        assertThat(redis.hasKey(RedisKeyConstant.QUEUE_PROCESSING_PREFIX + WORKER)).isFalse();
+        assertThat(redis.opsForZSet().score(RedisKeyConstant.QUEUE_LEASE, WORKER)).isNull();
+    }
+
+    @Test
+    void reapSkipsLiveLease() {
+        redis.opsForList().rightPushAll(RedisKeyConstant.QUEUE_HOT, "1");
+        manager.claim(WORKER, 1, 1);
+
+        manager.reapExpiredLeases();
+
+        assertThat(redis.opsForHash().size(RedisKeyConstant.QUEUE_PROCESSING_PREFIX + WORKER)).isEqualTo(1);
+        assertThat(redis.opsForList().size(RedisKeyConstant.QUEUE_HOT)).isZero();
+    }
+}